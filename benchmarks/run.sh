@@ -0,0 +1,11 @@
+#!/bin/sh
+# Builds the project and runs every benchmark with the GC profiler, saving
+# the results as benchmarks/results/<commit>.json so that runs from
+# different commits can be compared.  Any arguments are passed on to JMH,
+# e.g. "BotBenchmark" to run only the bot benchmarks.
+set -e
+cd "$(dirname "$0")/.."
+mvn -B -q package -DskipTests
+mkdir -p benchmarks/results
+COMMIT=$(git rev-parse --short HEAD)
+java -jar benchmarks/target/benchmarks.jar -prof gc -rf json -rff "benchmarks/results/$COMMIT.json" "$@"
@@ -0,0 +1,109 @@
+package com.stephengware.java.games.mm_game.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.stephengware.java.games.mm_game.ai.AlphaBetaBot;
+import com.stephengware.java.games.mm_game.ai.Bot;
+import com.stephengware.java.games.mm_game.ai.Decision;
+import com.stephengware.java.games.mm_game.ai.MinMaxBot;
+import com.stephengware.java.games.mm_game.ai.RandomBot;
+import com.stephengware.java.games.mm_game.ai.RandomPlayout;
+
+/**
+ * Measures one whole decision by each of the original bots.  The bots are
+ * made once per trial, like a bot which plays a whole game.
+ * 
+ * @author Stephen G. Ware
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BotBenchmark {
+
+	/** The name of the position in which to decide */
+	@Param({ Positions.EMPTY, Positions.OPENING, Positions.MIDDLE, Positions.ENDGAME })
+	public String position;
+	
+	/** The position in which to decide */
+	private com.stephengware.java.games.mm_game.state.State state;
+	
+	/** A min max bot */
+	private Bot minMax;
+	
+	/** An alpha beta bot */
+	private Bot alphaBeta;
+	
+	/** A random bot */
+	private Bot random;
+	
+	/** The random number generator for playouts */
+	private SplittableRandom playouts;
+	
+	/**
+	 * Builds the position and the bots.
+	 */
+	@Setup
+	public void setup() {
+		state = Positions.get(position);
+		minMax = new MinMaxBot();
+		alphaBeta = new AlphaBetaBot();
+		random = new RandomBot(0);
+		playouts = new SplittableRandom(0);
+	}
+	
+	/**
+	 * Decides with min max search.
+	 * 
+	 * @return the decision
+	 */
+	@Benchmark
+	public Decision minMax() {
+		return minMax.chooseMove(state);
+	}
+	
+	/**
+	 * Decides with alpha beta search.
+	 * 
+	 * @return the decision
+	 */
+	@Benchmark
+	public Decision alphaBeta() {
+		return alphaBeta.chooseMove(state);
+	}
+	
+	/**
+	 * Decides at random.
+	 * 
+	 * @return the decision
+	 */
+	@Benchmark
+	public Decision random() {
+		return random.chooseMove(state);
+	}
+	
+	/**
+	 * Plays the rest of the game at random.
+	 * 
+	 * @return the packed board at the end of the game
+	 */
+	@Benchmark
+	public int playout() {
+		return RandomPlayout.play(state.getBoard(), playouts);
+	}
+}
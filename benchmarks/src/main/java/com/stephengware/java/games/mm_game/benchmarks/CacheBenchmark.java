@@ -0,0 +1,90 @@
+package com.stephengware.java.games.mm_game.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.stephengware.java.games.mm_game.ai.AlphaBetaBot;
+import com.stephengware.java.games.mm_game.ai.Bot;
+import com.stephengware.java.games.mm_game.ai.Decision;
+import com.stephengware.java.games.mm_game.ai.EvaluationCache;
+import com.stephengware.java.games.mm_game.ai.TranspositionTable;
+
+/**
+ * Measures decisions by {@link AlphaBetaBot}s which share one warm
+ * {@link EvaluationCache}, from 32 threads at once, like 32 games of a
+ * tournament.  Each thread has its own bot, as each game would.
+ *
+ * @author Stephen G. Ware
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(32)
+@Fork(1)
+public class CacheBenchmark {
+
+	/**
+	 * The cache shared by every thread.
+	 */
+	@State(Scope.Benchmark)
+	public static class Shared {
+
+		/** The cache */
+		public final EvaluationCache cache = new EvaluationCache(EvaluationCache.DEFAULT_BYTES);
+	}
+
+	/**
+	 * One thread's bot and position.
+	 */
+	@State(Scope.Thread)
+	public static class Game {
+
+		/** The name of the position in which to decide */
+		@Param({ Positions.EMPTY, Positions.OPENING, Positions.MIDDLE, Positions.ENDGAME })
+		public String position;
+
+		/** The position in which to decide */
+		private com.stephengware.java.games.mm_game.state.State state;
+
+		/** A bot which shares the cache */
+		private Bot bot;
+
+		/**
+		 * Builds the position and the bot, and warms the cache by deciding
+		 * once.
+		 *
+		 * @param shared the shared cache
+		 */
+		@Setup(Level.Trial)
+		public void setup(Shared shared) {
+			state = Positions.get(position);
+			bot = new AlphaBetaBot(new TranspositionTable(), true, null, shared.cache);
+			bot.chooseMove(state);
+		}
+	}
+
+	/**
+	 * Decides with alpha beta search, which should only look the position up.
+	 *
+	 * @param game this thread's bot and position
+	 * @return the decision
+	 */
+	@Benchmark
+	public Decision decide(Game game) {
+		return game.bot.chooseMove(game.state);
+	}
+}
@@ -0,0 +1,84 @@
+package com.stephengware.java.games.mm_game.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.stephengware.java.games.mm_game.ai.GameTree;
+
+/**
+ * Measures expanding and counting the nodes of a {@link GameTree}.
+ * 
+ * @author Stephen G. Ware
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameTreeBenchmark {
+
+	/** The name of the position at the root */
+	@Param({ Positions.EMPTY, Positions.OPENING, Positions.MIDDLE, Positions.ENDGAME })
+	public String position;
+	
+	/** The position at the root */
+	private com.stephengware.java.games.mm_game.state.State state;
+	
+	/** The whole tree below the position, already expanded */
+	private GameTree tree;
+	
+	/**
+	 * Builds the position and expands its whole tree.
+	 */
+	@Setup
+	public void setup() {
+		state = Positions.get(position);
+		tree = new GameTree(state);
+		expand(tree);
+	}
+	
+	/**
+	 * Expands every node below a node.
+	 * 
+	 * @param tree the node
+	 */
+	private static void expand(GameTree tree) {
+		while(tree.hasNextChild())
+			expand(tree.getNextChild());
+	}
+	
+	/**
+	 * Expands every child of the root.
+	 * 
+	 * @return the root
+	 */
+	@Benchmark
+	public GameTree getNextChild() {
+		GameTree root = new GameTree(state);
+		while(root.hasNextChild())
+			root.getNextChild();
+		return root;
+	}
+	
+	/**
+	 * Counts the nodes of the whole tree.
+	 * 
+	 * @return the number of nodes
+	 */
+	@Benchmark
+	public int size() {
+		return tree.size();
+	}
+}
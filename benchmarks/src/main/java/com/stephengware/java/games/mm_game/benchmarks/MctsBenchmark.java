@@ -0,0 +1,86 @@
+package com.stephengware.java.games.mm_game.benchmarks;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.stephengware.java.games.mm_game.ai.Decision;
+import com.stephengware.java.games.mm_game.ai.MctsBot;
+import com.stephengware.java.games.mm_game.state.MNKState;
+
+/**
+ * Measures Monte Carlo Tree Search in playouts per second, on the empty
+ * 7,7,4 grid, with one thread and with a thread for each processor.
+ * Dividing the second by the number of processors gives playouts per second
+ * per core.
+ * 
+ * @author Stephen G. Ware
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MctsBenchmark {
+
+	/** The number of playouts in each decision */
+	private static final int PLAYOUTS = 10000;
+	
+	/** The number of threads, where 0 means one for each processor */
+	@Param({ "1", "0" })
+	public int threads;
+	
+	/** The threads the bot searches with, or null */
+	private ForkJoinPool pool;
+	
+	/** The bot */
+	private MctsBot bot;
+	
+	/** The empty grid */
+	private MNKState state;
+	
+	/**
+	 * Builds the bot and the position.
+	 */
+	@Setup
+	public void setup() {
+		if(threads != 1)
+			pool = new ForkJoinPool(threads == 0 ? Runtime.getRuntime().availableProcessors() : threads);
+		bot = new MctsBot(0, PLAYOUTS, 1, Long.MAX_VALUE, pool);
+		state = new MNKState(7, 7, 4);
+	}
+	
+	/**
+	 * Stops the bot's threads.
+	 */
+	@TearDown
+	public void tearDown() {
+		if(pool != null)
+			pool.shutdown();
+	}
+	
+	/**
+	 * Decides with {@link #PLAYOUTS} playouts.
+	 * 
+	 * @return the decision
+	 */
+	@Benchmark
+	@OperationsPerInvocation(PLAYOUTS)
+	public Decision playouts() {
+		return bot.chooseMove(state);
+	}
+}
@@ -0,0 +1,58 @@
+package com.stephengware.java.games.mm_game.benchmarks;
+
+import com.stephengware.java.games.mm_game.state.Move;
+import com.stephengware.java.games.mm_game.state.State;
+
+/**
+ * A set of representative Tic Tac Toe positions from each part of a game,
+ * so that benchmarks measure the cost of big and small trees alike.
+ * 
+ * @author Stephen G. Ware
+ */
+public class Positions {
+
+	/** The names of the positions, suitable for a benchmark parameter */
+	public static final String EMPTY = "empty", OPENING = "opening", MIDDLE = "middle", ENDGAME = "endgame";
+	
+	/**
+	 * Returns a position by name.
+	 * <ul>
+	 * <li>empty: no marks</li>
+	 * <li>opening: X in the center, O in a corner</li>
+	 * <li>middle: 4 marks, X to move and forced to block O</li>
+	 * <li>endgame: 6 marks, X to move with the game headed for a tie</li>
+	 * </ul>
+	 * 
+	 * @param name the name of the position
+	 * @return the position
+	 * @throws IllegalArgumentException if there is no position by that name
+	 */
+	public static State get(String name) {
+		switch(name) {
+		case EMPTY:
+			return play();
+		case OPENING:
+			return play(1, 1, 0, 0);
+		case MIDDLE:
+			return play(1, 1, 0, 0, 0, 2, 2, 0);
+		case ENDGAME:
+			return play(1, 1, 0, 0, 0, 2, 2, 0, 1, 0, 1, 2);
+		default:
+			throw new IllegalArgumentException("There is no position named \"" + name + "\".");
+		}
+	}
+	
+	/**
+	 * Plays a sequence of moves from the empty board, alternating between X
+	 * and O.
+	 * 
+	 * @param cells the row and column of each move in turn
+	 * @return the resulting position
+	 */
+	private static State play(int...cells) {
+		State state = new State();
+		for(int i = 0; i < cells.length; i += 2)
+			state = state.transition(new Move(state.getCurrentPlayer(), cells[i], cells[i + 1]));
+		return state;
+	}
+}
@@ -0,0 +1,82 @@
+package com.stephengware.java.games.mm_game.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.stephengware.java.games.mm_game.state.Move;
+
+/**
+ * Measures the basic operations of
+ * {@link com.stephengware.java.games.mm_game.state.State State}, which
+ * every search performs once or more for each node.
+ * 
+ * @author Stephen G. Ware
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateBenchmark {
+
+	/** The name of the position to start from */
+	@Param({ Positions.EMPTY, Positions.OPENING, Positions.MIDDLE, Positions.ENDGAME })
+	public String position;
+	
+	/** The position */
+	private com.stephengware.java.games.mm_game.state.State state;
+	
+	/** The first move available in the position */
+	private Move move;
+	
+	/**
+	 * Builds the position.
+	 */
+	@Setup
+	public void setup() {
+		state = Positions.get(position);
+		move = state.getAvailableMoves().iterator().next();
+	}
+	
+	/**
+	 * Makes a move.
+	 * 
+	 * @return the resulting state
+	 */
+	@Benchmark
+	public com.stephengware.java.games.mm_game.state.State transition() {
+		return state.transition(move);
+	}
+	
+	/**
+	 * Lists the available moves.
+	 * 
+	 * @return the moves
+	 */
+	@Benchmark
+	public Iterable<Move> getAvailableMoves() {
+		return state.getAvailableMoves();
+	}
+	
+	/**
+	 * Checks whether the game is over.
+	 * 
+	 * @return whether the game is over
+	 */
+	@Benchmark
+	public boolean isTerminal() {
+		return state.isTerminal();
+	}
+}
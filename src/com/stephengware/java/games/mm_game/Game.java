@@ -2,12 +2,18 @@ package com.stephengware.java.games.mm_game;
 
 import com.stephengware.java.games.mm_game.ai.Bot;
 import com.stephengware.java.games.mm_game.ai.Decision;
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Move;
 import com.stephengware.java.games.mm_game.state.Player;
 import com.stephengware.java.games.mm_game.state.State;
 
 /**
  * Plays a game of Tic Tac Toe and measures how many moves each player
  * considers during the game.
+ * <p>
+ * Both bots are told when the game starts and after every move (see
+ * {@link Bot#newGame(GameState)} and {@link Bot#onMoveApplied(Move)}), so
+ * they can reuse what they learned on earlier moves.
  * 
  * @author Stephen G. Ware
  */
@@ -20,7 +26,7 @@ public class Game {
 	public final Bot o;
 	
 	/** The final state of the game after it is over */
-	public final State state;
+	public final GameState state;
 	
 	/** The winning player */
 	public final Player winner;
@@ -31,6 +37,12 @@ public class Game {
 	/** The number of moves considered by player O during the game */
 	public final double oWork;
 	
+	/** The number of transposition table hits by player X during the game */
+	public final double xHits;
+	
+	/** The number of transposition table hits by player O during the game */
+	public final double oHits;
+	
 	/**
 	 * Constructs and plays a game of Tic Tac Toe.
 	 * 
@@ -38,26 +50,67 @@ public class Game {
 	 * @param o the O player
 	 */
 	public Game(Bot x, Bot o) {
+		this(x, o, new State());
+	}
+	
+	/**
+	 * Constructs and plays a game, such as a larger m,n,k game, starting from
+	 * a given state.
+	 * 
+	 * @param x the X player
+	 * @param o the O player
+	 * @param initial the state in which the game begins
+	 */
+	public Game(Bot x, Bot o, GameState initial) {
+		this(x, o, initial, null);
+	}
+	
+	/**
+	 * Constructs and plays a game starting from a given state, telling a
+	 * listener about each move.
+	 * 
+	 * @param x the X player
+	 * @param o the O player
+	 * @param initial the state in which the game begins
+	 * @param listener told about each move and the end of the game, or null
+	 */
+	public Game(Bot x, Bot o, GameState initial, GameListener listener) {
 		this.x = x;
 		this.o = o;
-		State current = new State();
+		GameState current = initial;
 		double xw = 0;
 		double ow = 0;
+		double xh = 0;
+		double oh = 0;
+		x.newGame(initial);
+		if(o != x)
+			o.newGame(initial);
 		while(!current.isTerminal()) {
 			Decision decision;
 			if(current.getCurrentPlayer() == Player.X) {
 				decision = x.chooseMove(current);
 				xw += decision.work;
+				xh += decision.hits;
 			}
 			else {
 				decision = o.chooseMove(current);
 				ow += decision.work;
+				oh += decision.hits;
 			}
+			if(listener != null)
+				listener.moveMade(current, decision);
 			current = current.transition(decision.move);
+			x.onMoveApplied(decision.move);
+			if(o != x)
+				o.onMoveApplied(decision.move);
 		}
 		this.state = current;
 		this.winner = current.getWinner();
 		this.xWork = xw;
 		this.oWork = ow;
+		this.xHits = xh;
+		this.oHits = oh;
+		if(listener != null)
+			listener.gameEnded(this);
 	}
 }
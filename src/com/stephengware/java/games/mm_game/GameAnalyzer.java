@@ -0,0 +1,612 @@
+package com.stephengware.java.games.mm_game;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.stephengware.java.games.mm_game.ai.Decision;
+import com.stephengware.java.games.mm_game.ai.RetrogradeTable;
+import com.stephengware.java.games.mm_game.record.GameRecord;
+import com.stephengware.java.games.mm_game.record.GameRecordReader;
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Player;
+
+/**
+ * Keeps running statistics about games as they finish: how often each
+ * opening is won, lost, and tied, how much work the players do at each ply,
+ * and how often a move throws away part of the perfect play value of its
+ * position (a blunder), as judged by a {@link RetrogradeTable}.
+ * <p>
+ * Games are added one at a time, either by a {@link #listener() listener}
+ * while they are played or from {@link GameRecord records} read back from a
+ * file, and nothing is kept of a game once it has been added.  Statistics
+ * about individual positions are kept in an open addressing hash table of
+ * primitive arrays, keyed by the position's index in the retrograde table,
+ * which is given a fixed number of positions when the analyzer is made.
+ * Once it is full, positions not already in it are counted only in the
+ * totals, so the analyzer uses the same memory after a billion games as
+ * after one.  All counts are 64 bits.
+ * <p>
+ * A {@link Snapshot} of the statistics can be taken at any time, and one can
+ * be passed to a consumer every so many games, for example to write it to a
+ * log.
+ * <p>
+ * This class is thread safe; games are added one at a time.
+ *
+ * @author Stephen G. Ware
+ */
+public class GameAnalyzer {
+
+	/** The number of positions an analyzer tracks if no number is given */
+	public static final int DEFAULT_POSITIONS = 1 << 16;
+
+	/**
+	 * The most positions an analyzer can track, so that the counts of every
+	 * slot of its table still fit in one array
+	 */
+	public static final int MAX_POSITIONS = 1 << 26;
+
+	/** The number of counts kept for each position */
+	private static final int FIELDS = 4;
+
+	/** The count of games which reached a position */
+	private static final int GAMES = 0;
+
+	/** The count of games which X went on to win */
+	private static final int X_WINS = 1;
+
+	/** The count of games which O went on to win */
+	private static final int O_WINS = 2;
+
+	/** The count of blunders made in a position */
+	private static final int BLUNDERS = 3;
+
+	/**
+	 * The statistics of one opening, that is, one position after a fixed
+	 * number of moves.
+	 */
+	public static class Opening {
+
+		/** The position's index in the retrograde table */
+		public final int index;
+
+		/** The grid in row major order, with <code>-</code> for an empty square */
+		public final String grid;
+
+		/** The number of games which began this way */
+		public final long games;
+
+		/** The number of those games won by X */
+		public final long xWins;
+
+		/** The number of those games won by O */
+		public final long oWins;
+
+		/** The number of those games tied */
+		public final long ties;
+
+		/**
+		 * Constructs an opening's statistics.
+		 *
+		 * @param index the position's index
+		 * @param grid the grid in row major order
+		 * @param games the number of games
+		 * @param xWins the number of games won by X
+		 * @param oWins the number of games won by O
+		 */
+		Opening(int index, String grid, long games, long xWins, long oWins) {
+			this.index = index;
+			this.grid = grid;
+			this.games = games;
+			this.xWins = xWins;
+			this.oWins = oWins;
+			this.ties = games - xWins - oWins;
+		}
+
+		@Override
+		public String toString() {
+			return grid + ": " + games + " games, X won " + rate(xWins, games) + ", O won " + rate(oWins, games) + ", tied " + rate(ties, games);
+		}
+	}
+
+	/**
+	 * The statistics of every game added before some moment.
+	 */
+	public static class Snapshot {
+
+		/** The number of games */
+		public final long games;
+
+		/** The number of games won by X */
+		public final long xWins;
+
+		/** The number of games won by O */
+		public final long oWins;
+
+		/** The number of games tied */
+		public final long ties;
+
+		/** The number of moves made at each ply */
+		private final long[] moves;
+
+		/** The number of moves at each ply whose decision was reported */
+		private final long[] decisions;
+
+		/** The total work of the decisions at each ply */
+		private final long[] work;
+
+		/** The number of blunders made at each ply */
+		private final long[] blunders;
+
+		/** Every opening played, most played first */
+		public final List<Opening> openings;
+
+		/** The number of positions being tracked */
+		public final int positions;
+
+		/** The number of times a position could not be tracked because the table was full */
+		public final long dropped;
+
+		/**
+		 * Constructs a snapshot, copying the arrays.
+		 *
+		 * @param analyzer the analyzer
+		 * @param openings every opening played
+		 */
+		Snapshot(GameAnalyzer analyzer, List<Opening> openings) {
+			this.games = analyzer.games;
+			this.xWins = analyzer.xWins;
+			this.oWins = analyzer.oWins;
+			this.ties = analyzer.games - analyzer.xWins - analyzer.oWins;
+			this.moves = analyzer.moves.clone();
+			this.decisions = analyzer.decisions.clone();
+			this.work = analyzer.work.clone();
+			this.blunders = analyzer.blunders.clone();
+			this.openings = Collections.unmodifiableList(openings);
+			this.positions = analyzer.size;
+			this.dropped = analyzer.dropped;
+		}
+
+		/**
+		 * Returns the number of plies at which at least one move was made.
+		 *
+		 * @return the length of the longest game
+		 */
+		public int getPlies() {
+			int plies = moves.length;
+			while(plies > 0 && moves[plies - 1] == 0)
+				plies--;
+			return plies;
+		}
+
+		/**
+		 * Returns the number of moves made at a ply.
+		 *
+		 * @param ply the ply, starting from 0 for X's first move
+		 * @return the number of moves
+		 */
+		public long getMoves(int ply) {
+			return moves[ply];
+		}
+
+		/**
+		 * Returns the average work of the decisions at a ply, counting only
+		 * games whose decisions were reported.
+		 *
+		 * @param ply the ply
+		 * @return the average {@link Decision#work work}, or 0 if no decisions were reported
+		 */
+		public double getAverageWork(int ply) {
+			return decisions[ply] == 0 ? 0 : (double) work[ply] / decisions[ply];
+		}
+
+		/**
+		 * Returns the fraction of moves at a ply which were blunders.
+		 *
+		 * @param ply the ply
+		 * @return the blunder rate, from 0 to 1
+		 */
+		public double getBlunderRate(int ply) {
+			return moves[ply] == 0 ? 0 : (double) blunders[ply] / moves[ply];
+		}
+
+		/**
+		 * Returns the fraction of all moves which were blunders.
+		 *
+		 * @return the blunder rate, from 0 to 1
+		 */
+		public double getBlunderRate() {
+			long total = 0;
+			long bad = 0;
+			for(int ply = 0; ply < moves.length; ply++) {
+				total += moves[ply];
+				bad += blunders[ply];
+			}
+			return total == 0 ? 0 : (double) bad / total;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder str = new StringBuilder();
+			str.append(games).append(" games: X won ").append(rate(xWins, games)).append(", O won ").append(rate(oWins, games)).append(", tied ").append(rate(ties, games)).append('\n');
+			for(int ply = 0; ply < getPlies(); ply++)
+				str.append("Ply ").append(ply).append(": ").append(moves[ply]).append(" moves, average work ").append(String.format("%.1f", getAverageWork(ply))).append(", blunders ").append(rate(blunders[ply], moves[ply])).append('\n');
+			for(Opening opening : openings)
+				str.append(opening).append('\n');
+			str.append(positions).append(" positions tracked");
+			if(dropped > 0)
+				str.append(", ").append(dropped).append(" not tracked because the table was full");
+			return str.toString();
+		}
+	}
+
+	/** The perfect play values of every position */
+	public final RetrogradeTable table;
+
+	/** The number of moves after which a position is an opening */
+	public final int openingLength;
+
+	/** The number of squares */
+	private final int cells;
+
+	/** Each position's index plus 1, or 0 for an empty slot */
+	private final int[] keys;
+
+	/** The {@link #FIELDS} counts of the position in each slot, in consecutive elements */
+	private final long[] counts;
+
+	/** The number of positions the table may hold */
+	private final int limit;
+
+	/** The number of positions in the table */
+	private int size = 0;
+
+	/** The number of times a position could not be added because the table was full */
+	private long dropped = 0;
+
+	/** The number of games */
+	private long games = 0;
+
+	/** The number of games won by X */
+	private long xWins = 0;
+
+	/** The number of games won by O */
+	private long oWins = 0;
+
+	/** The number of moves made at each ply */
+	private final long[] moves;
+
+	/** The number of moves at each ply whose decision was reported */
+	private final long[] decisions;
+
+	/** The total work of the decisions at each ply */
+	private final long[] work;
+
+	/** The number of blunders made at each ply */
+	private final long[] blunders;
+
+	/** The number of games between snapshots, or 0 for none */
+	private final long interval;
+
+	/** Given a snapshot every {@link #interval} games, or null */
+	private final Consumer<Snapshot> sink;
+
+	/**
+	 * Constructs an analyzer which tracks up to {@link #DEFAULT_POSITIONS}
+	 * positions and takes no snapshots of its own.
+	 *
+	 * @param table the perfect play values of the game being played
+	 * @param openingLength the number of moves after which a position is an opening
+	 */
+	public GameAnalyzer(RetrogradeTable table, int openingLength) {
+		this(table, openingLength, DEFAULT_POSITIONS, 0, null);
+	}
+
+	/**
+	 * Constructs an analyzer.
+	 *
+	 * @param table the perfect play values of the game being played
+	 * @param openingLength the number of moves after which a position is an opening
+	 * @param positions the most positions to track
+	 * @param interval the number of games between snapshots, or 0 for none
+	 * @param sink given a snapshot every <code>interval</code> games, while
+	 * no other game can be added, or null
+	 * @throws IllegalArgumentException if the opening is longer than a game
+	 * can be, or the number of positions is not positive or is more than
+	 * {@link #MAX_POSITIONS}
+	 */
+	public GameAnalyzer(RetrogradeTable table, int openingLength, int positions, long interval, Consumer<Snapshot> sink) {
+		this.cells = table.width * table.height;
+		if(openingLength < 0 || openingLength > cells)
+			throw new IllegalArgumentException("An opening cannot be " + openingLength + " moves long on a grid of " + cells + " squares.");
+		if(positions < 1 || positions > MAX_POSITIONS)
+			throw new IllegalArgumentException("Cannot track " + positions + " positions.");
+		this.table = table;
+		this.openingLength = openingLength;
+		// Keep the table no more than 3/4 full so probes stay short.
+		int capacity = Integer.highestOneBit(positions + positions / 3) * 2;
+		this.keys = new int[capacity];
+		this.counts = new long[capacity * FIELDS];
+		this.limit = positions;
+		this.moves = new long[cells];
+		this.decisions = new long[cells];
+		this.work = new long[cells];
+		this.blunders = new long[cells];
+		this.interval = interval;
+		this.sink = sink;
+	}
+
+	/**
+	 * Returns a listener which collects the moves of one game as it is
+	 * played and adds the game when it ends.  Each game needs its own
+	 * listener.  The game must start from an empty grid.
+	 *
+	 * @return a listener for one game
+	 */
+	public GameListener listener() {
+		return new Collector();
+	}
+
+	/**
+	 * Collects the moves of one game.
+	 */
+	private final class Collector implements GameListener {
+
+		/** The cell number of each move so far */
+		private final int[] played = new int[cells];
+
+		/** The work of each decision so far */
+		private final int[] effort = new int[cells];
+
+		/** The number of moves so far */
+		private int length = 0;
+
+		@Override
+		public void moveMade(GameState state, Decision decision) {
+			if(length == played.length)
+				throw new IllegalStateException("This game is longer than a game on a grid of " + cells + " squares can be.");
+			played[length] = decision.move.row * state.getWidth() + decision.move.column;
+			effort[length] = decision.work;
+			length++;
+		}
+
+		@Override
+		public void gameEnded(Game game) {
+			GameState end = game.state;
+			if(end.getEmptySquares() + length != cells)
+				throw new IllegalStateException("Only games which start from an empty grid can be analyzed.");
+			add(played, effort, length, game.winner);
+		}
+	}
+
+	/**
+	 * Adds a recorded game.  Records do not include how much work each
+	 * decision took, so the game does not count toward the average work.
+	 *
+	 * @param record the record
+	 * @throws IllegalArgumentException if the game was played on a
+	 * different grid or is not a legal game
+	 */
+	public void add(GameRecord record) {
+		if(record.width != table.width || record.height != table.height || record.winLength != table.winLength)
+			throw new IllegalArgumentException("This analyzer is for " + table.width + "," + table.height + "," + table.winLength + " games, not " + record.width + "," + record.height + "," + record.winLength + " games.");
+		int[] played = new int[record.getLength()];
+		for(int i = 0; i < played.length; i++)
+			played[i] = record.getCell(i);
+		add(played, null, played.length, record.winner);
+	}
+
+	/**
+	 * Adds a game, replaying it one move at a time.
+	 *
+	 * @param played the cell number of each move
+	 * @param effort the work of each decision, or null if it is not known
+	 * @param length the number of moves
+	 * @param winner the winner, or null if the game was tied
+	 * @throws IllegalArgumentException if the game is not a legal game
+	 */
+	private synchronized void add(int[] played, int[] effort, int length, Player winner) {
+		// Check the whole game before counting any of it.
+		int x = 0;
+		int o = 0;
+		for(int ply = 0; ply < length; ply++) {
+			int bit = 1 << played[ply];
+			if(((x | o) & bit) != 0)
+				throw new IllegalArgumentException("Square " + played[ply] + " is marked twice.");
+			if(ply % 2 == 0)
+				x |= bit;
+			else
+				o |= bit;
+			if(!table.isLegal(table.index(x, o)))
+				throw new IllegalArgumentException("Move " + ply + " cannot be made in a game.");
+		}
+		int xWin = winner == Player.X ? 1 : 0;
+		int oWin = winner == Player.O ? 1 : 0;
+		games++;
+		xWins += xWin;
+		oWins += oWin;
+		x = 0;
+		o = 0;
+		int index = table.index(x, o);
+		int value = table.getValue(index);
+		for(int ply = 0; ply <= length; ply++) {
+			int slot = slot(index);
+			if(slot != -1) {
+				counts[slot + GAMES]++;
+				counts[slot + X_WINS] += xWin;
+				counts[slot + O_WINS] += oWin;
+			}
+			if(ply == length)
+				break;
+			if(ply % 2 == 0)
+				x |= 1 << played[ply];
+			else
+				o |= 1 << played[ply];
+			int next = table.index(x, o);
+			int after = table.getValue(next);
+			moves[ply]++;
+			if(effort != null) {
+				decisions[ply]++;
+				work[ply] += effort[ply];
+			}
+			if(ply % 2 == 0 ? after < value : after > value) {
+				blunders[ply]++;
+				if(slot != -1)
+					counts[slot + BLUNDERS]++;
+			}
+			index = next;
+			value = after;
+		}
+		if(interval > 0 && sink != null && games % interval == 0)
+			sink.accept(snapshot());
+	}
+
+	/**
+	 * Finds a position's counts, adding the position if there is room.
+	 *
+	 * @param index the position's index
+	 * @return the first of its counts in {@link #counts}, or -1 if the table is full
+	 */
+	private int slot(int index) {
+		int key = index + 1;
+		int mask = keys.length - 1;
+		for(int i = mix(key) & mask; ; i = (i + 1) & mask) {
+			if(keys[i] == key)
+				return i * FIELDS;
+			if(keys[i] == 0) {
+				if(size == limit) {
+					dropped++;
+					return -1;
+				}
+				keys[i] = key;
+				size++;
+				return i * FIELDS;
+			}
+		}
+	}
+
+	/**
+	 * Spreads the bits of a key, using Murmur3's 32-bit finalizer.
+	 *
+	 * @param key the key
+	 * @return the mixed key
+	 */
+	private static int mix(int key) {
+		key ^= key >>> 16;
+		key *= 0x85EBCA6B;
+		key ^= key >>> 13;
+		key *= 0xC2B2AE35;
+		key ^= key >>> 16;
+		return key;
+	}
+
+	/**
+	 * Returns the number of games won by X, won by O, and tied, and the
+	 * number of blunders made, from a position.
+	 *
+	 * @param state the position
+	 * @return the 4 counts, which are all 0 if the position is not tracked
+	 * @throws IllegalArgumentException if the state is on a different grid
+	 */
+	public synchronized long[] getCounts(GameState state) {
+		int key = table.index(state) + 1;
+		int mask = keys.length - 1;
+		for(int i = mix(key) & mask; keys[i] != 0; i = (i + 1) & mask) {
+			if(keys[i] == key) {
+				int slot = i * FIELDS;
+				long games = counts[slot + GAMES];
+				return new long[] { counts[slot + X_WINS], counts[slot + O_WINS], games - counts[slot + X_WINS] - counts[slot + O_WINS], counts[slot + BLUNDERS] };
+			}
+		}
+		return new long[4];
+	}
+
+	/**
+	 * Returns the statistics of every game added so far.
+	 *
+	 * @return a snapshot
+	 */
+	public synchronized Snapshot snapshot() {
+		ArrayList<Opening> openings = new ArrayList<>();
+		for(int i = 0; i < keys.length; i++) {
+			if(keys[i] == 0)
+				continue;
+			int index = keys[i] - 1;
+			String grid = grid(index);
+			if(cells - countEmpty(grid) != openingLength)
+				continue;
+			int slot = i * FIELDS;
+			openings.add(new Opening(index, grid, counts[slot + GAMES], counts[slot + X_WINS], counts[slot + O_WINS]));
+		}
+		openings.sort((a, b) -> a.games != b.games ? Long.compare(b.games, a.games) : Integer.compare(a.index, b.index));
+		return new Snapshot(this, openings);
+	}
+
+	/**
+	 * Writes out the grid of a position from its index.
+	 *
+	 * @param index the index
+	 * @return the grid in row major order, with <code>-</code> for an empty square
+	 */
+	private String grid(int index) {
+		char[] grid = new char[cells];
+		for(int cell = 0; cell < cells; cell++, index /= 3)
+			grid[cell] = "-XO".charAt(index % 3);
+		return new String(grid);
+	}
+
+	/**
+	 * Counts the empty squares in a grid written by {@link #grid(int)}.
+	 *
+	 * @param grid the grid
+	 * @return the number of empty squares
+	 */
+	private static int countEmpty(String grid) {
+		int empty = 0;
+		for(int i = 0; i < grid.length(); i++)
+			if(grid.charAt(i) == '-')
+				empty++;
+		return empty;
+	}
+
+	/**
+	 * Writes a count as a percentage of a total.
+	 *
+	 * @param count the count
+	 * @param total the total
+	 * @return the percentage
+	 */
+	private static String rate(long count, long total) {
+		return String.format("%.1f%%", total == 0 ? 0 : 100.0 * count / total);
+	}
+
+	/**
+	 * Analyzes every game in a game record file, which must all be played on
+	 * the same grid, printing a snapshot every million games and at the end.
+	 *
+	 * @param args the file, and optionally the opening length (default 1)
+	 * @throws IOException if the file cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 1) {
+			System.out.println("Usage: GameAnalyzer file [opening length]");
+			return;
+		}
+		int openingLength = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+		try(GameRecordReader reader = new GameRecordReader(Paths.get(args[0]))) {
+			GameRecord record = reader.read();
+			if(record == null) {
+				System.out.println("There are no games in " + args[0] + ".");
+				return;
+			}
+			RetrogradeTable table = new RetrogradeTable(record.width, record.height, record.winLength);
+			GameAnalyzer analyzer = new GameAnalyzer(table, openingLength, DEFAULT_POSITIONS, 1000000, snapshot -> System.out.println(snapshot + "\n"));
+			for(; record != null; record = reader.read())
+				analyzer.add(record);
+			System.out.println(analyzer.snapshot());
+		}
+	}
+}
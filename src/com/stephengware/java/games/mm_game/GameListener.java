@@ -0,0 +1,58 @@
+package com.stephengware.java.games.mm_game;
+
+import com.stephengware.java.games.mm_game.ai.Decision;
+import com.stephengware.java.games.mm_game.state.GameState;
+
+/**
+ * A game listener is told about each move of a {@link Game} as it is made
+ * and about the game's end, so that games can be recorded or analyzed
+ * without the game keeping its whole history.
+ * 
+ * @author Stephen G. Ware
+ */
+public interface GameListener {
+
+	/**
+	 * Called after a player decides on a move, before it is made.
+	 * 
+	 * @param state the state in which the move was chosen
+	 * @param decision the decision, including the move
+	 */
+	public void moveMade(GameState state, Decision decision);
+	
+	/**
+	 * Called once the game is over.
+	 * 
+	 * @param game the game
+	 */
+	public void gameEnded(Game game);
+	
+	/**
+	 * Returns a listener which tells two listeners about everything, the
+	 * first one first.  Either may be null.
+	 * 
+	 * @param first the first listener, or null
+	 * @param second the second listener, or null
+	 * @return a listener which tells both, or the other if one is null
+	 */
+	public static GameListener both(GameListener first, GameListener second) {
+		if(first == null)
+			return second;
+		if(second == null)
+			return first;
+		return new GameListener() {
+			
+			@Override
+			public void moveMade(GameState state, Decision decision) {
+				first.moveMade(state, decision);
+				second.moveMade(state, decision);
+			}
+			
+			@Override
+			public void gameEnded(Game game) {
+				first.gameEnded(game);
+				second.gameEnded(game);
+			}
+		};
+	}
+}
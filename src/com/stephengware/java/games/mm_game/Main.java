@@ -1,12 +1,13 @@
 package com.stephengware.java.games.mm_game;
 
-import java.util.Random;
-
 import com.stephengware.java.games.mm_game.ai.*;
 import com.stephengware.java.games.mm_game.state.*;
 
 /**
  * Plays {@link #NUMBER_OF_GAMES} games of Tic Tac Toe and reports the results.
+ * The games are played at the same time by a {@link Tournament}, and each
+ * game's bots are seeded from {@link #SEED}, so the results are the same
+ * every time.
  * 
  * @author Stephen G. Ware
  */
@@ -15,6 +16,12 @@ public class Main {
 	/** Number of games to play */
 	public static final int NUMBER_OF_GAMES = 100;
 	
+	/** The seed from which every game's random choices are derived */
+	public static final long SEED = 9;
+	
+	/** The memory budget of each game's evaluation cache */
+	public static final int CACHE_BYTES = 64 * 1024;
+	
 	/**
 	 * Runs the application.
 	 * 
@@ -22,46 +29,84 @@ public class Main {
 	 */
 	public static void main(String[] args) {
 		System.out.println("Playing " + NUMBER_OF_GAMES + " games...");
-		int xWins = 0;
-		int oWins = 0;
-		double xWork = 0;
-		int oWork = 0;
-		for(int i = 0; i < NUMBER_OF_GAMES; i++) {
-			Game game = new Game(getXBot(), getOBot());
-			if(game.winner == Player.X)
-				xWins++;
-			else if(game.winner == Player.O)
-				oWins++;
-			xWork += game.xWork;
-			oWork += game.oWork;
-		}
+		LatencyHistogram latency = new LatencyHistogram();
+		GameAnalyzer analyzer = new GameAnalyzer(new RetrogradeTable(3, 3, 3), 1);
+		Tournament tournament = new Tournament(Main::getXBot, seed -> new InstrumentedBot(getOBot(seed), latency), new State(), Runtime.getRuntime().availableProcessors(), null, analyzer);
+		Tournament.Results results = tournament.play(NUMBER_OF_GAMES, SEED);
+		long xWins = results.xWins.sum();
+		long oWins = results.oWins.sum();
+		double xWork = results.xWork.sum();
+		double oWork = results.oWork.sum();
+		double xHits = results.xHits.sum();
+		double oHits = results.oHits.sum();
 		System.out.println("Results:");
-		System.out.println("X won " + xWins + "/" + NUMBER_OF_GAMES + " games and considered about " + (xWork / NUMBER_OF_GAMES) + " moves per game.");
-		System.out.println("O won " + oWins + "/" + NUMBER_OF_GAMES + " games and considered about " + (oWork / NUMBER_OF_GAMES) + " moves per game.");
-		System.out.println(NUMBER_OF_GAMES - (xWins + oWins) + " games tied.");
+		System.out.println("X won " + xWins + "/" + NUMBER_OF_GAMES + " games and considered about " + (xWork / NUMBER_OF_GAMES) + " moves per game (" + (xHits / NUMBER_OF_GAMES) + " table and cache hits).");
+		System.out.println("O won " + oWins + "/" + NUMBER_OF_GAMES + " games and considered about " + (oWork / NUMBER_OF_GAMES) + " moves per game (" + (oHits / NUMBER_OF_GAMES) + " table and cache hits).");
+		System.out.println(results.ties.sum() + " games tied.");
+		System.out.println("O's decision times in nanoseconds: " + latency + ".");
+		System.out.println("By ply and by X's first move:");
+		System.out.println(analyzer.snapshot());
+		compareEngines(new State());
+	}
+	
+	/**
+	 * Plays the same set of games with each search engine as O, against a
+	 * {@link RandomBot} which is seeded the same way each time, and reports
+	 * how many nodes each engine expanded.  The engines all play perfectly,
+	 * so the one which expands the fewest nodes is the one to use.
+	 * 
+	 * @param initial the state each game starts in
+	 */
+	private static void compareEngines(GameState initial) {
+		System.out.println("Comparing search engines...");
+		compare("Alpha beta", initial, seed -> new AlphaBetaBot());
+		compare("Alpha beta (table, ordering)", initial, seed -> {
+			TranspositionTable table = new TranspositionTable();
+			return new AlphaBetaBot(table, false, new HeuristicOrdering(table, true, true, true));
+		});
+		compare("PVS", initial, seed -> new PVSBot());
+		compare("MTD(f)", initial, seed -> new MTDfBot());
 	}
 	
-	/** A random number generator */
-	private static final Random random = new Random(9);
+	/**
+	 * Plays {@link #NUMBER_OF_GAMES} games with one search engine as O and
+	 * reports its results.
+	 * 
+	 * @param name the name of the engine
+	 * @param initial the state each game starts in
+	 * @param engine makes a new instance of the engine for each game
+	 */
+	private static void compare(String name, GameState initial, BotFactory engine) {
+		Tournament tournament = new Tournament(Main::getXBot, engine, initial, Runtime.getRuntime().availableProcessors());
+		Tournament.Results results = tournament.play(NUMBER_OF_GAMES, SEED);
+		double work = results.oWork.sum();
+		System.out.println(name + " lost " + results.xWins.sum() + "/" + NUMBER_OF_GAMES + " games and considered about " + (work / NUMBER_OF_GAMES) + " moves per game.");
+	}
 	
 	/**
 	 * Returns the {@link com.stephengware.java.games.mm_game.ai.Bot Bot} to
 	 * play X.
 	 * 
+	 * @param seed the seed for the bot's random choices
 	 * @return a bot to play X
 	 */
-	private static Bot getXBot() {
-		return new RandomBot(random);
+	private static Bot getXBot(long seed) {
+		return new RandomBot(seed);
 		
 	}
 	
 	/**
 	 * Returns the {@link com.stephengware.java.games.mm_game.ai.Bot Bot} to
-	 * play O.
+	 * play O.  Each game's bot has its own {@link EvaluationCache}, so
+	 * positions solved in one decision are looked up in the rest of that
+	 * game.  The bots do not share {@link EvaluationCache#SHARED}, because
+	 * what one game found would then depend on which other games had
+	 * finished first, and the results would change from run to run.
 	 * 
+	 * @param seed the seed for the bot's random choices
 	 * @return a bot to play O
 	 */
-	private static Bot getOBot() {
-		return new AlphaBetaBot();
+	private static Bot getOBot(long seed) {
+		return new AlphaBetaBot(new TranspositionTable(), true, null, new EvaluationCache(CACHE_BYTES));
 	}
 }
@@ -0,0 +1,513 @@
+package com.stephengware.java.games.mm_game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.stephengware.java.games.mm_game.state.Board;
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.MNKState;
+import com.stephengware.java.games.mm_game.state.Move;
+import com.stephengware.java.games.mm_game.state.Player;
+import com.stephengware.java.games.mm_game.state.SearchBoard;
+import com.stephengware.java.games.mm_game.state.State;
+
+/**
+ * Counts every line of play from a position, ply by ply: how many positions
+ * are reached after each number of moves, and how many games are won by
+ * each player or tied on exactly that move.  This is known in chess as
+ * perft.
+ * <p>
+ * The counts of a position depend only on the rules, so they are the same
+ * for every way of representing the game, and for Tic Tac Toe they are well
+ * known (see {@link #TIC_TAC_TOE_GAMES}).  Comparing a new or faster
+ * {@link Backend} with them shows whether it generates moves and detects
+ * wins correctly, and timing the count shows how many positions per second
+ * it can generate.
+ * <p>
+ * Each move from the starting position is counted on its own thread.  In
+ * memoized mode, the counts below each position are remembered by its key,
+ * so a position reached by many orders of moves is only walked once; this
+ * counts the same lines of play, but in far less time.
+ *
+ * @author Stephen G. Ware
+ */
+public class Perft {
+
+	/**
+	 * The ways a position can be represented while counting.
+	 */
+	public enum Backend {
+
+		/** Immutable states, using {@link GameState#getAvailableMoves()} and {@link GameState#transition(Move)} */
+		STATE,
+
+		/** One mutable {@link SearchBoard} per thread, using make and unmake */
+		SEARCH_BOARD,
+
+		/** Packed Tic Tac Toe boards (see {@link Board}), which only work for a {@link State} */
+		PACKED
+	}
+
+	/** The number of complete games of Tic Tac Toe, counting every order of moves */
+	public static final long TIC_TAC_TOE_GAMES = 255168;
+
+	/** The number of those games won by X */
+	public static final long TIC_TAC_TOE_X_WINS = 131184;
+
+	/** The number of those games won by O */
+	public static final long TIC_TAC_TOE_O_WINS = 77904;
+
+	/** The number of those games which are ties */
+	public static final long TIC_TAC_TOE_TIES = 46080;
+
+	/** The number of positions reached by every order of moves in Tic Tac Toe, not counting the empty board */
+	public static final long TIC_TAC_TOE_NODES = 549945;
+
+	/**
+	 * The counts from one position.  Each array is indexed by the number of
+	 * moves made since that position, from 0 to {@link #depth}.
+	 */
+	public static class Results {
+
+		/** The most moves counted */
+		public final int depth;
+
+		/** The number of positions reached after each number of moves */
+		public final long[] nodes;
+
+		/** The number of games won by X on each move */
+		public final long[] xWins;
+
+		/** The number of games won by O on each move */
+		public final long[] oWins;
+
+		/** The number of games tied on each move */
+		public final long[] ties;
+
+		/** The number of distinct positions remembered, or 0 if the count was not memoized */
+		public final int positions;
+
+		/** How long the count took in nanoseconds */
+		public final long time;
+
+		/**
+		 * Constructs results from packed counts.
+		 *
+		 * @param counts the counts: positions, X's wins, O's wins, and ties for each move
+		 * @param positions the number of distinct positions remembered
+		 * @param time how long the count took in nanoseconds
+		 */
+		Results(long[] counts, int positions, long time) {
+			this.depth = counts.length / 4 - 1;
+			this.nodes = new long[depth + 1];
+			this.xWins = new long[depth + 1];
+			this.oWins = new long[depth + 1];
+			this.ties = new long[depth + 1];
+			for(int ply = 0; ply <= depth; ply++) {
+				nodes[ply] = counts[ply * 4 + NODES];
+				xWins[ply] = counts[ply * 4 + X_WINS];
+				oWins[ply] = counts[ply * 4 + O_WINS];
+				ties[ply] = counts[ply * 4 + TIES];
+			}
+			this.positions = positions;
+			this.time = time;
+		}
+
+		/**
+		 * Returns the number of positions reached after at least one move.
+		 *
+		 * @return the number of positions
+		 */
+		public long getNodes() {
+			return sum(nodes) - nodes[0];
+		}
+
+		/**
+		 * Returns the number of games which ended within {@link #depth} moves,
+		 * counting the starting position if the game is already over there.
+		 *
+		 * @return the number of complete games
+		 */
+		public long getGames() {
+			return sum(xWins) + sum(oWins) + sum(ties);
+		}
+
+		/**
+		 * Returns the number of positions reached per second.  In memoized
+		 * mode this counts every line of play, not just the ones walked.
+		 *
+		 * @return the throughput in positions per second
+		 */
+		public double getNodesPerSecond() {
+			return time == 0 ? 0 : getNodes() * 1e9 / time;
+		}
+
+		/**
+		 * Checks whether two counts agree on every move.
+		 *
+		 * @param other the other results
+		 * @return true if they agree, false otherwise
+		 */
+		public boolean matches(Results other) {
+			return Arrays.equals(nodes, other.nodes) && Arrays.equals(xWins, other.xWins) && Arrays.equals(oWins, other.oWins) && Arrays.equals(ties, other.ties);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder string = new StringBuilder("ply       nodes      X wins      O wins        ties");
+			for(int ply = 0; ply <= depth; ply++)
+				string.append(String.format("%n%3d %11d %11d %11d %11d", ply, nodes[ply], xWins[ply], oWins[ply], ties[ply]));
+			string.append(String.format("%nall %11d %11d %11d %11d", getNodes(), sum(xWins), sum(oWins), sum(ties)));
+			return string.toString();
+		}
+
+		private static long sum(long[] values) {
+			long sum = 0;
+			for(long value : values)
+				sum += value;
+			return sum;
+		}
+	}
+
+	/** Where the number of positions is in each move's 4 counts */
+	private static final int NODES = 0;
+
+	/** Where the number of X's wins is in each move's 4 counts */
+	private static final int X_WINS = 1;
+
+	/** Where the number of O's wins is in each move's 4 counts */
+	private static final int O_WINS = 2;
+
+	/** Where the number of ties is in each move's 4 counts */
+	private static final int TIES = 3;
+
+	/** The threads which count */
+	private final ForkJoinPool pool;
+
+	/** Whether counts are memoized */
+	public final boolean memoize;
+
+	/**
+	 * Constructs a counter which uses the common fork join pool.
+	 *
+	 * @param memoize whether the counts below each position are remembered
+	 */
+	public Perft(boolean memoize) {
+		this(ForkJoinPool.commonPool(), memoize);
+	}
+
+	/**
+	 * Constructs a counter which uses the given threads.
+	 *
+	 * @param pool the threads which count
+	 * @param memoize whether the counts below each position are remembered
+	 */
+	public Perft(ForkJoinPool pool, boolean memoize) {
+		this.pool = pool;
+		this.memoize = memoize;
+	}
+
+	/**
+	 * Counts every line of play from a position, up to a given number of
+	 * moves.
+	 *
+	 * @param state the position
+	 * @param depth the most moves to count
+	 * @param backend how positions are represented while counting
+	 * @return the counts
+	 * @throws IllegalArgumentException if the depth is negative, or if the
+	 * packed backend is used for a state which is not a {@link State}
+	 */
+	public Results count(GameState state, int depth, Backend backend) {
+		if(depth < 0)
+			throw new IllegalArgumentException("Cannot count to a negative depth.");
+		if(backend == Backend.PACKED && !(state instanceof State))
+			throw new IllegalArgumentException("Only Tic Tac Toe states can be packed.");
+		long start = System.nanoTime();
+		ConcurrentHashMap<Long, long[]> memo = memoize ? new ConcurrentHashMap<>() : null;
+		long[] counts = new long[(depth + 1) * 4];
+		record(counts, 0, state.isTerminal(), state.getWinner());
+		if(depth > 0) {
+			ArrayList<RootTask> tasks = new ArrayList<>();
+			for(Move move : state.getAvailableMoves())
+				tasks.add(new RootTask(state.transition(move), depth - 1, backend, memo));
+			pool.invoke(new RecursiveTask<Void>() {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected Void compute() {
+					invokeAll(tasks);
+					return null;
+				}
+			});
+			for(RootTask task : tasks)
+				add(counts, 4, task.join());
+		}
+		return new Results(counts, memo == null ? 0 : memo.size(), System.nanoTime() - start);
+	}
+
+	/**
+	 * Counts everything below one move from the starting position.
+	 */
+	private final class RootTask extends RecursiveTask<long[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The position after the move */
+		private final GameState state;
+
+		/** The most moves to count after this one */
+		private final int depth;
+
+		/** How positions are represented */
+		private final Backend backend;
+
+		/** The remembered counts, or null */
+		private final ConcurrentHashMap<Long, long[]> memo;
+
+		RootTask(GameState state, int depth, Backend backend, ConcurrentHashMap<Long, long[]> memo) {
+			this.state = state;
+			this.depth = depth;
+			this.backend = backend;
+			this.memo = memo;
+		}
+
+		@Override
+		protected long[] compute() {
+			if(memo != null) {
+				switch(backend) {
+				case STATE:
+					return memoize(state, depth, memo);
+				case SEARCH_BOARD:
+					return memoize(new SearchBoard(state), moveBuffers(depth), depth, memo);
+				default:
+					return memoize(((State) state).getBoard(), depth, memo);
+				}
+			}
+			long[] counts = new long[(depth + 1) * 4];
+			switch(backend) {
+			case STATE:
+				walk(state, 0, depth, counts);
+				break;
+			case SEARCH_BOARD:
+				walk(new SearchBoard(state), moveBuffers(depth), 0, depth, counts);
+				break;
+			default:
+				walk(((State) state).getBoard(), 0, depth, counts);
+			}
+			return counts;
+		}
+
+		/**
+		 * Makes room for the moves of each position on a path.
+		 *
+		 * @param depth the most moves on the path
+		 * @return an array of moves for each move on the path
+		 */
+		private int[][] moveBuffers(int depth) {
+			return new int[depth + 1][state.getWidth() * state.getHeight()];
+		}
+	}
+
+	/**
+	 * Adds one position to the counts.
+	 *
+	 * @param counts the counts
+	 * @param ply the number of moves made to reach the position
+	 * @param terminal whether the game is over
+	 * @param winner the winner, or null
+	 */
+	private static void record(long[] counts, int ply, boolean terminal, Player winner) {
+		counts[ply * 4 + NODES]++;
+		if(terminal)
+			counts[ply * 4 + (winner == Player.X ? X_WINS : winner == Player.O ? O_WINS : TIES)]++;
+	}
+
+	/**
+	 * Adds counts from below a position to the counts of a position above it.
+	 *
+	 * @param counts the counts of the position above
+	 * @param offset where the position below starts in the counts above
+	 * @param below the counts of the position below
+	 */
+	private static void add(long[] counts, int offset, long[] below) {
+		for(int i = 0; i < below.length; i++)
+			counts[offset + i] += below[i];
+	}
+
+	/**
+	 * Counts every line of play from an immutable state.
+	 *
+	 * @param state the state
+	 * @param ply the number of moves made to reach it
+	 * @param remaining the most moves to count below it
+	 * @param counts the counts
+	 */
+	private static void walk(GameState state, int ply, int remaining, long[] counts) {
+		boolean terminal = state.isTerminal();
+		record(counts, ply, terminal, terminal ? state.getWinner() : null);
+		if(terminal || remaining == 0)
+			return;
+		for(Move move : state.getAvailableMoves())
+			walk(state.transition(move), ply + 1, remaining - 1, counts);
+	}
+
+	/**
+	 * Counts every line of play from a search board's position.
+	 *
+	 * @param board the board, which is left as it was
+	 * @param moves room for the moves of each position on the path
+	 * @param ply the number of moves made to reach the position
+	 * @param remaining the most moves to count below it
+	 * @param counts the counts
+	 */
+	private static void walk(SearchBoard board, int[][] moves, int ply, int remaining, long[] counts) {
+		boolean terminal = board.isTerminal();
+		record(counts, ply, terminal, terminal ? board.getWinner() : null);
+		if(terminal || remaining == 0)
+			return;
+		int[] cells = moves[ply];
+		int count = board.getMoves(cells);
+		for(int i = 0; i < count; i++) {
+			board.make(cells[i]);
+			walk(board, moves, ply + 1, remaining - 1, counts);
+			board.unmake(cells[i]);
+		}
+	}
+
+	/**
+	 * Counts every line of play from a packed board.
+	 *
+	 * @param board the packed board
+	 * @param ply the number of moves made to reach it
+	 * @param remaining the most moves to count below it
+	 * @param counts the counts
+	 */
+	private static void walk(int board, int ply, int remaining, long[] counts) {
+		int moves = Board.getMoves(board);
+		record(counts, ply, moves == 0, moves == 0 ? Board.getWinner(board) : null);
+		if(remaining == 0)
+			return;
+		for(; moves != 0; moves &= moves - 1)
+			walk(Board.make(board, Integer.numberOfTrailingZeros(moves)), ply + 1, remaining - 1, counts);
+	}
+
+	/**
+	 * Counts every line of play from an immutable state, remembering the
+	 * counts of each position.  Every position with the same key is the same
+	 * number of moves from the starting position, so it always has the same
+	 * counts.
+	 *
+	 * @param state the state
+	 * @param remaining the most moves to count below it
+	 * @param memo the remembered counts
+	 * @return the counts, which must not be changed
+	 */
+	private static long[] memoize(GameState state, int remaining, ConcurrentHashMap<Long, long[]> memo) {
+		long[] counts = memo.get(state.getKey());
+		if(counts != null)
+			return counts;
+		counts = new long[(remaining + 1) * 4];
+		boolean terminal = state.isTerminal();
+		record(counts, 0, terminal, terminal ? state.getWinner() : null);
+		if(!terminal && remaining > 0)
+			for(Move move : state.getAvailableMoves())
+				add(counts, 4, memoize(state.transition(move), remaining - 1, memo));
+		memo.put(state.getKey(), counts);
+		return counts;
+	}
+
+	/**
+	 * Counts every line of play from a search board's position, remembering
+	 * the counts of each position.
+	 *
+	 * @param board the board, which is left as it was
+	 * @param moves room for the moves of each position on the path, by remaining depth
+	 * @param remaining the most moves to count below it
+	 * @param memo the remembered counts
+	 * @return the counts, which must not be changed
+	 */
+	private static long[] memoize(SearchBoard board, int[][] moves, int remaining, ConcurrentHashMap<Long, long[]> memo) {
+		long key = board.getKey();
+		long[] counts = memo.get(key);
+		if(counts != null)
+			return counts;
+		counts = new long[(remaining + 1) * 4];
+		boolean terminal = board.isTerminal();
+		record(counts, 0, terminal, terminal ? board.getWinner() : null);
+		if(!terminal && remaining > 0) {
+			int[] cells = moves[remaining];
+			int count = board.getMoves(cells);
+			for(int i = 0; i < count; i++) {
+				board.make(cells[i]);
+				add(counts, 4, memoize(board, moves, remaining - 1, memo));
+				board.unmake(cells[i]);
+			}
+		}
+		memo.put(key, counts);
+		return counts;
+	}
+
+	/**
+	 * Counts every line of play from a packed board, remembering the counts
+	 * of each position.
+	 *
+	 * @param board the packed board
+	 * @param remaining the most moves to count below it
+	 * @param memo the remembered counts
+	 * @return the counts, which must not be changed
+	 */
+	private static long[] memoize(int board, int remaining, ConcurrentHashMap<Long, long[]> memo) {
+		long[] counts = memo.get((long) board);
+		if(counts != null)
+			return counts;
+		counts = new long[(remaining + 1) * 4];
+		int moves = Board.getMoves(board);
+		record(counts, 0, moves == 0, moves == 0 ? Board.getWinner(board) : null);
+		if(remaining > 0)
+			for(; moves != 0; moves &= moves - 1)
+				add(counts, 4, memoize(Board.make(board, Integer.numberOfTrailingZeros(moves)), remaining - 1, memo));
+		memo.put((long) board, counts);
+		return counts;
+	}
+
+	/**
+	 * Counts every game of Tic Tac Toe with every backend, with and without
+	 * memoization, checks the counts against the known totals and each
+	 * other, and reports how fast each backend is.
+	 *
+	 * @param args the most moves to count (default 9)
+	 * @throws IllegalStateException if any count is wrong
+	 */
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : Board.CELLS;
+		Results expected = null;
+		for(boolean memoize : new boolean[] { false, true }) {
+			Perft perft = new Perft(memoize);
+			for(Backend backend : Backend.values()) {
+				for(GameState state : new GameState[] { new State(), new MNKState(3, 3, 3) }) {
+					if(backend == Backend.PACKED && !(state instanceof State))
+						continue;
+					// Count once to warm up, then once to time.
+					perft.count(state, depth, backend);
+					Results results = perft.count(state, depth, backend);
+					String name = backend + " (" + state.getClass().getSimpleName() + (memoize ? ", memoized" : "") + ")";
+					System.out.println(String.format("%-36s %,14.0f nodes/s", name, results.getNodesPerSecond()));
+					if(expected == null) {
+						expected = results;
+						System.out.println(results);
+					}
+					else if(!results.matches(expected))
+						throw new IllegalStateException(name + " counted differently:\n" + results);
+				}
+			}
+		}
+		if(depth >= Board.CELLS && (expected.getGames() != TIC_TAC_TOE_GAMES || expected.getNodes() != TIC_TAC_TOE_NODES || Results.sum(expected.xWins) != TIC_TAC_TOE_X_WINS || Results.sum(expected.oWins) != TIC_TAC_TOE_O_WINS || Results.sum(expected.ties) != TIC_TAC_TOE_TIES))
+			throw new IllegalStateException("The counts do not match the known totals for Tic Tac Toe.");
+		System.out.println("Every backend agrees" + (depth >= Board.CELLS ? " with the known totals." : "."));
+	}
+}
@@ -0,0 +1,253 @@
+package com.stephengware.java.games.mm_game;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.stephengware.java.games.mm_game.ai.BotFactory;
+import com.stephengware.java.games.mm_game.record.GameRecord;
+import com.stephengware.java.games.mm_game.record.GameRecordWriter;
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Player;
+import com.stephengware.java.games.mm_game.state.State;
+
+/**
+ * Plays many {@link Game games} between two kinds of bot at the same time,
+ * on a fixed number of threads.
+ * <p>
+ * Every game gets new bots from a {@link BotFactory}, seeded from the
+ * tournament's seed and the game's number alone, so a tournament with the
+ * same seed always has the same results no matter how many threads play it,
+ * as long as the bots do not share anything between games.  (Bots sharing an
+ * {@link com.stephengware.java.games.mm_game.ai.EvaluationCache
+ * EvaluationCache}, for example, still win the same games, but the work they
+ * do depends on which games finished first.)
+ * The results are added up without locking, so the threads never wait on
+ * each other.
+ * <p>
+ * If the tournament has a {@link GameRecordWriter}, every game is recorded
+ * along with its seed, so any game can be replayed later.  If it has a
+ * {@link GameAnalyzer}, every game is added to its statistics as it ends.
+ * 
+ * @author Stephen G. Ware
+ */
+public class Tournament {
+
+	/**
+	 * The combined results of every game played so far.  Each total can be
+	 * read with {@link LongAdder#sum()}.
+	 */
+	public static class Results {
+		
+		/** The number of games played */
+		public final LongAdder games = new LongAdder();
+		
+		/** The number of games won by X */
+		public final LongAdder xWins = new LongAdder();
+		
+		/** The number of games won by O */
+		public final LongAdder oWins = new LongAdder();
+		
+		/** The number of games tied */
+		public final LongAdder ties = new LongAdder();
+		
+		/** The number of moves considered by player X in all games */
+		public final LongAdder xWork = new LongAdder();
+		
+		/** The number of moves considered by player O in all games */
+		public final LongAdder oWork = new LongAdder();
+		
+		/** The number of transposition table hits by player X in all games */
+		public final LongAdder xHits = new LongAdder();
+		
+		/** The number of transposition table hits by player O in all games */
+		public final LongAdder oHits = new LongAdder();
+		
+		/**
+		 * Adds the results of one game.
+		 * 
+		 * @param game the game, which is over
+		 */
+		void add(Game game) {
+			games.increment();
+			if(game.winner == Player.X)
+				xWins.increment();
+			else if(game.winner == Player.O)
+				oWins.increment();
+			else
+				ties.increment();
+			xWork.add((long) game.xWork);
+			oWork.add((long) game.oWork);
+			xHits.add((long) game.xHits);
+			oHits.add((long) game.oHits);
+		}
+	}
+	
+	/** Makes the X player for each game */
+	public final BotFactory x;
+	
+	/** Makes the O player for each game */
+	public final BotFactory o;
+	
+	/** The state in which every game begins */
+	public final GameState initial;
+	
+	/** The number of games played at once */
+	public final int threads;
+	
+	/** Records every game, or null */
+	public final GameRecordWriter records;
+	
+	/** Analyzes every game, or null */
+	public final GameAnalyzer analyzer;
+	
+	/**
+	 * Constructs a tournament of Tic Tac Toe games which uses one thread for
+	 * each processor.
+	 * 
+	 * @param x makes the X player for each game
+	 * @param o makes the O player for each game
+	 */
+	public Tournament(BotFactory x, BotFactory o) {
+		this(x, o, new State(), Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Constructs a tournament.
+	 * 
+	 * @param x makes the X player for each game
+	 * @param o makes the O player for each game
+	 * @param initial the state in which every game begins
+	 * @param threads the number of games played at once
+	 */
+	public Tournament(BotFactory x, BotFactory o, GameState initial, int threads) {
+		this(x, o, initial, threads, null);
+	}
+	
+	/**
+	 * Constructs a tournament which records every game.  The writer is not
+	 * closed when the tournament ends.
+	 * 
+	 * @param x makes the X player for each game
+	 * @param o makes the O player for each game
+	 * @param initial the state in which every game begins
+	 * @param threads the number of games played at once
+	 * @param records records every game, or null
+	 */
+	public Tournament(BotFactory x, BotFactory o, GameState initial, int threads, GameRecordWriter records) {
+		this(x, o, initial, threads, records, null);
+	}
+	
+	/**
+	 * Constructs a tournament which records and analyzes every game.  The
+	 * writer is not closed when the tournament ends.
+	 * 
+	 * @param x makes the X player for each game
+	 * @param o makes the O player for each game
+	 * @param initial the state in which every game begins
+	 * @param threads the number of games played at once
+	 * @param records records every game, or null
+	 * @param analyzer analyzes every game, or null
+	 * @throws IllegalArgumentException if games are recorded or analyzed but
+	 * do not start from an empty grid, are on a grid too large to record, or
+	 * are on a different grid than the analyzer's
+	 */
+	public Tournament(BotFactory x, BotFactory o, GameState initial, int threads, GameRecordWriter records, GameAnalyzer analyzer) {
+		if(threads < 1)
+			throw new IllegalArgumentException("A tournament needs at least one thread.");
+		if((records != null || analyzer != null) && initial.getEmptySquares() != initial.getWidth() * initial.getHeight())
+			throw new IllegalArgumentException("Only games which start from an empty grid can be recorded or analyzed.");
+		if(records != null && (initial.getWidth() > GameRecord.MAX_SIZE || initial.getHeight() > GameRecord.MAX_SIZE || initial.getWinLength() > GameRecord.MAX_SIZE))
+			throw new IllegalArgumentException("Only games on grids of at most " + GameRecord.MAX_SIZE + "x" + GameRecord.MAX_SIZE + " can be recorded.");
+		if(analyzer != null && (initial.getWidth() != analyzer.table.width || initial.getHeight() != analyzer.table.height || initial.getWinLength() != analyzer.table.winLength))
+			throw new IllegalArgumentException("The analyzer is for " + analyzer.table.width + "," + analyzer.table.height + "," + analyzer.table.winLength + " games, not " + initial.getWidth() + "," + initial.getHeight() + "," + initial.getWinLength() + " games.");
+		this.x = x;
+		this.o = o;
+		this.initial = initial;
+		this.threads = threads;
+		this.records = records;
+		this.analyzer = analyzer;
+	}
+	
+	/**
+	 * Plays a number of games and waits for them all to finish.
+	 * 
+	 * @param games the number of games to play
+	 * @param seed the seed from which every game's seeds are derived
+	 * @return the combined results
+	 */
+	public Results play(long games, long seed) {
+		Results results = new Results();
+		play(games, seed, results);
+		return results;
+	}
+	
+	/**
+	 * Plays a number of games, adding their results to some existing results,
+	 * and waits for them all to finish.
+	 * 
+	 * @param games the number of games to play
+	 * @param seed the seed from which every game's seeds are derived
+	 * @param results the results to add to
+	 */
+	public void play(long games, long seed, Results results) {
+		// Each thread takes the next unplayed game until none are left, so
+		// there is never more than one task per thread waiting to run.
+		AtomicLong next = new AtomicLong();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			ArrayList<Future<?>> workers = new ArrayList<>();
+			for(int i = 0; i < threads; i++) {
+				workers.add(executor.submit(() -> {
+					for(long game = next.getAndIncrement(); game < games; game = next.getAndIncrement())
+						results.add(playGame(game, seed));
+				}));
+			}
+			for(Future<?> worker : workers)
+				worker.get();
+		}
+		catch(InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("The tournament was interrupted.", ex);
+		}
+		catch(ExecutionException ex) {
+			if(ex.getCause() instanceof RuntimeException)
+				throw (RuntimeException) ex.getCause();
+			throw new IllegalStateException("A game failed.", ex.getCause());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Plays one game of the tournament.
+	 * 
+	 * @param game the game's number
+	 * @param seed the tournament's seed
+	 * @return the game, which is over
+	 */
+	public Game playGame(long game, long seed) {
+		long gameSeed = mix(seed + mix(game));
+		GameListener listener = GameListener.both(records == null ? null : records.listener(gameSeed), analyzer == null ? null : analyzer.listener());
+		return new Game(x.create(gameSeed), o.create(mix(gameSeed)), initial, listener);
+	}
+	
+	/**
+	 * Scrambles a number so that nearby numbers give unrelated seeds.
+	 * 
+	 * @param z the number
+	 * @return the scrambled number
+	 */
+	private static long mix(long z) {
+		// The SplitMix64 generator's step and finalizer.
+		z += 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -1,141 +1,345 @@
 package com.stephengware.java.games.mm_game.ai;
 
+import com.stephengware.java.games.mm_game.ai.TranspositionTable.Bound;
+import com.stephengware.java.games.mm_game.state.Board;
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Move;
 import com.stephengware.java.games.mm_game.state.Player;
+import com.stephengware.java.games.mm_game.state.SearchBoard;
 import com.stephengware.java.games.mm_game.state.State;
+import com.stephengware.java.games.mm_game.state.Symmetry;
 
 /**
  * This bot performs just as well as {@link MinMaxBot} but expands
  * significantly fewer nodes by intelligently pruning the tree.
+ * <p>
+ * The bot does not build a {@link GameTree}.  It makes and takes back moves
+ * on one {@link SearchBoard} instead, so nothing is allocated for each node.
+ * <p>
+ * A bot may also share an {@link EvaluationCache} with
+ * other bots.  Every position whose exact value it finds is added to the
+ * cache, and no position already in the cache is searched again, so once
+ * the cache is warm most decisions are a single lookup.
  * 
  * @author Stephen G. Ware
  */
 public class AlphaBetaBot implements Bot {
 
+	/** Remembers positions already searched, or null to search every node */
+	private final TranspositionTable table;
+	
+	/**
+	 * Whether the search treats positions that are rotations or reflections
+	 * of each other as the same position
+	 */
+	private final boolean symmetric;
+	
+	/** Decides the order in which children are searched, or null */
+	private final MoveOrdering ordering;
+	
+	/** The exact values of positions shared with other bots, or null */
+	private final EvaluationCache cache;
+	
+	/** The salt of the current decision's grid in the cache (see {@link EvaluationCache#salt(GameState)}) */
+	private long salt;
+	
+	/** The moves of the node being searched at each ply */
+	private int[][] moves;
+	
+	/** The cell number of the best move at the root */
+	private int rootMove;
+	
+	/** The number of transposition table hits during the current decision */
+	private int hits;
+	
+	/** Measurements of the current decision */
+	private SearchMetrics metrics;
+	
+	/**
+	 * Constructs an alpha beta bot which searches every node it reaches.
+	 */
+	public AlphaBetaBot() {
+		this(null);
+	}
+	
+	/**
+	 * Constructs an alpha beta bot which does not search below positions
+	 * whose values are already known from a {@link TranspositionTable}.
+	 * 
+	 * @param table the transposition table, which is kept between decisions
+	 */
+	public AlphaBetaBot(TranspositionTable table) {
+		this(table, false, null);
+	}
+	
+	/**
+	 * Constructs an alpha beta bot which searches children in the order
+	 * chosen by a {@link MoveOrdering}, reporting every cutoff back to it.
+	 * Searching better moves first prunes more of the tree.
+	 * 
+	 * @param table the transposition table, which is kept between decisions, or null
+	 * @param symmetric whether to search in canonical space
+	 * @param ordering decides the order in which children are searched, or null
+	 */
+	public AlphaBetaBot(TranspositionTable table, boolean symmetric, MoveOrdering ordering) {
+		this(table, symmetric, ordering, null);
+	}
+	
+	/**
+	 * Constructs an alpha beta bot which may also search in canonical space
+	 * and share the exact values of the positions it solves with other bots
+	 * through an {@link EvaluationCache}.
+	 * <p>
+	 * In canonical space, the root is replaced by its canonical board (see
+	 * {@link Symmetry}), moves equivalent by symmetry are searched only once,
+	 * and the transposition table (if any) stores one entry for each group
+	 * of symmetric positions.  The chosen move is mapped back onto the
+	 * original board.
+	 * 
+	 * @param table the transposition table, which is kept between decisions, or null
+	 * @param symmetric whether to search in canonical space
+	 * @param ordering decides the order in which children are searched, or null
+	 * @param cache the cache of exact values, such as {@link EvaluationCache#SHARED}, or null
+	 */
+	public AlphaBetaBot(TranspositionTable table, boolean symmetric, MoveOrdering ordering, EvaluationCache cache) {
+		this.table = table;
+		this.symmetric = symmetric;
+		this.ordering = ordering;
+		this.cache = cache;
+	}
+	
 	@Override
-	public Decision chooseMove(State state) {
-		GameTree root = new GameTree(state);
-		double value;
-		if(state.getCurrentPlayer() == Player.X)
-			value = findMax(root, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+	public Decision chooseMove(GameState state) {
+		hits = 0;
+		metrics = new SearchMetrics();
+		metrics.start();
+		int transform = Symmetry.IDENTITY;
+		if(symmetric) {
+			if(!(state instanceof State))
+				throw new IllegalArgumentException("Symmetric search is only supported for Tic Tac Toe.");
+			int board = ((State) state).getBoard();
+			transform = Symmetry.getCanonicalTransform(board);
+			state = new State(Symmetry.transform(transform, board));
+		}
+		if(cache != null)
+			salt = EvaluationCache.salt(state);
+		SearchBoard board = new SearchBoard(state);
+		rootMove = TranspositionTable.NO_MOVE;
+		metrics.node(0);
+		if(cache != null) {
+			long entry = cache.probe(key(board) ^ salt);
+			if(entry != EvaluationCache.MISS && EvaluationCache.getMove(entry) != TranspositionTable.NO_MOVE) {
+				hits++;
+				metrics.stop();
+				Move move = board.getMove(EvaluationCache.getMove(entry));
+				return new Decision(symmetric ? Symmetry.transform(Symmetry.inverse(transform), move) : move, (int) metrics.getNodes(), hits, metrics);
+			}
+		}
+		moves = new int[board.getEmptySquares() + 1][board.width * board.height];
+		if(board.getCurrentPlayer() == Player.X)
+			findMax(board, 0, Integer.MIN_VALUE, Integer.MAX_VALUE);
 		else
-			value = findMin(root, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
-		for(GameTree child : root.children)
-			if(child.value == value)
-				return new Decision(child.move, root.size());
-		return null;
+			findMin(board, 0, Integer.MIN_VALUE, Integer.MAX_VALUE);
+		metrics.stop();
+		if(rootMove == TranspositionTable.NO_MOVE)
+			return null;
+		Move move = board.getMove(rootMove);
+		return new Decision(symmetric ? Symmetry.transform(Symmetry.inverse(transform), move) : move, (int) metrics.getNodes(), hits, metrics);
 	}
 
 	/**
-	 * Given a {@link GameTree} node, expand its children (if any) to find the
-	 * node with the highest minimum utility value.
+	 * Searches below a board's position to find the child with the highest
+	 * minimum utility value.
 	 * 
-	 * @param tree the node whose children need to be expanded
+	 * @param board the board, which is in the same position again when this returns
+	 * @param ply the number of moves between the root and the board's position
 	 * @param alpha the highest utility value discovered so far in this branch of the tree (i.e. best for X)
 	 * @param beta the lowest utility value discovered so far in this branch of the tree (i.e. best for O)
-	 * @return the utility value of the node with the highest minimum utility
+	 * @return the utility value of the child with the highest minimum utility
 	 */
-	private double findMax(GameTree tree, double alpha, double beta) {
-		// First, check if this node is a leaf node (i.e. the game is over)
-		// using Tree#state#isTerminal().  If so, simply return the utility of
-		// this state.
-		if (tree.state.isTerminal()){
-			return Utility.evaluate(tree.state);
+	private int findMax(SearchBoard board, int ply, int alpha, int beta) {
+		// First, check if this position is a leaf node (i.e. the game is
+		// over).  If so, simply return the utility of this position.
+		if(board.isTerminal()) {
+			metrics.leaf();
+			return Utility.score(board);
 		}
-		// If this node is not a leaf, then we need to expand all of its
-		// children and find the one with the highest minimum utility value.
-		// Start with the lowest possible number, Double#NEGATIVE_INFINITY and
-		// work your way up from there.
-		double max = Double.NEGATIVE_INFINITY;
-		// You can check if a node has more children that have not yet been
-		// explored using GameTree#hasNextChild().
-		while(tree.hasNextChild()){
-		
-		// You can get the next unexplored child node with GameTree#getNextChild().
-			GameTree child = tree.getNextChild();
-
-		// Find the lowest possible utility value the child node can have.
-			child.value = findMin(child, alpha, beta);
-		
-		// Update 'max' based on this new information.  'max' should always hold the
-		// largest value we have discovered so far.
-			max = max(max, child.value);
-		
-		// The parameter 'beta' holds the lowest utility value that has been
-		// discovered so far in this branch of the game tree.  We are currently
-		// looking for the child with the highest value, but if we find something
-		// that is greater than or equal to alpha, there is no reason to bother
-		// checking more children nodes because a better move must already exist
-		// somewhere else that has already been explored.
-			if (max >= beta){
+		// If this position has been searched before with a window that
+		// settles its value here, there is no need to search it again.
+		if(table != null && ply > 0) {
+			int slot = table.probe(key(board));
+			if(slot != -1 && table.isCutoff(slot, alpha, beta)) {
+				hits++;
+				return (int) table.getValue(slot);
+			}
+		}
+		if(cache != null && ply > 0) {
+			long entry = cache.probe(key(board) ^ salt);
+			if(entry != EvaluationCache.MISS) {
+				hits++;
+				return (int) EvaluationCache.getValue(entry);
+			}
+		}
+		int alphaOriginal = alpha;
+		int best = TranspositionTable.NO_MOVE;
+		int max = Integer.MIN_VALUE;
+		int[] children = moves[ply];
+		int count = getMoves(board, children, ply);
+		for(int index = 0; index < count; index++) {
+			int cell = children[index];
+			board.make(cell);
+			metrics.node(ply + 1);
+			int value = findMin(board, ply + 1, alpha, beta);
+			board.unmake(cell);
+			if(value > max) {
+				max = value;
+				best = cell;
+			}
+			// The parameter 'beta' holds the lowest utility value that has
+			// been discovered so far in this branch of the game tree.  We are
+			// looking for the child with the highest value, but if we find
+			// something that is greater than or equal to beta, there is no
+			// reason to bother checking more children because a better move
+			// must already exist somewhere else that has already been explored.
+			if(max >= beta) {
+				metrics.cutoff(ply);
+				if(ordering != null)
+					ordering.cutoff(board, cell, ply, board.getEmptySquares(), index);
+				store(board, max, Bound.LOWER, best);
 				return max;
 			}
-			alpha = max(alpha, max);
-		
-		// Update alpha to be the lowest value discovered so far.
+			alpha = Math.max(alpha, max);
 		}
+		if(ply == 0)
+			rootMove = best;
+		store(board, max, max <= alphaOriginal ? Bound.UPPER : Bound.EXACT, best);
 		return max;
 	}
-
-	private double max(double max, double child_value) {
-		if (max > child_value)
-			return max;
-		else{ 
-			return child_value;
-		}
-	}
 	
 	/**
-	 * Given a {@link GameTree} node, expand its children (if any) to find the
-	 * node with the lowest maximum utility value.
+	 * Searches below a board's position to find the child with the lowest
+	 * maximum utility value.
 	 * 
-	 * @param tree the node whose children need to be expanded
+	 * @param board the board, which is in the same position again when this returns
+	 * @param ply the number of moves between the root and the board's position
 	 * @param alpha the highest utility value discovered so far in this branch of the tree (i.e. best for X)
 	 * @param beta the lowest utility value discovered so far in this branch of the tree (i.e. best for O)
-	 * @return the utility value of the node with the lowest maximum utility
+	 * @return the utility value of the child with the lowest maximum utility
 	 */
-	private double findMin(GameTree tree, double alpha, double beta) {
+	private int findMin(SearchBoard board, int ply, int alpha, int beta) {
 		// This method is simply the opposite of #findMax.
-		//check if state#isTerminal()
-		//return utility of that state if it is.
-
-		if (tree.state.isTerminal()){
-			return Utility.evaluate(tree.state);
+		if(board.isTerminal()) {
+			metrics.leaf();
+			return Utility.score(board);
 		}
-		//initiallize positive infinity as new min
-		double min = Double.POSITIVE_INFINITY;
-
-		//Loop using while tree.hasNextChild()
-		while (tree.hasNextChild()){
-			//get next child with tree.getNextChild()
-			GameTree child = tree.getNextChild();
-
-			//find the highest possible utility value this child can have
-			child.value = findMax(child, alpha, beta);
-
-			//update min based on the new info.
-			min = min(min, child.value);
-
-			// The parameter 'alpha' holds the highest utility value that has been
-			// discovered so far in this branch of the game tree.  We are currently
-			// looking for the child with the lowest value, but if we find something
-			// that is less than or equal to alpha, there is no reason to bother checking
-			// more children nodes because a better move must already exist somewhere
-			// else that has already been explored.
-			if(min <= alpha){
+		if(table != null && ply > 0) {
+			int slot = table.probe(key(board));
+			if(slot != -1 && table.isCutoff(slot, alpha, beta)) {
+				hits++;
+				return (int) table.getValue(slot);
+			}
+		}
+		if(cache != null && ply > 0) {
+			long entry = cache.probe(key(board) ^ salt);
+			if(entry != EvaluationCache.MISS) {
+				hits++;
+				return (int) EvaluationCache.getValue(entry);
+			}
+		}
+		int betaOriginal = beta;
+		int best = TranspositionTable.NO_MOVE;
+		int min = Integer.MAX_VALUE;
+		int[] children = moves[ply];
+		int count = getMoves(board, children, ply);
+		for(int index = 0; index < count; index++) {
+			int cell = children[index];
+			board.make(cell);
+			metrics.node(ply + 1);
+			int value = findMax(board, ply + 1, alpha, beta);
+			board.unmake(cell);
+			if(value < min) {
+				min = value;
+				best = cell;
+			}
+			if(min <= alpha) {
+				metrics.cutoff(ply);
+				if(ordering != null)
+					ordering.cutoff(board, cell, ply, board.getEmptySquares(), index);
+				store(board, min, Bound.UPPER, best);
 				return min;
 			}
-			beta = min(beta, min);
-			// Update beta to be the lowest value discovered so far.
+			beta = Math.min(beta, min);
 		}
-		
+		if(ply == 0)
+			rootMove = best;
+		store(board, min, min >= betaOriginal ? Bound.LOWER : Bound.EXACT, best);
 		return min;
 	}
-
-	private double min(double min, double child_value) {
-		if (min < child_value)
-			return min;
-		else{ 
-			return child_value;
+	
+	/**
+	 * Lists the moves to search on a board, leaving out moves equivalent by
+	 * symmetry when searching in canonical space, in the order chosen by the
+	 * move ordering.
+	 * 
+	 * @param board the board
+	 * @param moves the array the cell numbers of the moves are written to
+	 * @param ply the number of moves between the root and the board's position
+	 * @return the number of moves
+	 */
+	private int getMoves(SearchBoard board, int[] moves, int ply) {
+		int count;
+		if(symmetric) {
+			int distinct = Symmetry.getDistinctMoves(board.getBoard());
+			count = 0;
+			for(int cell = 0; cell < Board.CELLS; cell++)
+				if((distinct & (1 << cell)) != 0)
+					moves[count++] = cell;
 		}
+		else
+			count = board.getMoves(moves);
+		if(ordering != null)
+			ordering.order(board, moves, count, ply);
+		return count;
+	}
+	
+	/**
+	 * Records the result of searching a board's position in the
+	 * transposition table, if this bot has one, and an exact result in the
+	 * evaluation cache, if this bot has one.
+	 * 
+	 * @param board the board
+	 * @param value the value the search found
+	 * @param bound how that value relates to the position's true value
+	 * @param best the cell number of the best move found, or {@link TranspositionTable#NO_MOVE}
+	 */
+	private void store(SearchBoard board, int value, Bound bound, int best) {
+		if(table == null && (cache == null || bound != Bound.EXACT))
+			return;
+		long key = board.getKey();
+		int move = best;
+		if(symmetric) {
+			int packed = board.getBoard();
+			int transform = Symmetry.getCanonicalTransform(packed);
+			key = Symmetry.transform(transform, packed);
+			if(move != TranspositionTable.NO_MOVE)
+				move = Symmetry.transformCell(transform, move);
+		}
+		if(table != null)
+			table.store(key, value, bound, board.getEmptySquares(), move);
+		if(cache != null && bound == Bound.EXACT)
+			cache.store(key ^ salt, value, move);
+	}
+	
+	/**
+	 * Returns the transposition table key of a board's position.
+	 * 
+	 * @param board the board
+	 * @return its key, or its canonical board when searching in canonical space
+	 */
+	private long key(SearchBoard board) {
+		if(symmetric)
+			return Symmetry.getCanonical(board.getBoard());
+		else
+			return board.getKey();
 	}
 }
@@ -0,0 +1,284 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.stephengware.java.games.mm_game.state.Board;
+import com.stephengware.java.games.mm_game.state.Move;
+import com.stephengware.java.games.mm_game.state.Player;
+import com.stephengware.java.games.mm_game.state.State;
+import com.stephengware.java.games.mm_game.state.Symmetry;
+
+/**
+ * Finds the perfect play value and best move of many Tic Tac Toe states at
+ * once, such as every state from a day's game logs.
+ * <p>
+ * A batch is first reduced to its distinct positions: states which are the
+ * same, or which are rotations or reflections of each other (see
+ * {@link Symmetry}), are solved only once.  The distinct positions are then
+ * split between the threads of a {@link ForkJoinPool}.  Every thread solves
+ * positions into one cache, indexed by canonical board, which is kept for
+ * the life of the evaluator, so a position (or any position below it) that
+ * was solved for one state or one batch is never solved again.
+ * <p>
+ * Like {@link Tablebase}, the best move is the first move in row major order
+ * on the canonical board that achieves the best value, mapped back onto each
+ * state's own board.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Stephen G. Ware
+ */
+public class BatchEvaluator {
+
+	/**
+	 * The value and best move of one state.
+	 */
+	public static class Evaluation {
+
+		/** The state */
+		public final State state;
+
+		/** The value of the state with perfect play: 1 if X wins, -1 if O wins, 0 for a tie */
+		public final int value;
+
+		/** The best move, or null if the game is over */
+		public final Move move;
+
+		/**
+		 * Constructs an evaluation.
+		 *
+		 * @param state the state
+		 * @param value the value of the state
+		 * @param move the best move, or null
+		 */
+		Evaluation(State state, int value, Move move) {
+			this.state = state;
+			this.value = value;
+			this.move = move;
+		}
+
+		@Override
+		public String toString() {
+			return value + " " + move;
+		}
+	}
+
+	/**
+	 * The evaluations of one batch, along with how long it took.
+	 */
+	public static class Results {
+
+		/** The evaluation of each state, in the order the states were given */
+		public final List<Evaluation> evaluations;
+
+		/** The number of distinct positions in the batch */
+		public final int distinct;
+
+		/** How long the batch took in nanoseconds */
+		public final long time;
+
+		/**
+		 * Constructs results.
+		 *
+		 * @param evaluations the evaluations in order
+		 * @param distinct the number of distinct positions
+		 * @param time how long the batch took in nanoseconds
+		 */
+		Results(List<Evaluation> evaluations, int distinct, long time) {
+			this.evaluations = evaluations;
+			this.distinct = distinct;
+			this.time = time;
+		}
+
+		/**
+		 * Returns the number of states evaluated per second, counting every
+		 * state in the batch (including duplicates).
+		 *
+		 * @return the throughput in positions per second
+		 */
+		public double getPositionsPerSecond() {
+			return time == 0 ? 0 : evaluations.size() * 1e9 / time;
+		}
+	}
+
+	/** The number of distinct positions below which a task is not split */
+	private static final int THRESHOLD = 64;
+
+	/** How the best move is stored when there is no move to make */
+	private static final int NONE = 0xF;
+
+	/** The threads which solve positions */
+	private final ForkJoinPool pool;
+
+	/**
+	 * The solved positions, indexed by canonical board.  The low 2 bits of
+	 * an entry hold the value plus 2 (so 0 means not yet solved) and the next
+	 * 4 bits hold the cell number of the best move, or {@link #NONE}.
+	 */
+	private final AtomicIntegerArray cache = new AtomicIntegerArray(1 << 19);
+
+	/**
+	 * Constructs a batch evaluator which uses the common fork join pool.
+	 */
+	public BatchEvaluator() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructs a batch evaluator which uses the given threads.
+	 *
+	 * @param pool the threads which solve positions
+	 */
+	public BatchEvaluator(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Evaluates a stream of states, which is read to the end first.
+	 *
+	 * @param states the states
+	 * @return the evaluation of each state in order
+	 */
+	public Results evaluate(Stream<State> states) {
+		return evaluate(states.collect(Collectors.toList()));
+	}
+
+	/**
+	 * Evaluates a collection of states.
+	 *
+	 * @param states the states
+	 * @return the evaluation of each state in the collection's iteration order
+	 */
+	public Results evaluate(Collection<State> states) {
+		long start = System.nanoTime();
+		int[] transforms = new int[states.size()];
+		int[] canonical = new int[states.size()];
+		int i = 0;
+		for(State state : states) {
+			transforms[i] = Symmetry.getCanonicalTransform(state.getBoard());
+			canonical[i] = Symmetry.transform(transforms[i], state.getBoard());
+			i++;
+		}
+		int[] distinct = canonical.clone();
+		Arrays.sort(distinct);
+		int count = 0;
+		for(int j = 0; j < distinct.length; j++)
+			if(j == 0 || distinct[j] != distinct[j - 1])
+				distinct[count++] = distinct[j];
+		pool.invoke(new SolveTask(distinct, 0, count));
+		ArrayList<Evaluation> evaluations = new ArrayList<>(states.size());
+		i = 0;
+		for(State state : states) {
+			evaluations.add(evaluate(state, transforms[i], cache.get(canonical[i])));
+			i++;
+		}
+		return new Results(Collections.unmodifiableList(evaluations), count, System.nanoTime() - start);
+	}
+
+	/**
+	 * Turns a cache entry for a state's canonical board into the state's
+	 * evaluation.
+	 *
+	 * @param state the state
+	 * @param transform the transform which turns the state's board into its canonical board
+	 * @param entry the cache entry
+	 * @return the evaluation
+	 */
+	private static Evaluation evaluate(State state, int transform, int entry) {
+		int value = (entry & 0x3) - 2;
+		int cell = entry >>> 2;
+		if(cell == NONE)
+			return new Evaluation(state, value, null);
+		cell = Symmetry.transformCell(Symmetry.inverse(transform), cell);
+		return new Evaluation(state, value, Move.get(state.getCurrentPlayer(), cell));
+	}
+
+	/**
+	 * Forgets every solved position.
+	 */
+	public void clear() {
+		for(int i = 0; i < cache.length(); i++)
+			cache.set(i, 0);
+	}
+
+	/**
+	 * Solves a range of distinct positions, splitting it in half until it is
+	 * small.
+	 */
+	private final class SolveTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The distinct canonical boards */
+		private final int[] boards;
+
+		/** The first board in the range */
+		private final int from;
+
+		/** One past the last board in the range */
+		private final int to;
+
+		SolveTask(int[] boards, int from, int to) {
+			this.boards = boards;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from <= THRESHOLD) {
+				for(int i = from; i < to; i++)
+					solve(boards[i]);
+			}
+			else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new SolveTask(boards, from, middle), new SolveTask(boards, middle, to));
+			}
+		}
+	}
+
+	/**
+	 * Solves a canonical board and every position below it which is not yet
+	 * in the cache.  Two threads may solve the same position at once; they
+	 * find the same entry, so it does not matter which one is stored.
+	 *
+	 * @param board the canonical board
+	 * @return the value of the position
+	 */
+	private int solve(int board) {
+		int entry = cache.get(board);
+		if(entry != 0)
+			return (entry & 0x3) - 2;
+		int moves = Board.getMoves(board);
+		int value;
+		int best = NONE;
+		if(moves == 0) {
+			Player winner = Board.getWinner(board);
+			value = winner == Player.X ? 1 : winner == Player.O ? -1 : 0;
+		}
+		else {
+			boolean max = Board.getCurrentPlayer(board) == Player.X;
+			value = max ? -2 : 2;
+			for(int cell = 0; cell < Board.CELLS; cell++) {
+				if((moves & (1 << cell)) == 0)
+					continue;
+				int child = solve(Symmetry.getCanonical(Board.make(board, cell)));
+				if(max ? child > value : child < value) {
+					value = child;
+					best = cell;
+				}
+			}
+		}
+		cache.set(board, (value + 2) | (best << 2));
+		return value;
+	}
+}
@@ -1,14 +1,41 @@
 package com.stephengware.java.games.mm_game.ai;
 
-import com.stephengware.java.games.mm_game.state.State;
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Move;
 
 /**
  * A bot is an artificially intelligent agent which, given the state of game,
  * decides which move to make next.
+ * <p>
+ * A {@link com.stephengware.java.games.mm_game.Game Game} also tells its
+ * bots when a game starts and after every move, by either player, so that a
+ * bot can keep what it learned while deciding one move (such as a search
+ * tree or a transposition table) and use it for the next.  A bot which
+ * keeps nothing between moves can ignore these calls.
  * 
  * @author Stephen G. Ware
  */
 public interface Bot {
 		
-	public Decision chooseMove(State state);
+	public Decision chooseMove(GameState state);
+	
+	/**
+	 * Tells the bot that a new game is starting, so it can forget anything
+	 * it kept from the last one.
+	 * 
+	 * @param initial the state in which the game begins
+	 */
+	public default void newGame(GameState initial) {
+		// Nothing is kept by default.
+	}
+	
+	/**
+	 * Tells the bot that a move, by either player, has been made in the
+	 * current game.
+	 * 
+	 * @param move the move
+	 */
+	public default void onMoveApplied(Move move) {
+		// Nothing is kept by default.
+	}
 }
@@ -0,0 +1,20 @@
+package com.stephengware.java.games.mm_game.ai;
+
+/**
+ * A bot factory makes a new {@link Bot} for each game, so that games can be
+ * played at the same time without sharing bots.  Each bot is given its own
+ * seed so that bots which make random choices play the same way no matter
+ * how many games are running or in what order they finish.
+ * 
+ * @author Stephen G. Ware
+ */
+public interface BotFactory {
+
+	/**
+	 * Makes a new bot.
+	 * 
+	 * @param seed the seed for any random choices the bot makes
+	 * @return a new bot
+	 */
+	public Bot create(long seed);
+}
@@ -17,6 +17,16 @@ public class Decision {
 	/** The number of nodes in the game tree that the bot expanded before making this decision */
 	public final int work;
 	
+	/**
+	 * The number of nodes whose value the bot found in a
+	 * {@link TranspositionTable} or an {@link EvaluationCache} rather than
+	 * searching below them
+	 */
+	public final int hits;
+	
+	/** Measurements of the search which made this decision, or null if the bot does not collect them */
+	public final SearchMetrics metrics;
+	
 	/**
 	 * Constructs a new decision object.
 	 * 
@@ -24,8 +34,34 @@ public class Decision {
 	 * @param work the number of nodes in the game tree that the bot expanded before making this decision
 	 */
 	Decision(Move move, int work) {
+		this(move, work, 0);
+	}
+	
+	/**
+	 * Constructs a new decision object for a bot which uses a
+	 * {@link TranspositionTable}.
+	 * 
+	 * @param move the move to make
+	 * @param work the number of nodes in the game tree that the bot expanded before making this decision
+	 * @param hits the number of nodes whose value was found in the transposition table
+	 */
+	Decision(Move move, int work, int hits) {
+		this(move, work, hits, null);
+	}
+	
+	/**
+	 * Constructs a new decision object for a bot which measures its search.
+	 * 
+	 * @param move the move to make
+	 * @param work the number of nodes in the game tree that the bot expanded before making this decision
+	 * @param hits the number of nodes whose value was found in the transposition table
+	 * @param metrics measurements of the search
+	 */
+	Decision(Move move, int work, int hits, SearchMetrics metrics) {
 		this.move = move;
 		this.work = work;
+		this.hits = hits;
+		this.metrics = metrics;
 	}
 	
 	@Override
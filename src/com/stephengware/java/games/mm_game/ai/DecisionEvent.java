@@ -0,0 +1,104 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import com.stephengware.java.games.mm_game.state.GameState;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event which spans one call to
+ * {@link Bot#chooseMove(com.stephengware.java.games.mm_game.state.GameState)}
+ * by an {@link InstrumentedBot}.  When no recording is running, this event
+ * costs almost nothing.
+ * <p>
+ * This class can only be loaded by a Java runtime with the flight recorder.
+ * 
+ * @author Stephen G. Ware
+ */
+@Name("com.stephengware.mm_game.Decision")
+@Label("Decision")
+@Category("Tic Tac Toe")
+@Description("A bot choosing its next move")
+class DecisionEvent extends Event {
+
+	/** The class of the bot */
+	@Label("Bot")
+	String bot;
+	
+	/** The player whose move it was */
+	@Label("Player")
+	String player;
+	
+	/** The number of empty squares when the bot decided */
+	@Label("Empty Squares")
+	int empty;
+	
+	/** The move chosen */
+	@Label("Move")
+	String move;
+	
+	/** The number of nodes expanded */
+	@Label("Nodes")
+	long nodes;
+	
+	/** The number of leaf evaluations */
+	@Label("Leaf Evaluations")
+	long leaves;
+	
+	/** The number of cutoffs */
+	@Label("Cutoffs")
+	long cutoffs;
+	
+	/** The largest ply of any node expanded */
+	@Label("Max Depth")
+	int maxDepth;
+	
+	/** The number of bytes allocated by the search */
+	@Label("Allocated")
+	@DataAmount
+	long allocated;
+	
+	/**
+	 * Creates an event and starts timing it.
+	 * 
+	 * @return the event
+	 */
+	static DecisionEvent start() {
+		DecisionEvent event = new DecisionEvent();
+		event.begin();
+		return event;
+	}
+	
+	/**
+	 * Stops timing this event and, if a recording wants it, fills it in from
+	 * a decision and commits it.
+	 * 
+	 * @param bot the bot which decided
+	 * @param state the state in which it decided
+	 * @param decision the decision, or null
+	 */
+	void finish(Bot bot, GameState state, Decision decision) {
+		end();
+		if(!shouldCommit())
+			return;
+		this.bot = bot.getClass().getSimpleName();
+		this.player = state.getCurrentPlayer().toString();
+		this.empty = state.getEmptySquares();
+		SearchMetrics metrics = decision == null ? null : decision.metrics;
+		if(decision != null) {
+			this.move = decision.move.toString();
+			this.nodes = decision.work;
+		}
+		if(metrics != null) {
+			this.leaves = metrics.getLeafEvaluations();
+			this.cutoffs = metrics.getCutoffs();
+			this.maxDepth = metrics.getMaxDepth();
+			this.allocated = metrics.getAllocatedBytes();
+		}
+		commit();
+	}
+}
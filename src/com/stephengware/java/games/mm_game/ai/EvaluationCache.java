@@ -0,0 +1,262 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.State;
+
+/**
+ * Remembers the exact values of positions, and their best moves, for every
+ * bot in the process, so that a position solved once by any bot in any game
+ * is never searched again.  Unlike a {@link TranspositionTable}, which holds
+ * bounds that are only meaningful to the search which stored them, this
+ * cache only holds values which are true no matter who asks, so it can be
+ * shared by any number of bots and games at once (see {@link #SHARED}).
+ * <p>
+ * The cache has a fixed number of slots, chosen from a memory budget, in
+ * sets of {@link #WAYS}.  A position may be stored in any slot of the set its
+ * key hashes to.  When the set is full, a slot is chosen by the clock
+ * algorithm: each slot has a bit which is set whenever it is read, and a
+ * hand sweeps the set, clearing bits, until it finds a slot whose bit is
+ * already clear.  Positions which keep being used stay in the cache.
+ * <p>
+ * Nothing is locked.  Each slot is two words, the key XORed with the entry
+ * and the entry itself, written and read separately; a slot being written
+ * by one thread while another reads it almost certainly fails the check
+ * <code>(word ^ entry) == key</code> and is treated as a miss, as in the
+ * lockless transposition tables of chess engines.  Values are kept as
+ * floats, which is exact for utilities like those of {@link Utility}.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Stephen G. Ware
+ */
+public class EvaluationCache {
+
+	/** The number of slots in each set */
+	public static final int WAYS = 4;
+
+	/** The number of bytes each slot of the cache uses */
+	public static final int ENTRY_BYTES = 8 + 8 + 1;
+
+	/** The memory budget used by {@link #SHARED} */
+	public static final int DEFAULT_BYTES = 4 * 1024 * 1024;
+
+	/** The cache shared by every bot in the process which does not have its own */
+	public static final EvaluationCache SHARED = new EvaluationCache(DEFAULT_BYTES);
+
+	/** Returned by {@link #probe(long)} when a position is not in the cache */
+	public static final long MISS = 0;
+
+	/** The bit set in every entry, so an entry is never {@link #MISS} */
+	private static final long PRESENT = 1L << 16;
+
+	/** Each slot's key XORed with its entry, then its entry, in consecutive words */
+	private final AtomicLongArray slots;
+
+	/** Whether each slot has been read since the clock hand last passed it */
+	private final byte[] referenced;
+
+	/** The slot in each set at which the clock hand next starts */
+	private final byte[] hands;
+
+	/** Used to find a key's set */
+	private final int mask;
+
+	/** The number of probes which found their position */
+	private final LongAdder hits = new LongAdder();
+
+	/** The number of probes which did not find their position */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Constructs a cache whose slots use no more than the given number of
+	 * bytes.  The number of sets is rounded down to a power of 2.
+	 *
+	 * @param bytes the memory budget
+	 */
+	public EvaluationCache(int bytes) {
+		int sets = Integer.highestOneBit(Math.max(1, bytes / (ENTRY_BYTES * WAYS)));
+		this.slots = new AtomicLongArray(sets * WAYS * 2);
+		this.referenced = new byte[sets * WAYS];
+		this.hands = new byte[sets];
+		this.mask = sets - 1;
+	}
+
+	/**
+	 * Returns a number to XOR into the keys of positions on the same kind of
+	 * grid as a state, so positions on different grids, whose keys are
+	 * computed the same way, are never mistaken for each other.
+	 *
+	 * @param state any state on the grid
+	 * @return the salt for keys on that grid
+	 */
+	public static long salt(GameState state) {
+		long grid = ((long) state.getWidth() << 24) | (state.getHeight() << 16) | (state.getWinLength() << 8) | (state instanceof State ? 1 : 0);
+		return mix(grid ^ 0x9E3779B97F4A7C15L);
+	}
+
+	/**
+	 * Returns the number of slots in this cache.
+	 *
+	 * @return the number of slots
+	 */
+	public int capacity() {
+		return referenced.length;
+	}
+
+	/**
+	 * Returns the number of slots which currently hold a position.
+	 *
+	 * @return the number of occupied slots
+	 */
+	public int size() {
+		int size = 0;
+		for(int slot = 0; slot < referenced.length; slot++)
+			if(slots.get(slot * 2 + 1) != MISS)
+				size++;
+		return size;
+	}
+
+	/**
+	 * Removes every position from this cache.  Positions stored while it is
+	 * being cleared may or may not remain.
+	 */
+	public void clear() {
+		for(int i = 0; i < slots.length(); i++)
+			slots.set(i, 0);
+	}
+
+	/**
+	 * Returns the number of probes which found their position.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of probes which did not find their position.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the fraction of probes which found their position.
+	 *
+	 * @return the hit rate, from 0 to 1
+	 */
+	public double getHitRate() {
+		long hits = getHits();
+		long total = hits + getMisses();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * Looks up a position.
+	 *
+	 * @param key the key of the position, XORed with the {@link #salt(GameState) salt} of its grid
+	 * @return the position's entry, to be read with {@link #getValue(long)}
+	 * and {@link #getMove(long)}, or {@link #MISS}
+	 */
+	public long probe(long key) {
+		int first = set(key) * WAYS;
+		for(int slot = first; slot < first + WAYS; slot++) {
+			long entry = slots.get(slot * 2 + 1);
+			if(entry != MISS && (slots.get(slot * 2) ^ entry) == key) {
+				if(referenced[slot] == 0)
+					referenced[slot] = 1;
+				hits.increment();
+				return entry;
+			}
+		}
+		misses.increment();
+		return MISS;
+	}
+
+	/**
+	 * Records the exact value of a position and its best move, replacing the
+	 * position's old entry or, if there is none, a slot chosen by the clock
+	 * algorithm.
+	 *
+	 * @param key the key of the position, XORed with the {@link #salt(GameState) salt} of its grid
+	 * @param value the value of the position with perfect play
+	 * @param move the cell number of the best move, or {@link TranspositionTable#NO_MOVE}
+	 */
+	public void store(long key, double value, int move) {
+		long entry = ((long) Float.floatToRawIntBits((float) value) << 32) | PRESENT | ((move + 1) & 0xFFFF);
+		int set = set(key);
+		int first = set * WAYS;
+		int victim = -1;
+		for(int slot = first; slot < first + WAYS; slot++) {
+			long old = slots.get(slot * 2 + 1);
+			if(old == MISS || (slots.get(slot * 2) ^ old) == key) {
+				victim = slot;
+				break;
+			}
+		}
+		if(victim == -1) {
+			// Sweep the set, giving each recently read slot a second chance.
+			int hand = hands[set];
+			while(referenced[first + hand] != 0) {
+				referenced[first + hand] = 0;
+				hand = (hand + 1) % WAYS;
+			}
+			victim = first + hand;
+			hands[set] = (byte) ((hand + 1) % WAYS);
+		}
+		referenced[victim] = 0;
+		slots.set(victim * 2 + 1, entry);
+		slots.set(victim * 2, key ^ entry);
+	}
+
+	/**
+	 * Returns the value of a position from its entry.
+	 *
+	 * @param entry an entry returned by {@link #probe(long)}
+	 * @return the value
+	 */
+	public static double getValue(long entry) {
+		return Float.intBitsToFloat((int) (entry >>> 32));
+	}
+
+	/**
+	 * Returns the best move of a position from its entry.
+	 *
+	 * @param entry an entry returned by {@link #probe(long)}
+	 * @return the cell number of the best move, or {@link TranspositionTable#NO_MOVE}
+	 */
+	public static int getMove(long entry) {
+		return (int) (entry & 0xFFFF) - 1;
+	}
+
+	/**
+	 * Returns the set a key belongs in.
+	 *
+	 * @param key the key
+	 * @return the set
+	 */
+	private int set(long key) {
+		return (int) mix(key) & mask;
+	}
+
+	/**
+	 * Spreads the bits of a number, using Murmur3's 64-bit finalizer.
+	 *
+	 * @param key the number
+	 * @return the mixed number
+	 */
+	private static long mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= key >>> 33;
+		key *= 0xC4CEB9FE1A85EC53L;
+		key ^= key >>> 33;
+		return key;
+	}
+}
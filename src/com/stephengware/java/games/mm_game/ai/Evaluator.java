@@ -0,0 +1,23 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import com.stephengware.java.games.mm_game.state.GameState;
+
+/**
+ * An evaluator estimates the utility of a state which is not the end of the
+ * game, so that a search can stop before it reaches the leaves of the game
+ * tree.  Like {@link Utility}, positive values favor player X and negative
+ * values favor player O.  An estimate must be strictly between -1 and 1 so
+ * that it never looks as good as an actual win or as bad as an actual loss.
+ * 
+ * @author Stephen G. Ware
+ */
+public interface Evaluator {
+
+	/**
+	 * Estimates the desirability of a state for player X.
+	 * 
+	 * @param state a state which is not terminal
+	 * @return a number strictly between -1 and 1
+	 */
+	public double evaluate(GameState state);
+}
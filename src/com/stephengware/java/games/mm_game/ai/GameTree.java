@@ -1,44 +1,171 @@
 package com.stephengware.java.games.mm_game.ai;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 
+import com.stephengware.java.games.mm_game.state.GameState;
 import com.stephengware.java.games.mm_game.state.Move;
 import com.stephengware.java.games.mm_game.state.State;
+import com.stephengware.java.games.mm_game.state.Symmetry;
 
 /**
  * A game tree is a representation of all the possible states that could occur
  * during the play of game and how one state is reached from another.
+ * <p>
+ * A tree may be lazy, in which case its nodes come from a {@link NodePool}
+ * and a subtree is dropped as soon as its value is known: when a node's next
+ * child is expanded, the child before it (below the root) or its descendants
+ * (at the root) go back to the pool.  Only the root keeps its
+ * {@link #getChildren() children}, so the number of nodes alive at once is roughly
+ * proportional to the depth of the search rather than the size of the tree.
  * 
  * @author Stephen G. Ware
  */
 public class GameTree {
 
 	/** The move to resulted in the current state */
-	public final Move move;
+	private Move move;
 	
 	/** The current state of the game */
-	public final State state;
+	private GameState state;
 	
 	/** The parent node of this tree (i.e. the state before this state) */
-	public final GameTree parent;
+	private GameTree parent;
 	
-	/** This node's children nodes (i.e. all possible next states) */
-	public final ArrayList<GameTree> children = new ArrayList<>();
+	/**
+	 * This node's children nodes (i.e. all possible next states); in a lazy
+	 * tree, only the root keeps its children
+	 */
+	private final ArrayList<GameTree> children = new ArrayList<>();
+	
+	/** A read-only view of {@link #children} */
+	private final List<GameTree> childrenView = Collections.unmodifiableList(children);
+	
+	/** An iterator of the next possible moves to make, or null if they are in {@link #nextCells} */
+	private Iterator<Move> nextMoves;
 	
-	/** An iterator of the next possible moves to make */
-	private final Iterator<Move> nextMoves;
+	/**
+	 * The cells of the next possible moves as a 9-bit mask, expanded lowest
+	 * first, when the state is a {@link State} whose moves need no ordering;
+	 * this avoids making a list and an iterator at every node
+	 */
+	private int nextCells;
 	
 	/** The utility value of this state (i.e. how desirable it is for the player) */
-	public double value = 0;
+	private double value = 0;
+	
+	/**
+	 * Whether moves which are equivalent by a rotation or reflection of the
+	 * grid are expanded only once (see {@link State#getDistinctMoves()})
+	 */
+	private boolean symmetric;
+	
+	/** The number of moves between the root and this node */
+	private int ply;
+	
+	/** How many of the parent's children were expanded before this one (0 for the first child and the root) */
+	private int index;
+	
+	/** Decides the order in which children are expanded, or null to expand them in the order the state lists them */
+	private MoveOrdering ordering;
+	
+	/** Where the nodes of a lazy tree come from, or null if the tree keeps every node */
+	private NodePool pool;
+	
+	/** The root of the tree this node belongs to */
+	private GameTree root;
+	
+	/** The child most recently expanded, or null */
+	private GameTree last;
+	
+	/** The number of children expanded so far */
+	private int expanded;
+	
+	/** At the root of a lazy tree, the number of nodes created so far */
+	private int created;
 	
 	/**
 	 * Constructs a new game tree with some initial state as the root.
 	 * 
 	 * @param initial the initial state of the game
 	 */
-	public GameTree(State initial) {
-		this(null, initial, null);
+	public GameTree(GameState initial) {
+		this(initial, false);
+	}
+	
+	/**
+	 * Constructs a new game tree with some initial state as the root which
+	 * optionally expands only one move from each group of moves that are
+	 * equivalent by symmetry.  Symmetric trees are only supported for Tic Tac
+	 * Toe.
+	 * 
+	 * @param initial the initial state of the game
+	 * @param symmetric whether to skip moves equivalent to ones already expanded
+	 * @throws IllegalArgumentException if the tree is symmetric and the state is not a {@link State}
+	 */
+	public GameTree(GameState initial, boolean symmetric) {
+		this(initial, symmetric, null);
+	}
+	
+	/**
+	 * Constructs a new game tree with some initial state as the root in which
+	 * every node expands its children in the order chosen by a
+	 * {@link MoveOrdering}.
+	 * 
+	 * @param initial the initial state of the game
+	 * @param symmetric whether to skip moves equivalent to ones already expanded
+	 * @param ordering decides the order in which children are expanded, or null
+	 * @throws IllegalArgumentException if the tree is symmetric and the state is not a {@link State}
+	 */
+	public GameTree(GameState initial, boolean symmetric, MoveOrdering ordering) {
+		this(initial, symmetric, ordering, null);
+	}
+	
+	/**
+	 * Constructs a new lazy game tree with some initial state as the root,
+	 * whose nodes below the root come from a {@link NodePool} and are
+	 * returned to it as soon as their values are known.  Callers must read
+	 * a child's values (such as {@link #getValue()}) before expanding its next
+	 * sibling, and must not hold on to nodes below the root's children.
+	 * 
+	 * @param initial the initial state of the game
+	 * @param symmetric whether to skip moves equivalent to ones already expanded
+	 * @param ordering decides the order in which children are expanded, or null
+	 * @param pool where the nodes come from, or null to keep every node
+	 * @throws IllegalArgumentException if the tree is symmetric and the state is not a {@link State}
+	 */
+	public GameTree(GameState initial, boolean symmetric, MoveOrdering ordering, NodePool pool) {
+		this.pool = pool;
+		init(null, initial, null, symmetric, ordering, null);
+	}
+	
+	/**
+	 * Constructs a new game tree with some initial state as the root whose
+	 * children are expanded in a given order, such as best move first.
+	 * Nodes below the root expand their children in the usual order.
+	 * 
+	 * @param initial the initial state of the game
+	 * @param moves the moves available in the initial state, in the order to expand them
+	 */
+	public GameTree(GameState initial, Iterable<Move> moves) {
+		this(initial, moves, null);
+	}
+	
+	/**
+	 * Constructs a new game tree with some initial state as the root whose
+	 * children are expanded in a given order, such as best move first.
+	 * Nodes below the root expand their children in the order chosen by a
+	 * {@link MoveOrdering}.
+	 * 
+	 * @param initial the initial state of the game
+	 * @param moves the moves available in the initial state, in the order to expand them
+	 * @param ordering decides the order in which children below the root are expanded, or null
+	 */
+	public GameTree(GameState initial, Iterable<Move> moves, MoveOrdering ordering) {
+		init(null, initial, null, false, ordering, moves);
 	}
 	
 	/**
@@ -49,19 +176,170 @@ public class GameTree {
 	 * @param state the state of the game after making that move
 	 * @param parent the parent node (i.e. the previous state)
 	 */
-	protected GameTree(Move move, State state, GameTree parent) {
+	protected GameTree(Move move, GameState state, GameTree parent) {
+		init(move, state, parent, parent != null && parent.symmetric, parent == null ? null : parent.ordering, null);
+	}
+	
+	/**
+	 * Constructs an empty node to be kept in a {@link NodePool}.
+	 */
+	GameTree() {}
+	
+	/**
+	 * Sets every field of this node, either when it is constructed or when
+	 * it is taken from a {@link NodePool} to be used again.
+	 * 
+	 * @param move the move that resulted in this state
+	 * @param state the state of the game after making that move
+	 * @param parent the parent node (i.e. the previous state)
+	 * @param symmetric whether to skip moves equivalent to ones already expanded
+	 * @param ordering decides the order in which children are expanded, or null
+	 * @param moves the moves to expand in order, or null to generate them from the state
+	 */
+	void init(Move move, GameState state, GameTree parent, boolean symmetric, MoveOrdering ordering, Iterable<Move> moves) {
 		this.move = move;
 		this.state = state;
 		this.parent = parent;
-		this.nextMoves = state.getAvailableMoves().iterator();
+		this.symmetric = symmetric;
+		this.ply = parent == null ? 0 : parent.ply + 1;
+		this.index = parent == null ? 0 : parent.expanded;
+		this.ordering = ordering;
+		this.root = parent == null ? this : parent.root;
+		if(parent != null)
+			this.pool = parent.pool;
+		this.value = 0;
+		this.last = null;
+		this.expanded = 0;
+		this.created = 1;
+		if(symmetric && !(state instanceof State))
+			throw new IllegalArgumentException("Symmetric search is only supported for Tic Tac Toe.");
+		this.nextMoves = null;
+		this.nextCells = 0;
+		if(moves == null && ordering == null && state instanceof State) {
+			State tictactoe = (State) state;
+			nextCells = symmetric ? Symmetry.getDistinctMoves(tictactoe.getBoard()) : tictactoe.getMoveMask();
+			return;
+		}
+		if(moves == null) {
+			if(symmetric)
+				moves = ((State) state).getDistinctMoves();
+			else
+				moves = state.getAvailableMoves();
+			if(ordering != null)
+				moves = ordering.order(state, moves, ply);
+		}
+		this.nextMoves = moves.iterator();
 	}
 	
 	/**
-	 * Returns the number of nodes in this tree.
+	 * Returns the move that resulted in this node's state.
+	 * 
+	 * @return the move, or null at the root
+	 */
+	public Move getMove() {
+		return move;
+	}
+	
+	/**
+	 * Returns the state of the game at this node.
+	 * 
+	 * @return the state
+	 */
+	public GameState getState() {
+		return state;
+	}
+	
+	/**
+	 * Returns the parent node of this tree (i.e. the state before this state).
+	 * 
+	 * @return the parent, or null at the root
+	 */
+	public GameTree getParent() {
+		return parent;
+	}
+	
+	/**
+	 * Returns whether moves which are equivalent by a rotation or reflection
+	 * of the grid are expanded only once.
+	 * 
+	 * @return true if the tree is symmetric, false otherwise
+	 */
+	public boolean isSymmetric() {
+		return symmetric;
+	}
+	
+	/**
+	 * Returns the number of moves between the root and this node.
+	 * 
+	 * @return the ply
+	 */
+	public int getPly() {
+		return ply;
+	}
+	
+	/**
+	 * Returns how many of the parent's children were expanded before this
+	 * one.
+	 * 
+	 * @return the index, which is 0 for the first child and the root
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
+	/**
+	 * Returns what decides the order in which children are expanded.
+	 * 
+	 * @return the ordering, or null if children are expanded in the order the state lists them
+	 */
+	public MoveOrdering getOrdering() {
+		return ordering;
+	}
+	
+	/**
+	 * Returns the children of this node expanded so far (i.e. all possible
+	 * next states once every child has been expanded).  In a lazy tree, only
+	 * the root keeps its children.
+	 * 
+	 * @return a read-only list of the children
+	 */
+	public List<GameTree> getChildren() {
+		return childrenView;
+	}
+	
+	/**
+	 * Returns the utility value of this state (i.e. how desirable it is for
+	 * the player), as set by the search which expanded it.
+	 * 
+	 * @return the value, or 0 if no search has set it
+	 */
+	public double getValue() {
+		return value;
+	}
+	
+	/**
+	 * Sets the utility value of this state once a search has found it.
+	 * 
+	 * @param value the value
+	 */
+	void setValue(double value) {
+		this.value = value;
+	}
+	
+	/**
+	 * Returns the number of nodes in this tree.  The root of a lazy tree
+	 * counts every node created, including those already returned to the
+	 * pool.
 	 * 
 	 * @return the number of nodes
+	 * @throws IllegalStateException if this is a lazy tree's node below the root
 	 */
 	public int size() {
+		if(pool != null) {
+			if(parent != null)
+				throw new IllegalStateException("Only the root of a lazy tree knows its size.");
+			return created;
+		}
 		int size = 1;
 		for(GameTree child : children)
 			size += child.size();
@@ -75,6 +353,8 @@ public class GameTree {
 	 * @return true if there are more children nodes to add, false otherwise
 	 */
 	public boolean hasNextChild() {
+		if(nextMoves == null)
+			return nextCells != 0;
 		return nextMoves.hasNext();
 	}
 	
@@ -84,9 +364,90 @@ public class GameTree {
 	 * @return the next child node
 	 */
 	public GameTree getNextChild() {
-		Move move = nextMoves.next();
-		GameTree child = new GameTree(move, state.transition(move), this);
-		children.add(child);
+		Move move;
+		GameState next;
+		if(nextMoves == null) {
+			if(nextCells == 0)
+				throw new NoSuchElementException("Every child has been expanded.");
+			int cell = Integer.numberOfTrailingZeros(nextCells);
+			nextCells &= nextCells - 1;
+			move = Move.get(state.getCurrentPlayer(), cell);
+			next = ((State) state).transition(cell);
+		}
+		else {
+			move = nextMoves.next();
+			next = state.transition(move);
+		}
+		GameTree child;
+		if(pool == null) {
+			child = new GameTree(move, next, this);
+			children.add(child);
+		}
+		else {
+			// The previous child's value is known, so its subtree can go.
+			if(last != null) {
+				last.releaseDescendants();
+				if(parent != null)
+					pool.release(last);
+			}
+			child = pool.allocate();
+			child.init(move, next, this, symmetric, ordering, null);
+			root.created++;
+			if(parent == null)
+				children.add(child);
+		}
+		last = child;
+		expanded++;
 		return child;
 	}
+	
+	/**
+	 * Returns every node below this one in a lazy tree to the pool.  Below
+	 * the root only the most recently expanded child of each node is still
+	 * held, so this walks a single path.
+	 */
+	private void releaseDescendants() {
+		GameTree node = last;
+		while(node != null) {
+			GameTree next = node.last;
+			pool.release(node);
+			node = next;
+		}
+		last = null;
+	}
+	
+	/**
+	 * Returns every node of a lazy tree except the root to the pool once the
+	 * search is over, so the next search can use them.  This does nothing
+	 * for a tree which keeps every node.
+	 * 
+	 * @throws IllegalStateException if this node is not the root
+	 */
+	public void release() {
+		if(parent != null)
+			throw new IllegalStateException("Only the root of a tree can be released.");
+		if(pool == null)
+			return;
+		for(GameTree child : children) {
+			child.releaseDescendants();
+			pool.release(child);
+		}
+		children.clear();
+		last = null;
+	}
+	
+	/**
+	 * Forgets everything this node refers to, so that a node waiting in a
+	 * {@link NodePool} does not keep old states reachable.
+	 */
+	void clear() {
+		move = null;
+		state = null;
+		parent = null;
+		nextMoves = null;
+		nextCells = 0;
+		ordering = null;
+		root = null;
+		last = null;
+	}
 }
@@ -0,0 +1,380 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Move;
+import com.stephengware.java.games.mm_game.state.SearchBoard;
+import com.stephengware.java.games.mm_game.state.State;
+import com.stephengware.java.games.mm_game.state.Symmetry;
+
+/**
+ * Orders moves using the classic heuristics for alpha beta search, each of
+ * which can be turned on or off.  In order of priority:
+ * <ol>
+ * <li><b>Transposition table move:</b> if a {@link TranspositionTable}
+ * remembers a best move for the state, it goes first.  For Tic Tac Toe, the
+ * table is also asked about the state's canonical board (see
+ * {@link Symmetry}), which is where a bot searching in canonical space
+ * stores it, and the move is turned back to match the state.</li>
+ * <li><b>Killer moves:</b> the last 2 different moves which caused a cutoff
+ * at the same ply go next, since a move which refutes one line of play often
+ * refutes its siblings too.</li>
+ * <li><b>History heuristic:</b> the rest are ordered by how often (weighted
+ * by the square of the remaining depth) the same player's mark on the same
+ * square has caused a cutoff anywhere in the tree.</li>
+ * <li><b>Static prior:</b> ties are broken in favor of squares which lie on
+ * more winning lines, such as the center and then the corners of Tic Tac
+ * Toe.</li>
+ * </ol>
+ * Moves which are otherwise equal keep the order the state listed them in.
+ * <p>
+ * This class also keeps statistics on how often the first move searched was
+ * the one to cause a cutoff.  In a perfectly ordered tree it always is, and
+ * alpha beta expands about b<sup>d/2</sup> nodes instead of b<sup>d</sup>.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Stephen G. Ware
+ */
+public class HeuristicOrdering implements MoveOrdering {
+
+	/** The priority of the transposition table move */
+	private static final long TABLE_MOVE = Long.MAX_VALUE;
+
+	/** The priority of the newer killer move; the older one is one less */
+	private static final long KILLER_MOVE = Long.MAX_VALUE - 2;
+
+	/** The 4 directions a line can run in: across, down, and both diagonals */
+	private static final int[][] DIRECTIONS = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+
+	/** Remembers the best move of each state, or null */
+	private final TranspositionTable table;
+
+	/** Whether killer moves are searched early */
+	private final boolean killers;
+
+	/** Whether the history heuristic is used */
+	private final boolean history;
+
+	/** Whether squares on more winning lines are preferred */
+	private final boolean prior;
+
+	/** The 2 killer moves (as cell numbers, or -1) at each ply */
+	private int[][] killerMoves = new int[0][];
+
+	/** The history score of each player's mark on each cell */
+	private long[][] historyScores = new long[2][0];
+
+	/** The number of winning lines through each cell of the last grid seen */
+	private int[] lines = new int[0];
+
+	/** The width, height, and win length of the grid {@link #lines} describes */
+	private int linesWidth, linesHeight, linesWinLength;
+
+	/** Priorities of the moves being ordered on a {@link SearchBoard} */
+	private long[] primaryBuffer = new long[0];
+	
+	/** Tie breaking priorities of the moves being ordered on a {@link SearchBoard} */
+	private int[] secondaryBuffer = new int[0];
+	
+	/** The number of cutoffs reported */
+	private long cutoffs;
+
+	/** The number of cutoffs caused by the first move searched */
+	private long firstMoveCutoffs;
+
+	/**
+	 * Constructs an ordering which uses killer moves, the history heuristic,
+	 * and the static prior, but no transposition table.
+	 */
+	public HeuristicOrdering() {
+		this(null, true, true, true);
+	}
+
+	/**
+	 * Constructs an ordering which uses the given heuristics.
+	 *
+	 * @param table the transposition table whose best moves go first, or null
+	 * @param killers whether killer moves are searched early
+	 * @param history whether the history heuristic is used
+	 * @param prior whether squares on more winning lines are preferred
+	 */
+	public HeuristicOrdering(TranspositionTable table, boolean killers, boolean history, boolean prior) {
+		this.table = table;
+		this.killers = killers;
+		this.history = history;
+		this.prior = prior;
+	}
+
+	@Override
+	public Iterable<Move> order(GameState state, Iterable<Move> moves, int ply) {
+		ArrayList<Move> list = new ArrayList<>();
+		for(Move move : moves)
+			list.add(move);
+		if(list.size() < 2)
+			return list;
+		int width = state.getWidth();
+		int[] cells = new int[list.size()];
+		for(int i = 0; i < cells.length; i++)
+			cells[i] = list.get(i).row * width + list.get(i).column;
+		long[] primary = new long[cells.length];
+		int[] secondary = new int[cells.length];
+		int board = state instanceof State ? ((State) state).getBoard() : -1;
+		score(state.getKey(), board, width, state.getHeight(), state.getWinLength(), state.getCurrentPlayer().ordinal(), cells, cells.length, ply, primary, secondary);
+		// Insertion sort, highest priority first; stable so ties keep their order.
+		for(int i = 1; i < list.size(); i++) {
+			Move move = list.get(i);
+			long p = primary[i];
+			int s = secondary[i];
+			int j = i - 1;
+			for(; j >= 0 && (primary[j] < p || (primary[j] == p && secondary[j] < s)); j--) {
+				list.set(j + 1, list.get(j));
+				primary[j + 1] = primary[j];
+				secondary[j + 1] = secondary[j];
+			}
+			list.set(j + 1, move);
+			primary[j + 1] = p;
+			secondary[j + 1] = s;
+		}
+		return list;
+	}
+	
+	@Override
+	public void order(SearchBoard board, int[] moves, int count, int ply) {
+		if(count < 2)
+			return;
+		if(primaryBuffer.length < count) {
+			primaryBuffer = new long[board.width * board.height];
+			secondaryBuffer = new int[primaryBuffer.length];
+		}
+		long[] primary = primaryBuffer;
+		int[] secondary = secondaryBuffer;
+		score(board.getKey(), board.isPacked() ? board.getBoard() : -1, board.width, board.height, board.winLength, board.getCurrentPlayer().ordinal(), moves, count, ply, primary, secondary);
+		// The same insertion sort as above.
+		for(int i = 1; i < count; i++) {
+			int cell = moves[i];
+			long p = primary[i];
+			int s = secondary[i];
+			int j = i - 1;
+			for(; j >= 0 && (primary[j] < p || (primary[j] == p && secondary[j] < s)); j--) {
+				moves[j + 1] = moves[j];
+				primary[j + 1] = primary[j];
+				secondary[j + 1] = secondary[j];
+			}
+			moves[j + 1] = cell;
+			primary[j + 1] = p;
+			secondary[j + 1] = s;
+		}
+	}
+	
+	/**
+	 * Finds the priority of each of a list of moves.
+	 * 
+	 * @param key the key of the state in which the moves are made
+	 * @param board the state as a packed Tic Tac Toe board, or -1 if it is not Tic Tac Toe
+	 * @param width the number of columns in the grid
+	 * @param height the number of rows in the grid
+	 * @param k the number of marks in a line needed to win
+	 * @param player the ordinal of the player making the moves
+	 * @param cells the cell number of each move
+	 * @param count the number of moves
+	 * @param ply the number of moves between the root of the search and the state
+	 * @param primary where the priority of each move is written
+	 * @param secondary where the tie breaking priority of each move is written
+	 */
+	private void score(long key, int board, int width, int height, int k, int player, int[] cells, int count, int ply, long[] primary, int[] secondary) {
+		int best = TranspositionTable.NO_MOVE;
+		if(table != null) {
+			int slot = table.probe(key);
+			if(slot != -1)
+				best = table.getMove(slot);
+			else if(board != -1)
+				best = getCanonicalMove(board);
+		}
+		// When only one of each group of equivalent moves is listed, the
+		// table's move may not be the one listed, so any move equivalent to
+		// it counts.
+		int equivalents = best == TranspositionTable.NO_MOVE || board == -1 ? 0 : getEquivalents(board, best);
+		int[] killer = killers && ply < killerMoves.length ? killerMoves[ply] : null;
+		long[] scores = history ? historyScores[player] : null;
+		int[] lineCounts = prior ? getLines(width, height, k) : null;
+		for(int i = 0; i < count; i++) {
+			int cell = cells[i];
+			if(cell == best || (equivalents & (1 << cell)) != 0)
+				primary[i] = TABLE_MOVE;
+			else if(killer != null && cell == killer[0])
+				primary[i] = KILLER_MOVE;
+			else if(killer != null && cell == killer[1])
+				primary[i] = KILLER_MOVE - 1;
+			else if(scores != null && cell < scores.length)
+				primary[i] = scores[cell];
+			else
+				primary[i] = 0;
+			secondary[i] = lineCounts == null ? 0 : lineCounts[cell];
+		}
+	}
+
+	@Override
+	public void cutoff(GameState state, Move move, int ply, int depth, int index) {
+		cutoff(state.getWidth() * state.getHeight(), move.player.ordinal(), move.row * state.getWidth() + move.column, ply, depth, index);
+	}
+	
+	@Override
+	public void cutoff(SearchBoard board, int cell, int ply, int depth, int index) {
+		cutoff(board.width * board.height, board.getCurrentPlayer().ordinal(), cell, ply, depth, index);
+	}
+	
+	/**
+	 * Learns from a cutoff.
+	 * 
+	 * @param cells the number of cells on the grid
+	 * @param player the ordinal of the player whose move caused the cutoff
+	 * @param cell the cell number of the move
+	 * @param ply the number of moves between the root of the search and the state
+	 * @param depth the number of moves the search below the state could look ahead
+	 * @param index how many of the state's children were searched before the move
+	 */
+	private void cutoff(int cells, int player, int cell, int ply, int depth, int index) {
+		cutoffs++;
+		if(index == 0)
+			firstMoveCutoffs++;
+		if(killers) {
+			if(ply >= killerMoves.length) {
+				int length = killerMoves.length;
+				killerMoves = Arrays.copyOf(killerMoves, ply + 1);
+				for(int i = length; i < killerMoves.length; i++)
+					killerMoves[i] = new int[] { -1, -1 };
+			}
+			int[] killer = killerMoves[ply];
+			if(killer[0] != cell) {
+				killer[1] = killer[0];
+				killer[0] = cell;
+			}
+		}
+		if(history) {
+			if(historyScores[0].length != cells)
+				historyScores = new long[2][cells];
+			historyScores[player][cell] += (long) depth * depth;
+		}
+	}
+
+	/**
+	 * Forgets the killer moves and history scores learned so far.
+	 */
+	public void clear() {
+		killerMoves = new int[0][];
+		historyScores = new long[2][0];
+	}
+
+	/**
+	 * Returns the number of cutoffs reported since the statistics were last
+	 * reset.
+	 *
+	 * @return the number of cutoffs
+	 */
+	public long getCutoffs() {
+		return cutoffs;
+	}
+
+	/**
+	 * Returns the number of cutoffs caused by the first move searched since
+	 * the statistics were last reset.
+	 *
+	 * @return the number of first move cutoffs
+	 */
+	public long getFirstMoveCutoffs() {
+		return firstMoveCutoffs;
+	}
+
+	/**
+	 * Returns the fraction of cutoffs which were caused by the first move
+	 * searched.  The closer this is to 1, the closer the search is to
+	 * expanding the ideal b<sup>d/2</sup> nodes.
+	 *
+	 * @return the first move cutoff rate, or 0 if there have been no cutoffs
+	 */
+	public double getFirstMoveCutoffRate() {
+		if(cutoffs == 0)
+			return 0;
+		return (double) firstMoveCutoffs / cutoffs;
+	}
+
+	/**
+	 * Sets the cutoff statistics back to 0.
+	 */
+	public void resetStatistics() {
+		cutoffs = 0;
+		firstMoveCutoffs = 0;
+	}
+
+	/**
+	 * Looks up the best move of a Tic Tac Toe state under its canonical
+	 * board, where a bot searching in canonical space stores it, and turns
+	 * it back to match the state.
+	 * 
+	 * @param board the state as a packed board
+	 * @return the cell number of the best move, or {@link TranspositionTable#NO_MOVE}
+	 */
+	private int getCanonicalMove(int board) {
+		int transform = Symmetry.getCanonicalTransform(board);
+		if(transform == Symmetry.IDENTITY)
+			return TranspositionTable.NO_MOVE;
+		int slot = table.probe(Symmetry.transform(transform, board));
+		if(slot == -1)
+			return TranspositionTable.NO_MOVE;
+		int move = table.getMove(slot);
+		if(move == TranspositionTable.NO_MOVE)
+			return TranspositionTable.NO_MOVE;
+		return Symmetry.transformCell(Symmetry.inverse(transform), move);
+	}
+	
+	/**
+	 * Finds the moves which are equivalent to a move because some rotation
+	 * or reflection leaves the board unchanged but sends one to the other.
+	 * 
+	 * @param board the packed board
+	 * @param cell the cell number of the move
+	 * @return a 9-bit mask of the equivalent moves, including the move
+	 */
+	private static int getEquivalents(int board, int cell) {
+		int equivalents = 0;
+		for(int t = 0; t < Symmetry.COUNT; t++)
+			if(Symmetry.transform(t, board) == board)
+				equivalents |= 1 << Symmetry.transformCell(t, cell);
+		return equivalents;
+	}
+
+	/**
+	 * Returns the number of winning lines through each cell of a grid,
+	 * computing it if the grid differs from the last one seen.
+	 *
+	 * @param width the number of columns
+	 * @param height the number of rows
+	 * @param k the number of marks in a line needed to win
+	 * @return the number of lines through each cell in row major order
+	 */
+	private int[] getLines(int width, int height, int k) {
+		if(width == linesWidth && height == linesHeight && k == linesWinLength)
+			return lines;
+		int[] counts = new int[width * height];
+		for(int[] direction : DIRECTIONS) {
+			for(int row = 0; row < height; row++) {
+				for(int column = 0; column < width; column++) {
+					int endRow = row + direction[0] * (k - 1);
+					int endColumn = column + direction[1] * (k - 1);
+					if(endRow >= height || endColumn < 0 || endColumn >= width)
+						continue;
+					for(int i = 0; i < k; i++)
+						counts[(row + direction[0] * i) * width + column + direction[1] * i]++;
+				}
+			}
+		}
+		lines = counts;
+		linesWidth = width;
+		linesHeight = height;
+		linesWinLength = k;
+		return lines;
+	}
+}
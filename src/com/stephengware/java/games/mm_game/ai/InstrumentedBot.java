@@ -0,0 +1,80 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Move;
+
+/**
+ * Wraps another bot to measure every decision it makes.  The time each
+ * decision takes is added to a {@link LatencyHistogram}, which can be shared
+ * by many bots (even on different threads) to find the slowest decisions of
+ * a whole run, and each decision is recorded as a Java Flight Recorder
+ * event with the decision's {@link SearchMetrics} if the bot collects them.
+ * <p>
+ * The flight recorder is not part of every Java runtime the game runs on,
+ * such as runtimes built without the <code>jdk.jfr</code> module.  Without
+ * it, only the time of each decision is recorded.
+ * 
+ * @author Stephen G. Ware
+ */
+public class InstrumentedBot implements Bot {
+
+	/** Whether the Java runtime has the flight recorder */
+	private static final boolean FLIGHT_RECORDER = isAvailable("jdk.jfr.Event");
+
+	/** The bot being measured */
+	public final Bot bot;
+	
+	/** Where the time of each decision is recorded */
+	public final LatencyHistogram latency;
+	
+	/**
+	 * Constructs an instrumented bot.
+	 * 
+	 * @param bot the bot to measure
+	 * @param latency where the time of each decision is recorded, in nanoseconds
+	 */
+	public InstrumentedBot(Bot bot, LatencyHistogram latency) {
+		this.bot = bot;
+		this.latency = latency;
+	}
+	
+	@Override
+	public Decision chooseMove(GameState state) {
+		// DecisionEvent is only loaded if the flight recorder is there.
+		DecisionEvent event = FLIGHT_RECORDER ? DecisionEvent.start() : null;
+		long start = System.nanoTime();
+		Decision decision = bot.chooseMove(state);
+		long time = System.nanoTime() - start;
+		SearchMetrics metrics = decision == null ? null : decision.metrics;
+		latency.record(metrics == null ? time : metrics.getWallTime());
+		if(event != null)
+			event.finish(bot, state, decision);
+		return decision;
+	}
+	
+	@Override
+	public void newGame(GameState initial) {
+		bot.newGame(initial);
+	}
+	
+	@Override
+	public void onMoveApplied(Move move) {
+		bot.onMoveApplied(move);
+	}
+	
+	/**
+	 * Checks whether the Java runtime has a class.
+	 * 
+	 * @param name the class's fully qualified name
+	 * @return true if the class can be loaded, false otherwise
+	 */
+	private static boolean isAvailable(String name) {
+		try {
+			Class.forName(name, false, InstrumentedBot.class.getClassLoader());
+			return true;
+		}
+		catch(ClassNotFoundException | LinkageError ex) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import java.util.ArrayList;
+
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Move;
+import com.stephengware.java.games.mm_game.state.Player;
+
+/**
+ * This bot can play games whose trees are far too big to search to the end
+ * while keeping to a fixed budget of time and nodes for each move.
+ * <p>
+ * It searches the tree with alpha beta pruning to a depth of 1 move, then 2
+ * moves, then 3, and so on.  Nodes at the depth limit are scored with an
+ * {@link Evaluator} instead of being expanded.  Each search tries the best
+ * move from the previous search first, which helps it prune more.  When the
+ * budget runs out, the unfinished search is abandoned and the bot plays the
+ * best move from the deepest search that finished.  It stops early if a
+ * search reaches the end of the game along every line of play or proves a
+ * win or loss.
+ *
+ * @author Stephen G. Ware
+ */
+public class IterativeDeepeningBot implements Bot {
+
+	/** Scores nodes at the depth limit */
+	private final Evaluator evaluator;
+
+	/** The time budget for each decision in nanoseconds */
+	private final long timeLimit;
+
+	/** The node budget for each decision */
+	private final long nodeLimit;
+
+	/** Decides the order in which children are searched, or null */
+	private final MoveOrdering ordering;
+
+	/** When the current decision must be made (see {@link System#nanoTime()}) */
+	private long deadline;
+
+	/** Measurements of the current decision, including the number of nodes expanded */
+	private SearchMetrics metrics;
+
+	/** Whether the budget ran out during the current search */
+	private boolean stopped;
+
+	/** Whether the current search has finished at least one search */
+	private boolean finished;
+
+	/** Whether the current search stopped any line of play at the depth limit */
+	private boolean horizon;
+
+	/**
+	 * Constructs a bot which uses a {@link LineEvaluator} and has a time
+	 * budget but no node budget.
+	 *
+	 * @param millis the time budget for each decision in milliseconds
+	 */
+	public IterativeDeepeningBot(long millis) {
+		this(new LineEvaluator(), millis, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Constructs a bot with a given evaluator and budget.  At least one
+	 * search to depth 1 always finishes, even if that exceeds the budget.
+	 *
+	 * @param evaluator scores nodes at the depth limit
+	 * @param millis the time budget for each decision in milliseconds
+	 * @param nodeLimit the node budget for each decision
+	 */
+	public IterativeDeepeningBot(Evaluator evaluator, long millis, long nodeLimit) {
+		this(evaluator, millis, nodeLimit, null);
+	}
+
+	/**
+	 * Constructs a bot with a given evaluator and budget which searches
+	 * children in the order chosen by a {@link MoveOrdering}.  At the root,
+	 * the previous search's best move still goes first.
+	 *
+	 * @param evaluator scores nodes at the depth limit
+	 * @param millis the time budget for each decision in milliseconds
+	 * @param nodeLimit the node budget for each decision
+	 * @param ordering decides the order in which children are searched, or null
+	 */
+	public IterativeDeepeningBot(Evaluator evaluator, long millis, long nodeLimit, MoveOrdering ordering) {
+		this.evaluator = evaluator;
+		this.timeLimit = millis * 1000000;
+		this.nodeLimit = nodeLimit;
+		this.ordering = ordering;
+	}
+
+	@Override
+	public Decision chooseMove(GameState state) {
+		deadline = System.nanoTime() + timeLimit;
+		metrics = new SearchMetrics();
+		metrics.start();
+		stopped = false;
+		finished = false;
+		boolean max = state.getCurrentPlayer() == Player.X;
+		Move best = null;
+		for(int depth = 1; depth <= state.getEmptySquares(); depth++) {
+			if(finished && (metrics.getNodes() >= nodeLimit || System.nanoTime() >= deadline))
+				break;
+			horizon = false;
+			GameTree root = new GameTree(state, order(state, best), ordering);
+			metrics.node(0);
+			double alpha = Double.NEGATIVE_INFINITY;
+			double beta = Double.POSITIVE_INFINITY;
+			double value = max ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+			Move choice = null;
+			while(root.hasNextChild()) {
+				GameTree child = root.getNextChild();
+				metrics.node(child.getPly());
+				if(max)
+					child.setValue(findMin(child, alpha, beta, depth - 1));
+				else
+					child.setValue(findMax(child, alpha, beta, depth - 1));
+				if(stopped)
+					break;
+				if(max ? child.getValue() > value : child.getValue() < value) {
+					value = child.getValue();
+					choice = child.getMove();
+				}
+				if(max)
+					alpha = Math.max(alpha, value);
+				else
+					beta = Math.min(beta, value);
+			}
+			if(stopped || choice == null)
+				break;
+			best = choice;
+			finished = true;
+			if(!horizon || Math.abs(value) >= 1)
+				break;
+		}
+		metrics.stop();
+		if(best == null)
+			return null;
+		return new Decision(best, (int) metrics.getNodes(), 0, metrics);
+	}
+
+	/**
+	 * Lists the available moves with the previous search's best move first,
+	 * followed by the others in the order chosen by the move ordering.
+	 *
+	 * @param state the state
+	 * @param best the previous best move, or null
+	 * @return the moves in the order they should be searched
+	 */
+	private Iterable<Move> order(GameState state, Move best) {
+		ArrayList<Move> moves = new ArrayList<>();
+		if(best != null)
+			moves.add(best);
+		Iterable<Move> available = state.getAvailableMoves();
+		if(ordering != null)
+			available = ordering.order(state, available, 0);
+		for(Move move : available)
+			if(best == null || move.row != best.row || move.column != best.column)
+				moves.add(move);
+		return moves;
+	}
+
+	/**
+	 * Checks whether the budget has run out.  The budget is never out until
+	 * one search has finished.  This is checked once for each node that is
+	 * not at the depth limit, which is cheap next to evaluating its children.
+	 *
+	 * @return true if the current search should be abandoned
+	 */
+	private boolean isOutOfBudget() {
+		if(!finished)
+			return false;
+		return metrics.getNodes() >= nodeLimit || System.nanoTime() >= deadline;
+	}
+
+	/**
+	 * Given a {@link GameTree} node, expand its children (if any) to find the
+	 * node with the highest minimum utility value, scoring nodes at the depth
+	 * limit with the evaluator.
+	 *
+	 * @param tree the node whose children need to be expanded
+	 * @param alpha the highest utility value discovered so far in this branch of the tree (i.e. best for X)
+	 * @param beta the lowest utility value discovered so far in this branch of the tree (i.e. best for O)
+	 * @param depth the number of moves left before the depth limit
+	 * @return the utility value of the node with the highest minimum utility
+	 */
+	private double findMax(GameTree tree, double alpha, double beta, int depth) {
+		if(tree.getState().isTerminal()) {
+			metrics.leaf();
+			return Utility.evaluate(tree.getState());
+		}
+		if(depth == 0) {
+			metrics.leaf();
+			horizon = true;
+			return evaluator.evaluate(tree.getState());
+		}
+		if(isOutOfBudget()) {
+			stopped = true;
+			return 0;
+		}
+		double max = Double.NEGATIVE_INFINITY;
+		while(tree.hasNextChild()) {
+			GameTree child = tree.getNextChild();
+			metrics.node(child.getPly());
+			child.setValue(findMin(child, alpha, beta, depth - 1));
+			if(stopped)
+				return 0;
+			max = Math.max(max, child.getValue());
+			if(max >= beta) {
+				metrics.cutoff(tree.getPly());
+				if(ordering != null)
+					ordering.cutoff(tree.getState(), child.getMove(), tree.getPly(), depth, child.getIndex());
+				return max;
+			}
+			alpha = Math.max(alpha, max);
+		}
+		return max;
+	}
+
+	/**
+	 * Given a {@link GameTree} node, expand its children (if any) to find the
+	 * node with the lowest maximum utility value, scoring nodes at the depth
+	 * limit with the evaluator.
+	 *
+	 * @param tree the node whose children need to be expanded
+	 * @param alpha the highest utility value discovered so far in this branch of the tree (i.e. best for X)
+	 * @param beta the lowest utility value discovered so far in this branch of the tree (i.e. best for O)
+	 * @param depth the number of moves left before the depth limit
+	 * @return the utility value of the node with the lowest maximum utility
+	 */
+	private double findMin(GameTree tree, double alpha, double beta, int depth) {
+		if(tree.getState().isTerminal()) {
+			metrics.leaf();
+			return Utility.evaluate(tree.getState());
+		}
+		if(depth == 0) {
+			metrics.leaf();
+			horizon = true;
+			return evaluator.evaluate(tree.getState());
+		}
+		if(isOutOfBudget()) {
+			stopped = true;
+			return 0;
+		}
+		double min = Double.POSITIVE_INFINITY;
+		while(tree.hasNextChild()) {
+			GameTree child = tree.getNextChild();
+			metrics.node(child.getPly());
+			child.setValue(findMax(child, alpha, beta, depth - 1));
+			if(stopped)
+				return 0;
+			min = Math.min(min, child.getValue());
+			if(min <= alpha) {
+				metrics.cutoff(tree.getPly());
+				if(ordering != null)
+					ordering.cutoff(tree.getState(), child.getMove(), tree.getPly(), depth, child.getIndex());
+				return min;
+			}
+			beta = Math.min(beta, min);
+		}
+		return min;
+	}
+}
@@ -0,0 +1,153 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often values such as decision times fall in each of a fixed set
+ * of buckets, so that percentiles like the 99th can be read off cheaply at
+ * any time, in the style of HdrHistogram.
+ * <p>
+ * Values below 128 each get their own bucket.  Above that, each power of 2
+ * is split into 64 buckets, so a percentile is never off by more than about
+ * 1.6% of its value.  The buckets for every value up to
+ * {@link Long#MAX_VALUE} fit in about 30KB.
+ * <p>
+ * This class is thread safe and never locks.
+ * 
+ * @author Stephen G. Ware
+ */
+public class LatencyHistogram {
+
+	/** Values below this each have their own bucket */
+	private static final int EXACT = 128;
+	
+	/** The number of buckets for each power of 2 above {@link #EXACT} */
+	private static final int SUB_BUCKETS = EXACT / 2;
+	
+	/** The number of bits needed to number the sub buckets */
+	private static final int SUB_BUCKET_BITS = 6;
+	
+	/** The number of values in each bucket */
+	private final AtomicLongArray counts = new AtomicLongArray(EXACT + (64 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS);
+	
+	/** The number of values recorded */
+	private final LongAdder count = new LongAdder();
+	
+	/** The sum of the values recorded */
+	private final LongAdder sum = new LongAdder();
+	
+	/** The largest value recorded */
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+	
+	/**
+	 * Returns the bucket a value belongs in.
+	 * 
+	 * @param value the value, which is not negative
+	 * @return the bucket's index
+	 */
+	private static int bucket(long value) {
+		if(value < EXACT)
+			return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return EXACT + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+	
+	/**
+	 * Returns the largest value which belongs in a bucket.
+	 * 
+	 * @param bucket the bucket's index
+	 * @return the largest value in the bucket
+	 */
+	private static long highest(int bucket) {
+		if(bucket < EXACT)
+			return bucket;
+		int shift = (bucket - EXACT) / SUB_BUCKETS + 1;
+		long sub = (bucket - EXACT) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((sub + 1) << shift) - 1;
+	}
+	
+	/**
+	 * Records a value.
+	 * 
+	 * @param value the value, such as a time in nanoseconds
+	 * @throws IllegalArgumentException if the value is negative
+	 */
+	public void record(long value) {
+		if(value < 0)
+			throw new IllegalArgumentException("A histogram cannot record a negative value.");
+		counts.incrementAndGet(bucket(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+	
+	/**
+	 * Returns the number of values recorded.
+	 * 
+	 * @return the number of values
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+	
+	/**
+	 * Returns the mean of the values recorded.
+	 * 
+	 * @return the mean, or 0 if no values have been recorded
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+	
+	/**
+	 * Returns the largest value recorded.
+	 * 
+	 * @return the largest value, or 0 if no values have been recorded
+	 */
+	public long getMax() {
+		return max.get();
+	}
+	
+	/**
+	 * Returns a value which the given percentage of recorded values are at or
+	 * below, to within the precision of the buckets.
+	 * 
+	 * @param percentile the percentage, such as 50 for the median or 99.9
+	 * @return the value, or 0 if no values have been recorded
+	 */
+	public long getPercentile(double percentile) {
+		long total = 0;
+		for(int i = 0; i < counts.length(); i++)
+			total += counts.get(i);
+		if(total == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100) / 100));
+		long seen = 0;
+		for(int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if(seen >= rank)
+				return Math.min(highest(i), getMax());
+		}
+		return getMax();
+	}
+	
+	/**
+	 * Forgets every value recorded.  Values recorded while this runs may or
+	 * may not be forgotten.
+	 */
+	public void reset() {
+		for(int i = 0; i < counts.length(); i++)
+			counts.set(i, 0);
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+	
+	@Override
+	public String toString() {
+		return "count " + getCount() + ", mean " + Math.round(getMean()) + ", p50 " + getPercentile(50) + ", p99 " + getPercentile(99) + ", p99.9 " + getPercentile(99.9) + ", max " + getMax();
+	}
+}
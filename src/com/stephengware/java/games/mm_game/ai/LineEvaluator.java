@@ -0,0 +1,108 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Player;
+
+/**
+ * Estimates the utility of a state by looking at every line of squares long
+ * enough to win (every window of k squares in a row, column, or diagonal).
+ * <ul>
+ * <li>A line which holds marks from only one player is still open for that
+ * player, and it is worth more the more marks it holds.</li>
+ * <li>An open line which is one mark short of a win is a threat, which is
+ * worth an extra bonus.</li>
+ * <li>Each mark is worth a bonus for every line through its square, so
+ * squares which take part in many lines, like the center and the corners of
+ * Tic Tac Toe, are worth more to control.</li>
+ * </ul>
+ * The weighted total is then squashed to lie strictly between -1 and 1.
+ * 
+ * @author Stephen G. Ware
+ */
+public class LineEvaluator implements Evaluator {
+
+	/** The 4 directions a line can run in: across, down, and both diagonals */
+	private static final int[][] DIRECTIONS = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+
+	/** The weight of an open line, multiplied by the number of marks in it */
+	private final double open;
+
+	/** The extra weight of an open line which is one mark short of a win */
+	private final double threat;
+
+	/** The weight of a mark, multiplied by the number of lines through its square */
+	private final double position;
+
+	/** The total score which is squashed to 1/2 */
+	private final double scale;
+
+	/**
+	 * Constructs an evaluator with default weights.
+	 */
+	public LineEvaluator() {
+		this(1, 10, 0.25);
+	}
+
+	/**
+	 * Constructs an evaluator with the given weights.
+	 * 
+	 * @param open the weight of an open line for each mark in it
+	 * @param threat the extra weight of an open line which is one mark short of a win
+	 * @param position the weight of a mark for each line through its square
+	 */
+	public LineEvaluator(double open, double threat, double position) {
+		this.open = open;
+		this.threat = threat;
+		this.position = position;
+		this.scale = Math.max(1, 10 * (open + threat));
+	}
+
+	@Override
+	public double evaluate(GameState state) {
+		int width = state.getWidth();
+		int height = state.getHeight();
+		int k = state.getWinLength();
+		double score = 0;
+		for(int[] direction : DIRECTIONS) {
+			int dr = direction[0];
+			int dc = direction[1];
+			for(int row = 0; row < height; row++) {
+				for(int column = 0; column < width; column++) {
+					int endRow = row + dr * (k - 1);
+					int endColumn = column + dc * (k - 1);
+					if(endRow >= height || endColumn < 0 || endColumn >= width)
+						continue;
+					int x = 0;
+					int o = 0;
+					for(int i = 0; i < k; i++) {
+						Player player = state.getSquare(row + dr * i, column + dc * i);
+						if(player == Player.X)
+							x++;
+						else if(player == Player.O)
+							o++;
+					}
+					score += position * (x - o);
+					if(o == 0 && x > 0)
+						score += score(x, k);
+					else if(x == 0 && o > 0)
+						score -= score(o, k);
+				}
+			}
+		}
+		return score / (Math.abs(score) + scale);
+	}
+
+	/**
+	 * Returns the worth of an open line.
+	 * 
+	 * @param marks the number of marks in the line
+	 * @param k the number of marks needed to win
+	 * @return the line's worth
+	 */
+	private double score(int marks, int k) {
+		if(marks == k - 1)
+			return open * marks + threat;
+		else
+			return open * marks;
+	}
+}
@@ -0,0 +1,74 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Player;
+import com.stephengware.java.games.mm_game.state.SearchBoard;
+
+/**
+ * This bot uses MTD(f), which finds the value of the root using only
+ * searches with an empty window.  Each search asks whether the root is worth
+ * at least some value and tightens an upper or lower bound on its true
+ * value, until the two bounds meet.  The first value asked about is a guess:
+ * the value of this bot's previous decision.
+ * <p>
+ * Every search revisits much of the tree the previous search explored, so
+ * MTD(f) depends on a {@link TranspositionTable} to remember what it has
+ * already proved and which move was best.  It makes decisions just as good
+ * as {@link AlphaBetaBot}'s.
+ *
+ * @author Stephen G. Ware
+ */
+public class MTDfBot extends NegamaxBot {
+
+	/** The value of the previous decision from X's point of view */
+	private double guess = 0;
+
+	/**
+	 * Constructs a bot which uses a new {@link TranspositionTable} and a
+	 * {@link HeuristicOrdering}.
+	 */
+	public MTDfBot() {
+		this(new TranspositionTable(), new HeuristicOrdering());
+	}
+
+	/**
+	 * Constructs a bot with a given table and move ordering.
+	 *
+	 * @param table the transposition table, which is kept between decisions
+	 * @param ordering decides the order in which children are searched, or null
+	 */
+	public MTDfBot(TranspositionTable table, MoveOrdering ordering) {
+		super(table, ordering, false);
+		if(table == null)
+			throw new IllegalArgumentException("MTD(f) requires a transposition table.");
+	}
+
+	/**
+	 * Also forgets the value of the last decision, which belongs to the last
+	 * game.
+	 */
+	@Override
+	public void newGame(GameState initial) {
+		super.newGame(initial);
+		guess = 0;
+	}
+
+	@Override
+	protected double search(SearchBoard root) {
+		double sign = root.getCurrentPlayer() == Player.X ? 1 : -1;
+		double value = sign * guess;
+		double lower = Double.NEGATIVE_INFINITY;
+		double upper = Double.POSITIVE_INFINITY;
+		while(lower < upper) {
+			// Ask whether the root is worth at least beta.
+			double beta = value == lower ? Math.nextUp(value) : value;
+			value = negamax(root, Math.nextDown(beta), beta, 0);
+			if(value < beta)
+				upper = value;
+			else
+				lower = value;
+		}
+		guess = sign * value;
+		return value;
+	}
+}
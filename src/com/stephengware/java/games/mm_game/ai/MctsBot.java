@@ -0,0 +1,460 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import com.stephengware.java.games.mm_game.state.Board;
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Move;
+import com.stephengware.java.games.mm_game.state.Player;
+import com.stephengware.java.games.mm_game.state.SearchBoard;
+import com.stephengware.java.games.mm_game.state.State;
+
+/**
+ * This bot uses Monte Carlo Tree Search, which needs no evaluation function
+ * and only as much time as it is given, so it can play on grids far too big
+ * to search to the end.
+ * <p>
+ * Each iteration walks down a tree of positions from the root, at each node
+ * choosing the child with the best UCT score: its average result plus a
+ * bonus which is larger for children that have been tried less often.  When
+ * it reaches a node which has not been expanded yet, it adds the node's
+ * children, plays out one or more games at random from the first untried
+ * child, and adds the results to every node on the way back up.  The move
+ * chosen is the root's most visited child.
+ * <p>
+ * With a {@link ForkJoinPool}, one worker for each of the pool's threads
+ * runs iterations on the same tree at once.  A worker adds a virtual loss to
+ * each node it walks through and takes it back when it adds the real result,
+ * so that the other workers are steered towards other lines of play instead
+ * of all exploring the same one.
+ * <p>
+ * After deciding, the bot keeps its tree.  When it is told about each move
+ * that is made (see {@link #onMoveApplied(Move)}), or when the next state it
+ * is asked about follows from moves the tree has explored, the next search
+ * starts from that state's subtree, along with every iteration already
+ * spent on it.
+ * <p>
+ * {@link Decision#work} is the number of playouts run for the decision.
+ * Decisions are reproducible for the same seed only when the bot runs on one
+ * thread.  This class is not thread safe, though its search is.
+ *
+ * @author Stephen G. Ware
+ */
+public class MctsBot implements Bot {
+
+	/** The default exploration constant, the square root of 2 */
+	public static final double DEFAULT_EXPLORATION = Math.sqrt(2);
+
+	/** The default number of iterations for each decision */
+	public static final long DEFAULT_ITERATIONS = 10000;
+
+	/** The number of visits (with no wins) a worker adds to a node while it is exploring below it */
+	private static final int VIRTUAL_LOSS = 1;
+
+	/** How many iterations a worker runs between checks of the clock */
+	private static final int CLOCK_INTERVAL = 64;
+
+	/**
+	 * A position in the search tree.  Its statistics are updated by many
+	 * workers at once without locking.
+	 */
+	private static final class Node {
+
+		/** Updates {@link #visits} atomically */
+		static final AtomicIntegerFieldUpdater<Node> VISITS = AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+
+		/** Updates {@link #score} atomically */
+		static final AtomicLongFieldUpdater<Node> SCORE = AtomicLongFieldUpdater.newUpdater(Node.class, "score");
+
+		/** The cell number of the move which leads to this node, or {@link TranspositionTable#NO_MOVE} at the root */
+		final int cell;
+
+		/** The ordinal of the player who made that move */
+		final int player;
+
+		/** The number of playouts through this node, plus any virtual losses */
+		volatile int visits;
+
+		/** The results of those playouts for the player who moved here: 2 for each win and 1 for each tie */
+		volatile long score;
+
+		/** This node's children, or null until it is expanded */
+		volatile Node[] children;
+
+		Node(int cell, int player) {
+			this.cell = cell;
+			this.player = player;
+		}
+
+		/**
+		 * Adds this node's children, unless another worker already has.
+		 *
+		 * @param board the board, in this node's position
+		 * @param moves an array with room for every square on the grid
+		 * @return the children
+		 */
+		Node[] expand(SearchBoard board, int[] moves) {
+			Node[] result = children;
+			if(result != null)
+				return result;
+			synchronized(this) {
+				if(children == null) {
+					int count = board.getMoves(moves);
+					int mover = board.getCurrentPlayer().ordinal();
+					Node[] created = new Node[count];
+					for(int i = 0; i < count; i++)
+						created[i] = new Node(moves[i], mover);
+					children = created;
+				}
+				return children;
+			}
+		}
+	}
+
+	/** The random number generator from which every worker's generator is split */
+	private final SplittableRandom random;
+
+	/** How strongly the search favors children that have been tried less often */
+	private final double exploration;
+
+	/** The most iterations for each decision */
+	private final long iterations;
+
+	/** The number of random games played out from each new node */
+	private final int playouts;
+
+	/** The time budget for each decision in nanoseconds */
+	private final long timeLimit;
+
+	/** The threads which run iterations at once, or null to run them on the calling thread */
+	private final ForkJoinPool pool;
+
+	/** The subtree kept from the last decision, or null */
+	private Node root;
+
+	/** The state the kept subtree starts from, or null */
+	private GameState rootState;
+
+	/** The number of playouts run for the last decision */
+	private long lastPlayouts;
+
+	/** How long the last decision took in nanoseconds */
+	private long lastTime;
+
+	/**
+	 * Constructs a bot which runs {@link #DEFAULT_ITERATIONS} iterations with
+	 * one playout each on the calling thread.
+	 *
+	 * @param seed the seed for the bot's random choices
+	 */
+	public MctsBot(long seed) {
+		this(seed, DEFAULT_ITERATIONS, 1, Long.MAX_VALUE, null);
+	}
+
+	/**
+	 * Constructs a bot with given budgets.  The search stops as soon as
+	 * either one runs out, but at least one iteration is always run.
+	 *
+	 * @param seed the seed for the bot's random choices
+	 * @param iterations the most iterations for each decision
+	 * @param playouts the number of random games played out from each new node
+	 * @param millis the time budget for each decision in milliseconds
+	 * @param pool the threads which run iterations at once, or null to run them on the calling thread
+	 */
+	public MctsBot(long seed, long iterations, int playouts, long millis, ForkJoinPool pool) {
+		this(seed, DEFAULT_EXPLORATION, iterations, playouts, millis, pool);
+	}
+
+	/**
+	 * Constructs a bot with given budgets and exploration constant.
+	 *
+	 * @param seed the seed for the bot's random choices
+	 * @param exploration how strongly the search favors children that have been tried less often
+	 * @param iterations the most iterations for each decision
+	 * @param playouts the number of random games played out from each new node
+	 * @param millis the time budget for each decision in milliseconds
+	 * @param pool the threads which run iterations at once, or null to run them on the calling thread
+	 */
+	public MctsBot(long seed, double exploration, long iterations, int playouts, long millis, ForkJoinPool pool) {
+		if(iterations < 1 || playouts < 1)
+			throw new IllegalArgumentException("MCTS needs at least one iteration and one playout.");
+		this.random = new SplittableRandom(seed);
+		this.exploration = exploration;
+		this.iterations = iterations;
+		this.playouts = playouts;
+		this.timeLimit = millis >= Long.MAX_VALUE / 1000000 ? Long.MAX_VALUE : millis * 1000000;
+		this.pool = pool;
+	}
+
+	@Override
+	public Decision chooseMove(GameState state) {
+		if(state.isTerminal())
+			return null;
+		long start = System.nanoTime();
+		long deadline = timeLimit == Long.MAX_VALUE ? Long.MAX_VALUE : start + timeLimit;
+		Node top = reuse(state);
+		AtomicLong claimed = new AtomicLong();
+		int workers = pool == null ? 1 : pool.getParallelism();
+		long playoutCount;
+		if(workers == 1)
+			playoutCount = new Worker(top, state, random.split()).run(claimed, deadline);
+		else {
+			ArrayList<ForkJoinTask<Long>> tasks = new ArrayList<>();
+			for(int i = 0; i < workers; i++) {
+				Worker worker = new Worker(top, state, random.split());
+				tasks.add(pool.submit(() -> worker.run(claimed, deadline)));
+			}
+			playoutCount = 0;
+			for(ForkJoinTask<Long> task : tasks)
+				playoutCount += task.join();
+		}
+		Node best = null;
+		for(Node child : top.children)
+			if(best == null || child.visits > best.visits)
+				best = child;
+		Move move = Move.get(state.getCurrentPlayer(), best.cell / state.getWidth(), best.cell % state.getWidth());
+		root = top;
+		rootState = state;
+		lastPlayouts = playoutCount;
+		lastTime = System.nanoTime() - start;
+		return new Decision(move, (int) Math.min(playoutCount, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Forgets the tree kept from the last game.
+	 */
+	@Override
+	public void newGame(GameState initial) {
+		root = null;
+		rootState = null;
+	}
+
+	/**
+	 * Moves the kept tree down to the subtree below the move, or forgets it
+	 * if that subtree has not been explored.
+	 */
+	@Override
+	public void onMoveApplied(Move move) {
+		if(root == null)
+			return;
+		Node next = null;
+		if(root.children != null)
+			for(Node child : root.children)
+				if(child.cell == move.row * rootState.getWidth() + move.column)
+					next = child;
+		if(next == null) {
+			root = null;
+			rootState = null;
+		}
+		else {
+			root = next;
+			rootState = rootState.transition(move);
+		}
+	}
+
+	/**
+	 * Returns the node to search from: the node of the kept tree for the
+	 * state, if the state follows from the kept tree's root by moves the tree
+	 * has explored, or else a new root.  If the bot is told about every move
+	 * (see {@link #onMoveApplied(Move)}), the kept root is already the
+	 * state's node; otherwise the moves made since the last decision are
+	 * found by comparing the grids.
+	 *
+	 * @param state the state in which a move must be chosen
+	 * @return the root of the search
+	 */
+	private Node reuse(GameState state) {
+		Node node = root;
+		GameState kept = rootState;
+		root = null;
+		rootState = null;
+		if(node == null || kept.getWidth() != state.getWidth() || kept.getHeight() != state.getHeight() || kept.getWinLength() != state.getWinLength())
+			return new Node(TranspositionTable.NO_MOVE, -1);
+		// The squares marked since the kept state, by the ordinal of the player who marked them
+		int width = state.getWidth();
+		int[] marked = new int[width * state.getHeight()];
+		int count = 0;
+		for(int cell = 0; cell < marked.length; cell++) {
+			Player before = kept.getSquare(cell / width, cell % width);
+			Player after = state.getSquare(cell / width, cell % width);
+			marked[cell] = -1;
+			if(before == after)
+				continue;
+			if(before != null)
+				return new Node(TranspositionTable.NO_MOVE, -1);
+			marked[cell] = after.ordinal();
+			count++;
+		}
+		int mover = kept.getCurrentPlayer().ordinal();
+		for(int i = 0; i < count; i++, mover ^= 1) {
+			Node next = null;
+			if(node.children != null)
+				for(Node child : node.children)
+					if(marked[child.cell] == mover)
+						next = child;
+			if(next == null)
+				return new Node(TranspositionTable.NO_MOVE, -1);
+			marked[next.cell] = -1;
+			node = next;
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the number of playouts run for the last decision.
+	 *
+	 * @return the number of playouts
+	 */
+	public long getLastPlayouts() {
+		return lastPlayouts;
+	}
+
+	/**
+	 * Returns how many playouts were run each second during the last
+	 * decision, across every thread.
+	 *
+	 * @return the throughput in playouts per second
+	 */
+	public double getPlayoutsPerSecond() {
+		return lastTime == 0 ? 0 : lastPlayouts * 1e9 / lastTime;
+	}
+
+	/**
+	 * Runs iterations on one thread.  Each worker has its own board and
+	 * random number generator, so the only thing workers share is the tree.
+	 */
+	private final class Worker {
+
+		/** The root of the search */
+		private final Node top;
+
+		/** The board, which is in the root's position between iterations */
+		private final SearchBoard board;
+
+		/** This worker's random number generator */
+		private final SplittableRandom random;
+
+		/** The nodes on the path of the current iteration */
+		private final Node[] path;
+
+		/** Room for the moves of one position */
+		private final int[] moves;
+
+		/** The moves made by the current playout */
+		private final int[] played;
+
+		/** Whether the board is Tic Tac Toe, so playouts can use a packed {@link Board} */
+		private final boolean packed;
+
+		Worker(Node top, GameState state, SplittableRandom random) {
+			this.top = top;
+			this.board = new SearchBoard(state);
+			this.random = random;
+			this.path = new Node[board.getEmptySquares() + 1];
+			this.moves = new int[board.width * board.height];
+			this.played = new int[moves.length];
+			this.packed = state instanceof State;
+		}
+
+		/**
+		 * Runs iterations until the shared budget runs out.
+		 *
+		 * @param claimed the number of iterations started by every worker
+		 * @param deadline when the decision must be made (see {@link System#nanoTime()})
+		 * @return the number of playouts this worker ran
+		 */
+		long run(AtomicLong claimed, long deadline) {
+			long count = 0;
+			for(long i = claimed.getAndIncrement(); i < iterations; i = claimed.getAndIncrement()) {
+				iterate();
+				count += playouts;
+				if(i % CLOCK_INTERVAL == 0 && i > 0 && System.nanoTime() >= deadline)
+					break;
+			}
+			return count;
+		}
+
+		/**
+		 * Walks down the tree, expands one node, plays out from it, and adds
+		 * the results to every node on the path.
+		 */
+		private void iterate() {
+			int depth = 0;
+			Node node = top;
+			path[0] = node;
+			Node.VISITS.addAndGet(node, VIRTUAL_LOSS);
+			while(!board.isTerminal()) {
+				Node[] children = node.expand(board, moves);
+				node = select(node, children);
+				int before = Node.VISITS.getAndAdd(node, VIRTUAL_LOSS);
+				board.make(node.cell);
+				path[++depth] = node;
+				if(before == 0)
+					break;
+			}
+			int xWins = 0;
+			int oWins = 0;
+			for(int i = 0; i < playouts; i++) {
+				Player winner = playout();
+				if(winner == Player.X)
+					xWins++;
+				else if(winner == Player.O)
+					oWins++;
+			}
+			int ties = playouts - xWins - oWins;
+			for(int i = depth; i >= 0; i--) {
+				Node step = path[i];
+				int wins = step.player == Player.X.ordinal() ? xWins : oWins;
+				Node.SCORE.addAndGet(step, 2L * wins + ties);
+				Node.VISITS.addAndGet(step, playouts - VIRTUAL_LOSS);
+				if(i > 0)
+					board.unmake(step.cell);
+				path[i] = null;
+			}
+		}
+
+		/**
+		 * Chooses the child with the highest UCT score, or the first one
+		 * which has not been tried.
+		 *
+		 * @param parent the node
+		 * @param children its children
+		 * @return the child to explore
+		 */
+		private Node select(Node parent, Node[] children) {
+			double log = Math.log(Math.max(parent.visits, 1));
+			Node best = null;
+			double bestScore = Double.NEGATIVE_INFINITY;
+			for(Node child : children) {
+				int visits = child.visits;
+				if(visits == 0)
+					return child;
+				double score = child.score / (2.0 * visits) + exploration * Math.sqrt(log / visits);
+				if(score > bestScore) {
+					bestScore = score;
+					best = child;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Plays random moves until the game ends, then takes them all back.
+		 * Tic Tac Toe games are played on a copy of the packed board, so
+		 * there is nothing to take back.
+		 *
+		 * @return the winner, or null for a tie
+		 */
+		private Player playout() {
+			if(packed)
+				return Board.getWinner(RandomPlayout.play(board.getBoard(), random));
+			return RandomPlayout.play(board, moves, played, random);
+		}
+	}
+}
@@ -1,110 +1,251 @@
 package com.stephengware.java.games.mm_game.ai;
+import com.stephengware.java.games.mm_game.ai.TranspositionTable.Bound;
+import com.stephengware.java.games.mm_game.state.Board;
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Move;
 import com.stephengware.java.games.mm_game.state.Player;
+import com.stephengware.java.games.mm_game.state.SearchBoard;
 import com.stephengware.java.games.mm_game.state.State;
+import com.stephengware.java.games.mm_game.state.Symmetry;
 
 /**
  * This bot expands the entire game tree and makes its decision based on Min
  * Max search.
+ * <p>
+ * The bot does not build a {@link GameTree}.  It makes and takes back moves
+ * on one {@link SearchBoard} instead, so nothing is allocated for each node.
  * 
  * @author Stephen G. Ware
  */
  public class MinMaxBot implements Bot {
 
+	/** Remembers positions already searched, or null to search every node */
+	private final TranspositionTable table;
+	
+	/**
+	 * Whether the search treats positions that are rotations or reflections
+	 * of each other as the same position
+	 */
+	private final boolean symmetric;
+	
+	/** The moves of the node being searched at each ply */
+	private int[][] moves;
+	
+	/** The cell number of the best move at the root */
+	private int rootMove;
+	
+	/** The number of transposition table hits during the current decision */
+	private int hits;
+	
+	/** Measurements of the current decision */
+	private SearchMetrics metrics;
+	
+	/**
+	 * Constructs a min max bot which expands the entire game tree.
+	 */
+	public MinMaxBot() {
+		this(null);
+	}
+	
+	/**
+	 * Constructs a min max bot which does not expand positions whose values
+	 * are already known from a {@link TranspositionTable}.
+	 * 
+	 * @param table the transposition table, which is kept between decisions
+	 */
+	public MinMaxBot(TranspositionTable table) {
+		this(table, false);
+	}
+	
+	/**
+	 * Constructs a min max bot which optionally searches in canonical space:
+	 * the root is replaced by its canonical board (see {@link Symmetry}),
+	 * moves equivalent by symmetry are expanded only once, and the
+	 * transposition table (if any) stores one entry for each group of
+	 * symmetric positions.  The chosen move is mapped back onto the original
+	 * board.
+	 * 
+	 * @param table the transposition table, which is kept between decisions, or null
+	 * @param symmetric whether to search in canonical space
+	 */
+	public MinMaxBot(TranspositionTable table, boolean symmetric) {
+		this.table = table;
+		this.symmetric = symmetric;
+	}
 	
 	@Override
-	public Decision chooseMove(State state) {
-		GameTree root = new GameTree(state);
-		double value;
-		if(state.getCurrentPlayer() == Player.X)
-			value = findMax(root);
-		else
-			value = findMin(root);
-		for(GameTree child : root.children){
-			if(child.value == value)
-				return new Decision(child.move, root.size());
+	public Decision chooseMove(GameState state) {
+		hits = 0;
+		metrics = new SearchMetrics();
+		metrics.start();
+		int transform = Symmetry.IDENTITY;
+		if(symmetric) {
+			if(!(state instanceof State))
+				throw new IllegalArgumentException("Symmetric search is only supported for Tic Tac Toe.");
+			int board = ((State) state).getBoard();
+			transform = Symmetry.getCanonicalTransform(board);
+			state = new State(Symmetry.transform(transform, board));
 		}
-		return null;
+		SearchBoard board = new SearchBoard(state);
+		moves = new int[board.getEmptySquares() + 1][board.width * board.height];
+		rootMove = TranspositionTable.NO_MOVE;
+		metrics.node(0);
+		if(board.getCurrentPlayer() == Player.X)
+			findMax(board, 0);
+		else
+			findMin(board, 0);
+		metrics.stop();
+		if(rootMove == TranspositionTable.NO_MOVE)
+			return null;
+		Move move = board.getMove(rootMove);
+		return new Decision(symmetric ? Symmetry.transform(Symmetry.inverse(transform), move) : move, (int) metrics.getNodes(), hits, metrics);
 	}
 	
 	/**
-	 * Given a {@link GameTree} node, expand its children (if any) to find the
-	 * node with the highest minimum utility value.
+	 * Expands a board's position to find the child with the highest minimum
+	 * utility value.
 	 * 
-	 * @param tree the node whose children need to be expanded
-	 * @return the utility value of the node with the highest minimum utility
+	 * @param board the board, which is in the same position again when this returns
+	 * @param ply the number of moves between the root and the board's position
+	 * @return the utility value of the child with the highest minimum utility
 	 */
-	private double findMax(GameTree tree) {
-		// First, check if this node is a leaf node (i.e. the game is over)
-		// using Tree#state#isTerminal().  If so, simply return the utility of
-		// this state.
-		if(tree.state.isTerminal()) {
-			return Utility.evaluate(tree.state);
+	private int findMax(SearchBoard board, int ply) {
+		// First, check if this position is a leaf node (i.e. the game is
+		// over).  If so, simply return the utility of this position.
+		if(board.isTerminal()) {
+			metrics.leaf();
+			return Utility.score(board);
+		}
+		// If this position's value is already known from another branch of
+		// the tree, there is no need to expand it again.  Only exact values
+		// count; a table shared with an alpha beta bot also holds bounds.
+		if(table != null && ply > 0) {
+			int slot = table.probe(key(board));
+			if(slot != -1 && table.getBound(slot) == Bound.EXACT) {
+				hits++;
+				return (int) table.getValue(slot);
+			}
 		}
-		// If this node is not a leaf, then we need to expand all of its
+		// If this position is not a leaf, then we need to expand all of its
 		// children and find the one with the highest minimum utility value.
-		// Start with the lowest possible number, Double#NEGATIVE_INFINITY and
-		// work your way up from there.
-		double max = Double.NEGATIVE_INFINITY;
-		// You can check if a node has more children that have not yet been
-		// explored using GameTree#hasNextChild().
-		while (tree.hasNextChild()){
-			// You can get the next unexplored child node with GameTree#getNextChild().
-			GameTree child = tree.getNextChild();
-
-			
-			// Find the lowest possible utility value the child node can have.
-			child.value = findMin(child);
-			
-			// Update 'max' based on this new information.  'max' should always hold the
-			// largest value we have discovered so far.
-			
-			max = max(max, child.value);
+		// Start with the lowest possible number and work up from there.
+		int best = TranspositionTable.NO_MOVE;
+		int max = Integer.MIN_VALUE;
+		int[] children = moves[ply];
+		int count = getMoves(board, children);
+		for(int index = 0; index < count; index++) {
+			// Make the move, find the lowest possible utility value the child
+			// can have, and take the move back.
+			int cell = children[index];
+			board.make(cell);
+			metrics.node(ply + 1);
+			int value = findMin(board, ply + 1);
+			board.unmake(cell);
+			// 'max' should always hold the largest value discovered so far.
+			if(value > max) {
+				max = value;
+				best = cell;
+			}
 		}
-		// Return the highest utility value of all the children nodes.
+		if(ply == 0)
+			rootMove = best;
+		store(board, max, best);
 		return max;
 	}
 	
-	private double max(double max, double child_value) {
-		if (max > child_value)
-			return max;
-		else{ 
-			return child_value;
-		}
-	}
-
 	/**
-	 * Given a {@link GameTree} node, expand its children (if any) to find the
-	 * node with the lowest maximum utility value.
+	 * Expands a board's position to find the child with the lowest maximum
+	 * utility value.
 	 * 
-	 * @param tree the node whose children need to be expanded
-	 * @return the utility value of the node with the lowest maximum utility
+	 * @param board the board, which is in the same position again when this returns
+	 * @param ply the number of moves between the root and the board's position
+	 * @return the utility value of the child with the lowest maximum utility
 	 */
-	private double findMin(GameTree tree) {
+	private int findMin(SearchBoard board, int ply) {
 		// This method is simply the opposite of #findMax.
-		if(tree.state.isTerminal()) {
-			return Utility.evaluate(tree.state);
+		if(board.isTerminal()) {
+			metrics.leaf();
+			return Utility.score(board);
 		}
-		double min = Double.POSITIVE_INFINITY;
-
-		while (tree.hasNextChild()){
-			// You can get the next unexplored child node with GameTree#getNextChild().
-			GameTree child = tree.getNextChild();
-
-			// Find the lowest possible utility value the child node can have.
-			child.value = findMax(child);			
-			// Update 'min' based on this new information.  'min' should always hold the
-			// smallest value we have discovered so far.
-			
-			min = min(min, child.value);
+		if(table != null && ply > 0) {
+			int slot = table.probe(key(board));
+			if(slot != -1 && table.getBound(slot) == Bound.EXACT) {
+				hits++;
+				return (int) table.getValue(slot);
+			}
 		}
+		int best = TranspositionTable.NO_MOVE;
+		int min = Integer.MAX_VALUE;
+		int[] children = moves[ply];
+		int count = getMoves(board, children);
+		for(int index = 0; index < count; index++) {
+			int cell = children[index];
+			board.make(cell);
+			metrics.node(ply + 1);
+			int value = findMax(board, ply + 1);
+			board.unmake(cell);
+			if(value < min) {
+				min = value;
+				best = cell;
+			}
+		}
+		if(ply == 0)
+			rootMove = best;
+		store(board, min, best);
 		return min;
 	}
-
-	private double min(double min, double child_value) {
-		if (min < child_value)
-			return min;
-		else{ 
-			return child_value;
+	
+	/**
+	 * Lists the moves to expand on a board, leaving out moves equivalent by
+	 * symmetry when searching in canonical space.
+	 * 
+	 * @param board the board
+	 * @param moves the array the cell numbers of the moves are written to
+	 * @return the number of moves
+	 */
+	private int getMoves(SearchBoard board, int[] moves) {
+		if(!symmetric)
+			return board.getMoves(moves);
+		int distinct = Symmetry.getDistinctMoves(board.getBoard());
+		int count = 0;
+		for(int cell = 0; cell < Board.CELLS; cell++)
+			if((distinct & (1 << cell)) != 0)
+				moves[count++] = cell;
+		return count;
+	}
+	
+	/**
+	 * Records the value of a fully expanded board position in the
+	 * transposition table, if this bot has one.
+	 * 
+	 * @param board the board
+	 * @param value the position's value
+	 * @param best the cell number of the best move
+	 */
+	private void store(SearchBoard board, int value, int best) {
+		if(table == null)
+			return;
+		long key = board.getKey();
+		int move = best;
+		if(symmetric) {
+			int packed = board.getBoard();
+			int transform = Symmetry.getCanonicalTransform(packed);
+			key = Symmetry.transform(transform, packed);
+			move = Symmetry.transformCell(transform, move);
 		}
+		table.store(key, value, Bound.EXACT, board.getEmptySquares(), move);
+	}
+	
+	/**
+	 * Returns the transposition table key of a board's position.
+	 * 
+	 * @param board the board
+	 * @return its key, or its canonical board when searching in canonical space
+	 */
+	private long key(SearchBoard board) {
+		if(symmetric)
+			return Symmetry.getCanonical(board.getBoard());
+		else
+			return board.getKey();
 	}
 }
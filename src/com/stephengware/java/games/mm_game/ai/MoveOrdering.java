@@ -0,0 +1,68 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Move;
+import com.stephengware.java.games.mm_game.state.SearchBoard;
+
+/**
+ * A move ordering decides which children of a {@link GameTree} node are
+ * expanded first.  Alpha beta search prunes the most when the best move is
+ * searched first, so a good ordering can greatly reduce the number of nodes
+ * a search expands without changing the value it finds.
+ * <p>
+ * Searches which use an ordering report each cutoff back to it with
+ * {@link #cutoff(GameState, Move, int, int, int)}, so that the ordering can
+ * learn which moves tend to be good.
+ * <p>
+ * Engines which search on a {@link SearchBoard} use the versions of these
+ * methods which take cell numbers, so that ordering does not allocate.
+ * 
+ * @author Stephen G. Ware
+ */
+public interface MoveOrdering {
+
+	/**
+	 * Puts the moves available in a state in the order they should be
+	 * searched.
+	 * 
+	 * @param state the state
+	 * @param moves the moves available in the state
+	 * @param ply the number of moves between the root of the search and the state
+	 * @return the same moves, in the order to search them
+	 */
+	public Iterable<Move> order(GameState state, Iterable<Move> moves, int ply);
+
+	/**
+	 * Reports that a move caused a cutoff, meaning the rest of the state's
+	 * children did not need to be searched.
+	 * 
+	 * @param state the state in which the move was made
+	 * @param move the move which caused the cutoff
+	 * @param ply the number of moves between the root of the search and the state
+	 * @param depth the number of moves the search below the state could look ahead
+	 * @param index how many of the state's children were searched before the move (0 if it was searched first)
+	 */
+	public void cutoff(GameState state, Move move, int ply, int depth, int index);
+
+	/**
+	 * Puts the squares in which the current player of a board may move in
+	 * the order they should be searched.
+	 * 
+	 * @param board the board
+	 * @param moves the cell numbers of the available moves, which are reordered in place
+	 * @param count the number of moves
+	 * @param ply the number of moves between the root of the search and the board's position
+	 */
+	public void order(SearchBoard board, int[] moves, int count, int ply);
+
+	/**
+	 * Reports that a move on a board caused a cutoff.
+	 * 
+	 * @param board the board, in the position in which the move was made
+	 * @param cell the cell number of the move which caused the cutoff
+	 * @param ply the number of moves between the root of the search and the board's position
+	 * @param depth the number of moves the search below the position could look ahead
+	 * @param index how many of the position's children were searched before the move (0 if it was searched first)
+	 */
+	public void cutoff(SearchBoard board, int cell, int ply, int depth, int index);
+}
@@ -0,0 +1,217 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import com.stephengware.java.games.mm_game.ai.TranspositionTable.Bound;
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Player;
+import com.stephengware.java.games.mm_game.state.SearchBoard;
+
+/**
+ * The shared core of a family of bots which search the whole game tree with
+ * negamax, a form of alpha beta search that scores every node from the point
+ * of view of the player to move.  Because X's best move is O's worst, one
+ * routine which negates the values of its children replaces the mirrored
+ * findMax and findMin routines of {@link AlphaBetaBot}.
+ * <p>
+ * The search is fail-soft: when a node's value falls outside the window
+ * (alpha, beta), the value returned is still the tightest bound that was
+ * found rather than alpha or beta.  This makes searches with an empty
+ * window, which only ask whether a node is better than some value, useful
+ * to subclasses.
+ * <p>
+ * Nodes are not kept in a {@link GameTree}, since the engines in this family
+ * may search the same node more than once.  {@link Decision#work} counts
+ * every node searched, including repeats.  Instead, the search makes and
+ * takes back moves on one {@link SearchBoard}, and lists each node's moves
+ * into an array kept for its ply, so nothing is allocated for each node.
+ * <p>
+ * If there is a {@link TranspositionTable}, its best move for a node is
+ * always searched first and its values are stored from X's point of view,
+ * so the same table can be shared with {@link AlphaBetaBot}.
+ *
+ * @author Stephen G. Ware
+ */
+public abstract class NegamaxBot implements Bot {
+
+	/** Remembers positions already searched, or null to search every node */
+	protected final TranspositionTable table;
+	
+	/** Decides the order in which children are searched, or null */
+	protected final MoveOrdering ordering;
+
+	/**
+	 * Whether children after the first are searched with an empty window
+	 * and only searched again if they turn out to be better
+	 */
+	private final boolean scout;
+
+	/** Measurements of the current decision, including the number of nodes searched */
+	private SearchMetrics metrics;
+
+	/** The number of transposition table hits during the current decision */
+	private int hits;
+
+	/** The cell number of the best move found at the root by the last search, or {@link TranspositionTable#NO_MOVE} */
+	private int best;
+	
+	/** The moves of the node being searched at each ply */
+	private int[][] moves;
+
+	/**
+	 * Constructs a negamax bot.
+	 *
+	 * @param table the transposition table, which is kept between decisions, or null
+	 * @param ordering decides the order in which children are searched, or null
+	 * @param scout whether to search children after the first with an empty window
+	 */
+	protected NegamaxBot(TranspositionTable table, MoveOrdering ordering, boolean scout) {
+		this.table = table;
+		this.ordering = ordering;
+		this.scout = scout;
+	}
+
+	@Override
+	public Decision chooseMove(GameState state) {
+		if(state.isTerminal())
+			return null;
+		metrics = new SearchMetrics();
+		metrics.start();
+		hits = 0;
+		best = TranspositionTable.NO_MOVE;
+		SearchBoard board = new SearchBoard(state);
+		moves = new int[board.getEmptySquares() + 1][board.width * board.height];
+		search(board);
+		metrics.stop();
+		if(best == TranspositionTable.NO_MOVE)
+			return null;
+		return new Decision(board.getMove(best), (int) metrics.getNodes(), hits, metrics);
+	}
+
+	/**
+	 * Searches the tree below the root by calling
+	 * {@link #negamax(SearchBoard, double, double, int)} one or more times.
+	 * The move chosen is the best move at the root from the last call that
+	 * found one.
+	 *
+	 * @param root the board, in the position in which a move must be chosen
+	 * @return the value of the root to the player to move
+	 */
+	protected abstract double search(SearchBoard root);
+
+	/**
+	 * Returns the utility of a board's position to the player whose turn it
+	 * is.
+	 *
+	 * @param board the board
+	 * @return the utility to the player to move
+	 */
+	private static double evaluate(SearchBoard board) {
+		double value = Utility.evaluate(board);
+		return board.getCurrentPlayer() == Player.X ? value : -value;
+	}
+
+	/**
+	 * Finds the value of a node to the player whose turn it is.  If the value
+	 * is in the window (alpha, beta) it is exact; if it is at or below alpha
+	 * the true value is no higher, and if it is at or above beta the true
+	 * value is no lower.  At the root (ply 0), this also records the best
+	 * move unless the search failed low.
+	 *
+	 * @param board the board, in the position of the node, which is the same
+	 * again when this returns
+	 * @param alpha the value the player to move can already guarantee elsewhere
+	 * @param beta the value the opponent can already guarantee elsewhere, negated
+	 * @param ply the number of moves between the root and this node
+	 * @return the value of the node, or a bound on it
+	 */
+	protected final double negamax(SearchBoard board, double alpha, double beta, int ply) {
+		metrics.node(ply);
+		if(board.isTerminal()) {
+			metrics.leaf();
+			return evaluate(board);
+		}
+		double sign = board.getCurrentPlayer() == Player.X ? 1 : -1;
+		int tableMove = TranspositionTable.NO_MOVE;
+		if(table != null) {
+			int slot = table.probe(board.getKey());
+			if(slot != -1) {
+				// The table's window and values are from X's point of view.
+				if(ply > 0 && table.isCutoff(slot, sign > 0 ? alpha : -beta, sign > 0 ? beta : -alpha)) {
+					hits++;
+					return sign * table.getValue(slot);
+				}
+				tableMove = table.getMove(slot);
+			}
+		}
+		int[] children = moves[ply];
+		int count = order(board, children, ply, tableMove);
+		double alphaOriginal = alpha;
+		double max = Double.NEGATIVE_INFINITY;
+		int bestMove = TranspositionTable.NO_MOVE;
+		for(int index = 0; index < count; index++) {
+			int cell = children[index];
+			board.make(cell);
+			double value;
+			if(scout && index > 0) {
+				value = -negamax(board, -Math.nextUp(alpha), -alpha, ply + 1);
+				if(value > alpha && value < beta)
+					value = -negamax(board, -beta, -value, ply + 1);
+			}
+			else
+				value = -negamax(board, -beta, -alpha, ply + 1);
+			board.unmake(cell);
+			if(value > max) {
+				max = value;
+				bestMove = cell;
+			}
+			if(max >= beta) {
+				metrics.cutoff(ply);
+				if(ordering != null)
+					ordering.cutoff(board, cell, ply, board.getEmptySquares(), index);
+				break;
+			}
+			alpha = Math.max(alpha, max);
+		}
+		// A root which failed low has only upper bounds, so no move is proven.
+		if(ply == 0 && max > alphaOriginal)
+			best = bestMove;
+		if(table != null) {
+			Bound bound;
+			if(max >= beta)
+				bound = sign > 0 ? Bound.LOWER : Bound.UPPER;
+			else if(max <= alphaOriginal)
+				bound = sign > 0 ? Bound.UPPER : Bound.LOWER;
+			else
+				bound = Bound.EXACT;
+			table.store(board.getKey(), sign * max, bound, board.getEmptySquares(), bestMove);
+		}
+		return max;
+	}
+
+	/**
+	 * Lists the moves available on a board in the order they should be
+	 * searched: the transposition table's best move first, then the rest in
+	 * the order chosen by the move ordering.
+	 *
+	 * @param board the board
+	 * @param moves the array the cell numbers of the moves are written to
+	 * @param ply the number of moves between the root and the board's position
+	 * @param tableMove the cell number of the table's best move, or {@link TranspositionTable#NO_MOVE}
+	 * @return the number of moves
+	 */
+	private int order(SearchBoard board, int[] moves, int ply, int tableMove) {
+		int count = board.getMoves(moves);
+		if(ordering != null)
+			ordering.order(board, moves, count, ply);
+		if(tableMove == TranspositionTable.NO_MOVE)
+			return count;
+		for(int i = 0; i < count; i++) {
+			if(moves[i] == tableMove) {
+				// Shift the moves before it back one, so they keep their order.
+				System.arraycopy(moves, 0, moves, 1, i);
+				moves[0] = tableMove;
+				break;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,74 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import java.util.Arrays;
+
+/**
+ * A pool of {@link GameTree} nodes for lazy trees.  Nodes whose subtrees
+ * have been searched are returned to the pool and handed out again, so a
+ * search which visits millions of nodes only ever constructs about as many
+ * as the deepest line of play it explores.  A pool can be kept between
+ * searches so that later searches construct no nodes at all.
+ * <p>
+ * This class is not thread safe; each pool should be used by one search at
+ * a time.
+ * 
+ * @author Stephen G. Ware
+ */
+public class NodePool {
+
+	/** Nodes which are free to be used */
+	private GameTree[] free = new GameTree[16];
+	
+	/** The number of free nodes */
+	private int size = 0;
+	
+	/** The number of nodes this pool has constructed */
+	private int constructed = 0;
+	
+	/**
+	 * Returns a free node, constructing a new one if none are free.
+	 * 
+	 * @return a node whose fields must be set before it is used
+	 */
+	GameTree allocate() {
+		if(size == 0) {
+			constructed++;
+			return new GameTree();
+		}
+		GameTree node = free[--size];
+		free[size] = null;
+		return node;
+	}
+	
+	/**
+	 * Returns a node to the pool.  The node must not be used again until it
+	 * is handed out by {@link #allocate()}.
+	 * 
+	 * @param node the node
+	 */
+	void release(GameTree node) {
+		node.clear();
+		if(size == free.length)
+			free = Arrays.copyOf(free, size * 2);
+		free[size++] = node;
+	}
+	
+	/**
+	 * Returns the number of nodes this pool has constructed, which is the
+	 * most nodes that were ever in use at once.
+	 * 
+	 * @return the number of nodes constructed
+	 */
+	public int getConstructed() {
+		return constructed;
+	}
+	
+	/**
+	 * Returns the number of nodes which are free to be used.
+	 * 
+	 * @return the number of free nodes
+	 */
+	public int getFree() {
+		return size;
+	}
+}
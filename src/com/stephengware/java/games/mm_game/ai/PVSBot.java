@@ -0,0 +1,41 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import com.stephengware.java.games.mm_game.state.SearchBoard;
+
+/**
+ * This bot uses Principal Variation Search (also called NegaScout).  It
+ * assumes the first child it searches at each node is the best one, which
+ * is usually true when moves are well ordered.  Every later child is first
+ * searched with an empty window, which cheaply proves that it is no better;
+ * only a child which turns out to be better is searched again with the
+ * full window.
+ * <p>
+ * It makes decisions just as good as {@link AlphaBetaBot}'s.
+ *
+ * @author Stephen G. Ware
+ */
+public class PVSBot extends NegamaxBot {
+
+	/**
+	 * Constructs a bot which uses a {@link TranspositionTable} and a
+	 * {@link HeuristicOrdering}.
+	 */
+	public PVSBot() {
+		this(new TranspositionTable(), new HeuristicOrdering());
+	}
+
+	/**
+	 * Constructs a bot with a given table and move ordering.
+	 *
+	 * @param table the transposition table, which is kept between decisions, or null
+	 * @param ordering decides the order in which children are searched, or null
+	 */
+	public PVSBot(TranspositionTable table, MoveOrdering ordering) {
+		super(table, ordering, true);
+	}
+
+	@Override
+	protected double search(SearchBoard root) {
+		return negamax(root, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 0);
+	}
+}
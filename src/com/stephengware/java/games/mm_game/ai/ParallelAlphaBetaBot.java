@@ -0,0 +1,316 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import com.stephengware.java.games.mm_game.state.Player;
+import com.stephengware.java.games.mm_game.state.GameState;
+
+/**
+ * This bot makes exactly the same decisions as {@link AlphaBetaBot}, but
+ * spreads the search over the threads of a {@link ForkJoinPool} using the
+ * Young Brothers Wait Concept.
+ * <p>
+ * At each node the first (eldest) child is searched alone, because it
+ * usually establishes a good bound.  Once it is done, the remaining
+ * (younger) children are searched in parallel, each starting from the best
+ * bound found by any of its siblings so far.  As soon as one sibling causes a
+ * cutoff, the siblings that are still running give up.  Nodes with only a few
+ * moves left are searched serially, since splitting them costs more than it
+ * saves.
+ * <p>
+ * Because siblings are searched with bounds found in parallel, a sibling can
+ * report the same value as the best move even though its true value is
+ * worse.  Before deciding, the bot searches such a sibling again with a full
+ * window so that it always picks the same move as {@link AlphaBetaBot}.
+ * <p>
+ * The bot never creates threads of its own, so it has nothing to shut down.
+ * Whoever creates a pool for it (to choose the number of threads, for
+ * example) owns that pool and shuts it down when the bot is done with it.
+ *
+ * @author Stephen G. Ware
+ */
+public class ParallelAlphaBetaBot implements Bot {
+
+	/** The default smallest number of empty squares at which a node is split */
+	public static final int DEFAULT_SPLIT_DEPTH = 4;
+
+	/** The threads which perform the search */
+	private final ForkJoinPool pool;
+
+	/** The smallest number of empty squares at which a node is split */
+	private final int splitDepth;
+
+	/**
+	 * Constructs a bot which searches on the common fork join pool.
+	 */
+	public ParallelAlphaBetaBot() {
+		this(ForkJoinPool.commonPool(), DEFAULT_SPLIT_DEPTH);
+	}
+
+	/**
+	 * Constructs a bot which searches on a given pool of threads, such as
+	 * <code>new ForkJoinPool(parallelism)</code>.  The pool is not shut down
+	 * by the bot.
+	 *
+	 * @param pool the threads which perform the search
+	 */
+	public ParallelAlphaBetaBot(ForkJoinPool pool) {
+		this(pool, DEFAULT_SPLIT_DEPTH);
+	}
+
+	/**
+	 * Constructs a bot which searches on a given pool of threads.  The pool
+	 * is not shut down by the bot.
+	 *
+	 * @param pool the threads which perform the search
+	 * @param splitDepth the smallest number of empty squares at which the
+	 * children of a node are searched in parallel
+	 */
+	public ParallelAlphaBetaBot(ForkJoinPool pool, int splitDepth) {
+		this.pool = pool;
+		this.splitDepth = splitDepth;
+	}
+
+	@Override
+	public Decision chooseMove(GameState state) {
+		return pool.invoke(new RootTask(state));
+	}
+
+	/**
+	 * Searches the root of the tree and picks the first child which achieves
+	 * the root's value.
+	 */
+	private final class RootTask extends RecursiveTask<Decision> {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The state in which a move must be chosen */
+		private final GameState state;
+
+		RootTask(GameState state) {
+			this.state = state;
+		}
+
+		@Override
+		protected Decision compute() {
+			GameTree root = new GameTree(state);
+			if(!root.hasNextChild())
+				return null;
+			SearchMetrics metrics = new SearchMetrics();
+			metrics.start();
+			metrics.node(0);
+			boolean max = state.getCurrentPlayer() == Player.X;
+			GameTree eldest = root.getNextChild();
+			eldest.setValue(search(eldest, 1, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, null, metrics));
+			SplitPoint split;
+			if(max)
+				split = new SplitPoint(null, true, eldest.getValue(), eldest.getValue(), Double.POSITIVE_INFINITY);
+			else
+				split = new SplitPoint(null, false, eldest.getValue(), Double.NEGATIVE_INFINITY, eldest.getValue());
+			ArrayList<SearchTask> tasks = new ArrayList<>();
+			while(root.hasNextChild())
+				tasks.add(new SearchTask(root.getNextChild(), split));
+			invokeAll(tasks);
+			for(SearchTask task : tasks)
+				metrics.add(task.metrics);
+			double value = split.best;
+			if(eldest.getValue() == value)
+				return decide(eldest, metrics);
+			for(SearchTask task : tasks) {
+				if(task.child.getValue() != value)
+					continue;
+				if(task.exact)
+					return decide(task.child, metrics);
+				// This sibling only proved a bound equal to the best value,
+				// so find out whether it really is that good.
+				GameTree again = new GameTree(task.child.getState());
+				double exact = search(again, 1, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, null, metrics);
+				if(exact == value)
+					return decide(task.child, metrics);
+			}
+			return null;
+		}
+
+		/**
+		 * Ends the search by choosing a child of the root.
+		 *
+		 * @param child the child
+		 * @param metrics the measurements of the whole search
+		 * @return the decision
+		 */
+		private Decision decide(GameTree child, SearchMetrics metrics) {
+			metrics.stop();
+			return new Decision(child.getMove(), (int) metrics.getNodes(), 0, metrics);
+		}
+	}
+
+	/**
+	 * Searches one younger child of a split node and reports its value to the
+	 * split point.
+	 */
+	private final class SearchTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The child to search */
+		final GameTree child;
+
+		/** The node whose children are being searched in parallel */
+		private final SplitPoint split;
+
+		/** Whether the child's value is exact rather than a bound */
+		boolean exact;
+
+		/** Measurements of the search below the child */
+		final SearchMetrics metrics = new SearchMetrics();
+
+		SearchTask(GameTree child, SplitPoint split) {
+			this.child = child;
+			this.split = split;
+		}
+
+		@Override
+		protected void compute() {
+			if(split.isAborted())
+				return;
+			double alpha = split.alpha;
+			double beta = split.beta;
+			child.setValue(search(child, child.getPly(), alpha, beta, split, metrics));
+			exact = alpha < child.getValue() && child.getValue() < beta;
+			split.update(child.getValue());
+		}
+	}
+
+	/**
+	 * The shared bounds of a node whose younger children are being searched
+	 * in parallel.
+	 */
+	private static final class SplitPoint {
+
+		/** The split point this node's search belongs to, if any */
+		private final SplitPoint parent;
+
+		/** Whether the node is trying to maximize utility (player X to move) */
+		private final boolean max;
+
+		/** The best value found among the node's children so far */
+		volatile double best;
+
+		/** The highest utility value discovered so far in this branch of the tree */
+		volatile double alpha;
+
+		/** The lowest utility value discovered so far in this branch of the tree */
+		volatile double beta;
+
+		SplitPoint(SplitPoint parent, boolean max, double best, double alpha, double beta) {
+			this.parent = parent;
+			this.max = max;
+			this.best = best;
+			this.alpha = alpha;
+			this.beta = beta;
+		}
+
+		/**
+		 * Returns true if this node or any node above it has been cut off,
+		 * meaning the rest of the search below it is pointless.
+		 *
+		 * @return true if the search should give up
+		 */
+		boolean isAborted() {
+			for(SplitPoint split = this; split != null; split = split.parent)
+				if(split.alpha >= split.beta)
+					return true;
+			return false;
+		}
+
+		/**
+		 * Records the value of a child, tightening the shared bounds.  Values
+		 * from searches which gave up are ignored.
+		 *
+		 * @param value the child's value
+		 */
+		synchronized void update(double value) {
+			if(isAborted())
+				return;
+			if(max) {
+				best = Math.max(best, value);
+				alpha = Math.max(alpha, best);
+			}
+			else {
+				best = Math.min(best, value);
+				beta = Math.min(beta, best);
+			}
+		}
+	}
+
+	/**
+	 * Searches a node with alpha beta pruning, splitting it if it is big
+	 * enough.
+	 *
+	 * @param tree the node whose children need to be expanded
+	 * @param ply the number of moves between the root of the decision and the node
+	 * @param alpha the highest utility value discovered so far in this branch of the tree (i.e. best for X)
+	 * @param beta the lowest utility value discovered so far in this branch of the tree (i.e. best for O)
+	 * @param split the split point this search belongs to, or null
+	 * @param metrics where this thread's part of the search is measured
+	 * @return the utility value of the node
+	 */
+	private double search(GameTree tree, int ply, double alpha, double beta, SplitPoint split, SearchMetrics metrics) {
+		metrics.node(ply);
+		if(tree.getState().isTerminal()) {
+			metrics.leaf();
+			return Utility.evaluate(tree.getState());
+		}
+		boolean max = tree.getState().getCurrentPlayer() == Player.X;
+		// Young brothers wait: search the eldest child alone first.
+		GameTree eldest = tree.getNextChild();
+		eldest.setValue(search(eldest, ply + 1, alpha, beta, split, metrics));
+		double best = eldest.getValue();
+		if(max ? best >= beta : best <= alpha) {
+			metrics.cutoff(ply);
+			return best;
+		}
+		if(max)
+			alpha = Math.max(alpha, best);
+		else
+			beta = Math.min(beta, best);
+		if(tree.hasNextChild() && tree.getState().getEmptySquares() >= splitDepth) {
+			SplitPoint node = new SplitPoint(split, max, best, alpha, beta);
+			List<SearchTask> tasks = new ArrayList<>();
+			while(tree.hasNextChild())
+				tasks.add(new SearchTask(tree.getNextChild(), node));
+			ForkJoinTask.invokeAll(tasks);
+			for(SearchTask task : tasks)
+				metrics.add(task.metrics);
+			return node.best;
+		}
+		while(tree.hasNextChild()) {
+			if(split != null && split.isAborted())
+				return best;
+			GameTree child = tree.getNextChild();
+			child.setValue(search(child, ply + 1, alpha, beta, split, metrics));
+			if(max) {
+				best = Math.max(best, child.getValue());
+				if(best >= beta) {
+					metrics.cutoff(ply);
+					return best;
+				}
+				alpha = Math.max(alpha, best);
+			}
+			else {
+				best = Math.min(best, child.getValue());
+				if(best <= alpha) {
+					metrics.cutoff(ply);
+					return best;
+				}
+				beta = Math.min(beta, best);
+			}
+		}
+		return best;
+	}
+}
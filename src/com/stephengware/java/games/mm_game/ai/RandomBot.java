@@ -1,19 +1,26 @@
 package com.stephengware.java.games.mm_game.ai;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
+import com.stephengware.java.games.mm_game.state.Board;
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Move;
 import com.stephengware.java.games.mm_game.state.State;
 
 /**
  * A random Tic Tac Toe bot simply chooses its next move at random from all the
  * available next moves.
+ * <p>
+ * The move is chosen with {@link RandomPlayout}, without building a game tree
+ * or listing the moves, so the only objects made for a decision are the move
+ * and the decision itself.
  * 
  * @author Stephen G. Ware
  */
 public class RandomBot implements Bot {
 
 	/** A random number generator */
-	private Random random;
+	private SplittableRandom random;
 	
 	/**
 	 * Constructs a new random bot with a given random number generator seed.
@@ -21,16 +28,35 @@ public class RandomBot implements Bot {
 	 * @param seed the random number generator seed
 	 */
 	public RandomBot(long seed) {
-		this.random = new Random(seed);
+		this(new SplittableRandom(seed));
+	}
+	
+	/**
+	 * Constructs a new random bot which draws from a given random number
+	 * generator.
+	 * 
+	 * @param random the random number generator
+	 */
+	public RandomBot(SplittableRandom random) {
+		this.random = random;
 	}
 	
 	@Override
-	public Decision chooseMove(State state) {
-		GameTree root = new GameTree(state);
-		while(root.hasNextChild())
-			root.getNextChild();
-		GameTree child = root.children.get(random.nextInt(root.children.size()));
-		System.out.println(child.value);
-		return new Decision(child.move, root.size());
+	public Decision chooseMove(GameState state) {
+		int cell;
+		int work;
+		if(state instanceof State) {
+			int board = ((State) state).getBoard();
+			cell = RandomPlayout.move(board, random);
+			work = Integer.bitCount(Board.getMoves(board)) + 1;
+		}
+		else {
+			cell = RandomPlayout.move(state, random);
+			work = state.getEmptySquares() + 1;
+		}
+		if(cell == -1)
+			return null;
+		int width = state.getWidth();
+		return new Decision(Move.get(state.getCurrentPlayer(), cell / width, cell % width), work);
 	}
 }
@@ -0,0 +1,124 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import java.util.SplittableRandom;
+
+import com.stephengware.java.games.mm_game.state.Board;
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Player;
+import com.stephengware.java.games.mm_game.state.SearchBoard;
+
+/**
+ * Makes random moves and plays whole random games without allocating
+ * anything, for bots which play at random and for searches which play games
+ * out at random, like {@link MctsBot}.
+ * <p>
+ * Tic Tac Toe games are played on a packed {@link Board}: the empty cells
+ * are a 9-bit mask and a move is a random bit of it.  Larger grids are
+ * played on a {@link SearchBoard}, using arrays the caller provides.  Random
+ * numbers come from a {@link SplittableRandom}, which is much faster than
+ * {@link java.util.Random} and can be split so each thread has its own.
+ * <p>
+ * None of these methods keep any state, so they are safe to call from any
+ * number of threads as long as each thread has its own random number
+ * generator and board.
+ *
+ * @author Stephen G. Ware
+ */
+public final class RandomPlayout {
+
+	private RandomPlayout() {
+		// Only static methods.
+	}
+
+	/**
+	 * Chooses one of a set of cells at random, each with the same chance.
+	 *
+	 * @param cells a bit mask of cells, which must not be empty
+	 * @param random the random number generator
+	 * @return the number of one of the cells
+	 */
+	public static int pick(int cells, SplittableRandom random) {
+		// Clear the lowest set bit a random number of times.
+		for(int skip = random.nextInt(Integer.bitCount(cells)); skip > 0; skip--)
+			cells &= cells - 1;
+		return Integer.numberOfTrailingZeros(cells);
+	}
+
+	/**
+	 * Chooses a random move on a packed Tic Tac Toe board.
+	 *
+	 * @param board the packed board
+	 * @param random the random number generator
+	 * @return the cell number of the move, or -1 if the game is over
+	 */
+	public static int move(int board, SplittableRandom random) {
+		int moves = Board.getMoves(board);
+		return moves == 0 ? -1 : pick(moves, random);
+	}
+
+	/**
+	 * Chooses a random move in any state, without listing the moves.
+	 *
+	 * @param state the state
+	 * @param random the random number generator
+	 * @return the cell number (<code>row * width + column</code>) of the
+	 * move, or -1 if the game is over
+	 */
+	public static int move(GameState state, SplittableRandom random) {
+		if(state.isTerminal())
+			return -1;
+		int width = state.getWidth();
+		int cells = width * state.getHeight();
+		int skip = random.nextInt(state.getEmptySquares());
+		for(int cell = 0; cell < cells; cell++)
+			if(state.getSquare(cell / width, cell % width) == null && skip-- == 0)
+				return cell;
+		throw new IllegalStateException("The state has no empty squares.");
+	}
+
+	/**
+	 * Plays random moves on a packed Tic Tac Toe board until the game ends.
+	 *
+	 * @param board the packed board
+	 * @param random the random number generator
+	 * @return the packed board at the end of the game
+	 */
+	public static int play(int board, SplittableRandom random) {
+		for(int moves = Board.getMoves(board); moves != 0; moves = Board.getMoves(board))
+			board = Board.make(board, pick(moves, random));
+		return board;
+	}
+
+	/**
+	 * Plays a whole random Tic Tac Toe game from the empty board.
+	 *
+	 * @param random the random number generator
+	 * @return the winner, or null for a tie
+	 */
+	public static Player play(SplittableRandom random) {
+		return Board.getWinner(play(Board.EMPTY, random));
+	}
+
+	/**
+	 * Plays random moves on a board until the game ends, then takes them all
+	 * back, so the board is left as it was.
+	 *
+	 * @param board the board
+	 * @param moves an array with room for every square on the grid
+	 * @param played an array with room for every square on the grid
+	 * @param random the random number generator
+	 * @return the winner, or null for a tie
+	 */
+	public static Player play(SearchBoard board, int[] moves, int[] played, SplittableRandom random) {
+		int made = 0;
+		for(int count = board.getMoves(moves); count != 0; count = board.getMoves(moves)) {
+			int cell = moves[random.nextInt(count)];
+			board.make(cell);
+			played[made++] = cell;
+		}
+		Player winner = board.getWinner();
+		while(made > 0)
+			board.unmake(played[--made]);
+		return winner;
+	}
+}
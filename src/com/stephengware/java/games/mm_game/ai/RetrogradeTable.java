@@ -0,0 +1,403 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Player;
+
+/**
+ * The perfect play value and best move of every state of a small m,n,k
+ * game, found by retrograde analysis: rather than searching down from each
+ * position, every legal position is enumerated and solved from the bottom
+ * up, one layer at a time.
+ * <p>
+ * The layers hold the positions with the same number of marks, which is
+ * also the number of moves made.  The last layer, with the grid full, is
+ * solved first.  A position in any layer is either over, and scored as
+ * {@link Utility#evaluate(GameState)} would score it, or its value is the
+ * best value among its children, all of which are in the layer below and so
+ * already solved.  The positions of a layer are split between the threads
+ * of a {@link ForkJoinPool}.
+ * <p>
+ * Values are kept in one dense byte array, indexed by reading the grid as a
+ * base 3 number in which cell <i>i</i> (<code>row * width + column</code>)
+ * is digit <i>i</i> and an empty cell is 0, an X is 1, and an O is 2, as in
+ * a {@link Tablebase}.  The low 2 bits of each byte hold the value plus 2
+ * (so 0 means the position cannot arise in a game) and the next 5 bits hold
+ * the cell number of the best move plus 1 (so 0 means the game is over).
+ * A grid of up to {@link #MAX_CELLS} squares fits, such as 4 by 4, whose
+ * table is 43MB.
+ * <p>
+ * Like {@link Tablebase}, the best move is the first move in row major order
+ * that achieves the best value.  Looking up a position takes one array read
+ * once its index is known.
+ * <p>
+ * This class is thread safe once solved.
+ *
+ * @author Stephen G. Ware
+ */
+public class RetrogradeTable {
+
+	/** The most squares a grid may have */
+	public static final int MAX_CELLS = 16;
+
+	/** The value returned by {@link #getMove(int)} when there is no move to make */
+	public static final int NO_MOVE = -1;
+
+	/** The number of subsets of squares below which a task is not split */
+	private static final int THRESHOLD = 256;
+
+	/** The number of columns */
+	public final int width;
+
+	/** The number of rows */
+	public final int height;
+
+	/** The number of marks in a line needed to win */
+	public final int winLength;
+
+	/** The number of squares */
+	private final int cells;
+
+	/** For every set of squares, the base 3 number with a 1 in each square of the set */
+	private final int[] base3;
+
+	/** 3 to the power of each cell number */
+	private final int[] powers;
+
+	/** For every set of squares, whether it contains a complete line */
+	private final boolean[] wins;
+
+	/** The entry of every position, indexed by base 3 number */
+	private final byte[] table;
+
+	/** The number of legal positions in each layer */
+	private final AtomicLongArray positions;
+
+	/** How long solving took in nanoseconds */
+	public final long time;
+
+	/**
+	 * Solves an m,n,k game on the common fork join pool.
+	 *
+	 * @param width the number of columns
+	 * @param height the number of rows
+	 * @param winLength the number of marks in a line needed to win
+	 * @throws IllegalArgumentException if the grid has more than {@link #MAX_CELLS} squares
+	 */
+	public RetrogradeTable(int width, int height, int winLength) {
+		this(width, height, winLength, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Solves an m,n,k game with the given threads.
+	 *
+	 * @param width the number of columns
+	 * @param height the number of rows
+	 * @param winLength the number of marks in a line needed to win
+	 * @param pool the threads which solve each layer
+	 * @throws IllegalArgumentException if the grid has more than {@link #MAX_CELLS} squares
+	 */
+	public RetrogradeTable(int width, int height, int winLength, ForkJoinPool pool) {
+		if(width < 1 || height < 1 || winLength < 1 || winLength > Math.max(width, height))
+			throw new IllegalArgumentException("A " + width + "x" + height + " grid cannot have lines of " + winLength + ".");
+		if(width * height > MAX_CELLS)
+			throw new IllegalArgumentException("A " + width + "x" + height + " grid is too large to solve; at most " + MAX_CELLS + " squares are supported.");
+		long start = System.nanoTime();
+		this.width = width;
+		this.height = height;
+		this.winLength = winLength;
+		this.cells = width * height;
+		this.powers = new int[cells];
+		int size = 1;
+		for(int cell = 0; cell < cells; cell++) {
+			powers[cell] = size;
+			size *= 3;
+		}
+		this.base3 = new int[1 << cells];
+		for(int set = 1; set < base3.length; set++) {
+			int cell = Integer.numberOfTrailingZeros(set);
+			base3[set] = base3[set & (set - 1)] + powers[cell];
+		}
+		this.wins = new boolean[1 << cells];
+		for(int line : getLines())
+			for(int set = 0; set < wins.length; set++)
+				if((set & line) == line)
+					wins[set] = true;
+		this.table = new byte[size];
+		this.positions = new AtomicLongArray(cells + 1);
+		for(int marks = cells; marks >= 0; marks--)
+			pool.invoke(new LayerTask(marks, 0, 1 << cells));
+		this.time = System.nanoTime() - start;
+	}
+
+	/**
+	 * Returns a mask of the squares of every line on the grid.
+	 *
+	 * @return the lines
+	 */
+	private int[] getLines() {
+		int[][] directions = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+		int count = 0;
+		int[] lines = new int[4 * cells];
+		for(int[] direction : directions) {
+			for(int row = 0; row < height; row++) {
+				for(int column = 0; column < width; column++) {
+					int endRow = row + direction[0] * (winLength - 1);
+					int endColumn = column + direction[1] * (winLength - 1);
+					if(endRow >= height || endColumn < 0 || endColumn >= width)
+						continue;
+					int line = 0;
+					for(int i = 0; i < winLength; i++)
+						line |= 1 << ((row + direction[0] * i) * width + column + direction[1] * i);
+					lines[count++] = line;
+				}
+			}
+		}
+		return Arrays.copyOf(lines, count);
+	}
+
+	/**
+	 * Solves the positions of one layer whose sets of marked squares fall in
+	 * a range, splitting the range in half until it is small.
+	 */
+	private final class LayerTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The number of marks in every position of the layer */
+		private final int marks;
+
+		/** The first set of marked squares in the range */
+		private final int from;
+
+		/** One past the last set of marked squares in the range */
+		private final int to;
+
+		LayerTask(int marks, int from, int to) {
+			this.marks = marks;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new LayerTask(marks, from, middle), new LayerTask(marks, middle, to));
+				return;
+			}
+			int xCount = (marks + 1) / 2;
+			long count = 0;
+			for(int marked = from; marked < to; marked++) {
+				if(Integer.bitCount(marked) != marks)
+					continue;
+				// Try every way of giving X its share of the marked squares.
+				for(int x = marked; ; x = (x - 1) & marked) {
+					if(Integer.bitCount(x) == xCount && solve(x, marked ^ x))
+						count++;
+					if(x == 0)
+						break;
+				}
+			}
+			positions.addAndGet(marks, count);
+		}
+	}
+
+	/**
+	 * Solves one position, whose children have all been solved.
+	 *
+	 * @param x the squares marked by X
+	 * @param o the squares marked by O
+	 * @return true if the position can arise in a game
+	 */
+	private boolean solve(int x, int o) {
+		int index = base3[x] + 2 * base3[o];
+		boolean xWon = wins[x];
+		boolean oWon = wins[o];
+		if(xWon || oWon) {
+			// The winner must have moved last, and the game must not have
+			// been won before that move.
+			int winner = xWon ? x : o;
+			if(xWon == oWon || (xWon ? Integer.bitCount(x) == Integer.bitCount(o) : Integer.bitCount(x) != Integer.bitCount(o)) || !canUndo(winner))
+				return false;
+			table[index] = (byte) ((xWon ? 1 : -1) + 2);
+			return true;
+		}
+		int empty = ~(x | o) & ((1 << cells) - 1);
+		if(empty == 0) {
+			table[index] = 2;
+			return true;
+		}
+		boolean max = Integer.bitCount(x) == Integer.bitCount(o);
+		int step = max ? 1 : 2;
+		int best = max ? -2 : 2;
+		int move = -1;
+		for(int cell = 0; cell < cells; cell++) {
+			if((empty & (1 << cell)) == 0)
+				continue;
+			int value = (table[index + step * powers[cell]] & 0x3) - 2;
+			if(max ? value > best : value < best) {
+				best = value;
+				move = cell;
+			}
+		}
+		table[index] = (byte) ((best + 2) | ((move + 1) << 2));
+		return true;
+	}
+
+	/**
+	 * Checks whether some mark of a winner's could have been the move which
+	 * won, meaning the game was not already over before it.
+	 *
+	 * @param marks the squares marked by the winner
+	 * @return true if removing some mark leaves no complete line
+	 */
+	private boolean canUndo(int marks) {
+		for(int rest = marks; rest != 0; rest &= rest - 1)
+			if(!wins[marks & ~Integer.lowestOneBit(rest)])
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns the number of legal positions with a given number of marks.
+	 *
+	 * @param marks the number of marks
+	 * @return the number of positions
+	 */
+	public long getPositions(int marks) {
+		return positions.get(marks);
+	}
+
+	/**
+	 * Returns the number of legal positions of the game.
+	 *
+	 * @return the number of positions
+	 */
+	public long getPositions() {
+		long total = 0;
+		for(int marks = 0; marks <= cells; marks++)
+			total += positions.get(marks);
+		return total;
+	}
+
+	/**
+	 * Returns the index of a state in this table.
+	 *
+	 * @param state the state, which must be on this table's grid
+	 * @return the index
+	 * @throws IllegalArgumentException if the state is on a different grid
+	 */
+	public int index(GameState state) {
+		if(state.getWidth() != width || state.getHeight() != height || state.getWinLength() != winLength)
+			throw new IllegalArgumentException("This table solves " + width + "," + height + "," + winLength + " games, not " + state.getWidth() + "," + state.getHeight() + "," + state.getWinLength() + " games.");
+		int index = 0;
+		for(int cell = 0; cell < cells; cell++) {
+			Player player = state.getSquare(cell / width, cell % width);
+			if(player != null)
+				index += (player.ordinal() + 1) * powers[cell];
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the index of a position given as the sets of squares marked by
+	 * each player.
+	 *
+	 * @param x the squares marked by X, with bit <code>i</code> set for cell <code>i</code>
+	 * @param o the squares marked by O
+	 * @return the index
+	 */
+	public int index(int x, int o) {
+		return base3[x] + 2 * base3[o];
+	}
+
+	/**
+	 * Returns the table entry for an index.
+	 *
+	 * @param index the index
+	 * @return the entry
+	 * @throws IllegalArgumentException if the position cannot arise in a game
+	 */
+	private int get(int index) {
+		int entry = table[index];
+		if(entry == 0)
+			throw new IllegalArgumentException("Position " + index + " cannot arise in a game.");
+		return entry;
+	}
+
+	/**
+	 * Checks whether a position can arise in a game.
+	 *
+	 * @param index the position's index
+	 * @return true if the position is legal, false otherwise
+	 */
+	public boolean isLegal(int index) {
+		return table[index] != 0;
+	}
+
+	/**
+	 * Returns the perfect play value of a position for player X.
+	 *
+	 * @param index the position's index
+	 * @return 1 if X wins, -1 if O wins, or 0 if the game is a tie
+	 * @throws IllegalArgumentException if the position cannot arise in a game
+	 */
+	public int getValue(int index) {
+		return (get(index) & 0x3) - 2;
+	}
+
+	/**
+	 * Returns the perfect play value of a state for player X.
+	 *
+	 * @param state the state
+	 * @return 1 if X wins, -1 if O wins, or 0 if the game is a tie
+	 * @throws IllegalArgumentException if the state cannot arise in a game or is on a different grid
+	 */
+	public int getValue(GameState state) {
+		return getValue(index(state));
+	}
+
+	/**
+	 * Returns the best move for the player whose turn it is.
+	 *
+	 * @param index the position's index
+	 * @return the cell number of the best move, or {@link #NO_MOVE} if the game is over
+	 * @throws IllegalArgumentException if the position cannot arise in a game
+	 */
+	public int getMove(int index) {
+		return (get(index) >>> 2) - 1;
+	}
+
+	/**
+	 * Returns the best move for the player whose turn it is in a state.
+	 *
+	 * @param state the state
+	 * @return the cell number of the best move, or {@link #NO_MOVE} if the game is over
+	 * @throws IllegalArgumentException if the state cannot arise in a game or is on a different grid
+	 */
+	public int getMove(GameState state) {
+		return getMove(index(state));
+	}
+
+	/**
+	 * Solves a game and reports how many legal positions it has, its value,
+	 * and how long it took.
+	 *
+	 * @param args the width, height, and win length (default 3, 3, 3)
+	 */
+	public static void main(String[] args) {
+		int width = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+		int height = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		int winLength = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		RetrogradeTable table = new RetrogradeTable(width, height, winLength);
+		System.out.println("Solved the " + width + "," + height + "," + winLength + " game in " + (table.time / 1000000) + "ms.");
+		for(int marks = 0; marks <= width * height; marks++)
+			System.out.println(marks + " marks: " + table.getPositions(marks) + " positions");
+		System.out.println(table.getPositions() + " legal positions; the game is worth " + table.getValue(0) + " with perfect play, starting at cell " + table.getMove(0) + ".");
+	}
+}
@@ -0,0 +1,219 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Measures one decision made by a search: how many nodes it expanded, how
+ * many of them were leaves, where it pruned, how deep it went, how long it
+ * took, and how much memory it allocated.  A bot which collects metrics
+ * attaches them to its {@link Decision}.
+ * <p>
+ * A bot calls {@link #start()} before searching, {@link #node(int)},
+ * {@link #leaf()} and {@link #cutoff(int)} while searching, and
+ * {@link #stop()} when it has decided.  Allocation is measured for the
+ * thread which calls {@link #start()} and {@link #stop()}, so it is only
+ * complete for searches which run on one thread.
+ * <p>
+ * This class is not thread safe.  A search split over many threads gives
+ * each thread its own metrics and {@link #add(SearchMetrics) adds} them up
+ * once the threads are done.
+ * 
+ * @author Stephen G. Ware
+ */
+public class SearchMetrics {
+
+	/** Measures the memory allocated by each thread, or null if the JVM cannot */
+	private static final com.sun.management.ThreadMXBean ALLOCATION = getAllocationBean();
+	
+	/** The number of nodes expanded */
+	private long nodes = 0;
+	
+	/** The number of nodes whose value came from the utility function or an evaluator */
+	private long leaves = 0;
+	
+	/** The number of cutoffs at each ply */
+	private long[] cutoffs = new long[0];
+	
+	/** The largest ply of any node expanded */
+	private int maxDepth = 0;
+	
+	/** When the search started (see {@link System#nanoTime()}) */
+	private long startTime;
+	
+	/** The memory the thread had allocated when the search started */
+	private long startAllocation;
+	
+	/** How long the search took in nanoseconds */
+	private long wallTime = 0;
+	
+	/** How many bytes the search allocated, or -1 if unknown */
+	private long allocation = -1;
+	
+	/**
+	 * Returns the JVM's bean for measuring allocation by thread, if it has one
+	 * which supports it.
+	 * 
+	 * @return the bean, or null
+	 */
+	private static com.sun.management.ThreadMXBean getAllocationBean() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+			if(sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled())
+				return sun;
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the number of bytes the current thread has allocated.
+	 * 
+	 * @return the number of bytes, or -1 if unknown
+	 */
+	private static long threadAllocatedBytes() {
+		if(ALLOCATION == null)
+			return -1;
+		return ALLOCATION.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	/**
+	 * Marks the start of the search.
+	 */
+	public void start() {
+		startAllocation = threadAllocatedBytes();
+		startTime = System.nanoTime();
+	}
+	
+	/**
+	 * Marks the end of the search.
+	 */
+	public void stop() {
+		wallTime = System.nanoTime() - startTime;
+		long end = threadAllocatedBytes();
+		allocation = end == -1 || startAllocation == -1 ? -1 : end - startAllocation;
+	}
+	
+	/**
+	 * Counts a node expanded by the search.
+	 * 
+	 * @param ply the number of moves between the root and the node
+	 */
+	public void node(int ply) {
+		nodes++;
+		if(ply > maxDepth)
+			maxDepth = ply;
+	}
+	
+	/**
+	 * Counts a node whose value came from the utility function or an
+	 * evaluator rather than from its children.
+	 */
+	public void leaf() {
+		leaves++;
+	}
+	
+	/**
+	 * Counts a cutoff, meaning the rest of a node's children did not need to
+	 * be searched.
+	 * 
+	 * @param ply the number of moves between the root and the node
+	 */
+	public void cutoff(int ply) {
+		if(ply >= cutoffs.length)
+			cutoffs = Arrays.copyOf(cutoffs, ply + 1);
+		cutoffs[ply]++;
+	}
+	
+	/**
+	 * Adds the nodes, leaves and cutoffs counted by part of the search which
+	 * ran on another thread.
+	 * 
+	 * @param other the metrics of that part of the search, which counted
+	 * plies from the same root as these metrics
+	 */
+	public void add(SearchMetrics other) {
+		nodes += other.nodes;
+		leaves += other.leaves;
+		if(other.cutoffs.length > cutoffs.length)
+			cutoffs = Arrays.copyOf(cutoffs, other.cutoffs.length);
+		for(int ply = 0; ply < other.cutoffs.length; ply++)
+			cutoffs[ply] += other.cutoffs[ply];
+		maxDepth = Math.max(maxDepth, other.maxDepth);
+	}
+	
+	/**
+	 * Returns the number of nodes the search expanded.
+	 * 
+	 * @return the number of nodes
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+	
+	/**
+	 * Returns the number of nodes whose value came from the utility function
+	 * or an evaluator.
+	 * 
+	 * @return the number of leaf evaluations
+	 */
+	public long getLeafEvaluations() {
+		return leaves;
+	}
+	
+	/**
+	 * Returns the number of cutoffs at all plies.
+	 * 
+	 * @return the number of cutoffs
+	 */
+	public long getCutoffs() {
+		long total = 0;
+		for(long count : cutoffs)
+			total += count;
+		return total;
+	}
+	
+	/**
+	 * Returns the number of cutoffs at one ply.
+	 * 
+	 * @param ply the number of moves between the root and the nodes
+	 * @return the number of cutoffs at nodes that far from the root
+	 */
+	public long getCutoffs(int ply) {
+		return ply < cutoffs.length ? cutoffs[ply] : 0;
+	}
+	
+	/**
+	 * Returns the largest ply of any node the search expanded.
+	 * 
+	 * @return the depth of the search
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+	
+	/**
+	 * Returns how long the search took.
+	 * 
+	 * @return the wall clock time in nanoseconds
+	 */
+	public long getWallTime() {
+		return wallTime;
+	}
+	
+	/**
+	 * Returns how much memory the search allocated on the thread which
+	 * started and stopped it.
+	 * 
+	 * @return the number of bytes, or -1 if the JVM cannot measure it
+	 */
+	public long getAllocatedBytes() {
+		return allocation;
+	}
+	
+	@Override
+	public String toString() {
+		return nodes + " nodes, " + leaves + " leaves, " + getCutoffs() + " cutoffs " + Arrays.toString(cutoffs) + ", depth " + maxDepth + ", " + wallTime + " ns, " + allocation + " bytes";
+	}
+}
@@ -0,0 +1,223 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import com.stephengware.java.games.mm_game.state.Board;
+import com.stephengware.java.games.mm_game.state.Player;
+
+/**
+ * A tablebase holds the perfect play value and best move of every state that
+ * can be reached in a game of Tic Tac Toe, so that a bot can look its
+ * decision up instead of searching for it.
+ * <p>
+ * The table is generated once by {@link #generate(Path)} and stored in a
+ * file, which {@link #open(Path)} memory maps.  Because the file is mapped
+ * read only, several bots (or several processes) can share one copy of it in
+ * memory, and looking up a state neither searches nor allocates.
+ * <p>
+ * The file begins with a {@value #HEADER}-byte header: the magic number
+ * {@link #MAGIC} followed by the format {@link #VERSION}.  After the header
+ * there is one byte for each of the 3<sup>9</sup> ways of filling the grid,
+ * indexed by reading the grid as a base 3 number in which cell <i>i</i> is
+ * digit <i>i</i> and an empty cell is 0, an X is 1, and an O is 2.  The low 2
+ * bits of each byte hold the value of the state plus 2 (so 0 means the state
+ * cannot be reached) and the high 4 bits hold the cell number of the best
+ * move, or 15 if the game is over.  The player to move is not stored because
+ * it follows from the number of marks on the grid.
+ * <p>
+ * Like {@link MinMaxBot}, the best move is the first move in row major order
+ * that achieves the best value.
+ *
+ * @author Stephen G. Ware
+ */
+public class Tablebase {
+
+	/** Identifies a tablebase file ("TTTB") */
+	public static final int MAGIC = 0x54545442;
+
+	/** The version of the file format */
+	public static final int VERSION = 1;
+
+	/** The size of the file header in bytes */
+	public static final int HEADER = 8;
+
+	/** The number of entries in the table */
+	public static final int SIZE = 19683;
+
+	/** The value returned by {@link #getMove(int)} when there is no move to make */
+	public static final int NO_MOVE = -1;
+
+	/** How the best move is stored when there is no move to make */
+	private static final int NONE = 0xF;
+
+	/** For every 9-bit mask, the base 3 number with a 1 in each set cell */
+	private static final int[] BASE3 = new int[Board.FULL + 1];
+
+	static {
+		for(int mask = 0; mask <= Board.FULL; mask++) {
+			int power = 1;
+			for(int cell = 0; cell < Board.CELLS; cell++) {
+				if((mask & (1 << cell)) != 0)
+					BASE3[mask] += power;
+				power *= 3;
+			}
+		}
+	}
+
+	/** The mapped table, including the header */
+	private final ByteBuffer buffer;
+
+	/**
+	 * Constructs a tablebase from a buffer whose header has been checked.
+	 *
+	 * @param buffer the table
+	 */
+	private Tablebase(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Memory maps a tablebase file written by {@link #generate(Path)}.
+	 *
+	 * @param file the file
+	 * @return the tablebase
+	 * @throws IOException if the file cannot be read or is not a tablebase
+	 */
+	public static Tablebase open(Path file) throws IOException {
+		MappedByteBuffer buffer;
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if(channel.size() != HEADER + SIZE)
+				throw new IOException(file + " is not a tablebase.");
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER + SIZE);
+		}
+		if(buffer.getInt(0) != MAGIC)
+			throw new IOException(file + " is not a tablebase.");
+		if(buffer.getInt(4) != VERSION)
+			throw new IOException(file + " uses unsupported tablebase version " + buffer.getInt(4) + ".");
+		return new Tablebase(buffer);
+	}
+
+	/**
+	 * Returns the perfect play value of a state for player X.
+	 *
+	 * @param board the packed board (see {@link Board})
+	 * @return 1 if X wins, -1 if O wins, or 0 if the game is a tie
+	 * @throws IllegalArgumentException if the state cannot be reached
+	 */
+	public int getValue(int board) {
+		return (get(board) & 0x3) - 2;
+	}
+
+	/**
+	 * Returns the best move for the player whose turn it is.
+	 *
+	 * @param board the packed board (see {@link Board})
+	 * @return the cell number of the best move, or {@link #NO_MOVE} if the
+	 * game is over
+	 * @throws IllegalArgumentException if the state cannot be reached
+	 */
+	public int getMove(int board) {
+		int move = (get(board) >>> 4) & 0xF;
+		if(move == NONE)
+			return NO_MOVE;
+		return move;
+	}
+
+	/**
+	 * Returns the table entry for a state.
+	 *
+	 * @param board the packed board
+	 * @return the entry
+	 */
+	private int get(int board) {
+		int entry = buffer.get(HEADER + index(board));
+		if((entry & 0x3) == 0)
+			throw new IllegalArgumentException("The state cannot be reached in a game of Tic Tac Toe.");
+		return entry;
+	}
+
+	/**
+	 * Returns the index of a state's entry.
+	 *
+	 * @param board the packed board
+	 * @return the base 3 number describing the grid
+	 */
+	private static int index(int board) {
+		return BASE3[Board.getMarks(board, Player.X)] + 2 * BASE3[Board.getMarks(board, Player.O)];
+	}
+
+	/**
+	 * Solves every state that can be reached from the empty grid and writes
+	 * the results to a tablebase file, replacing the file if it exists.
+	 *
+	 * @param file the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void generate(Path file) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER + SIZE);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		byte[] table = new byte[SIZE];
+		solve(Board.EMPTY, table);
+		buffer.put(table);
+		buffer.flip();
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while(buffer.hasRemaining())
+				channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Fills in the entry for a state and every state reachable from it.
+	 *
+	 * @param board the packed board
+	 * @param table the entries solved so far
+	 * @return the value of the state
+	 */
+	private static int solve(int board, byte[] table) {
+		int index = index(board);
+		if(table[index] != 0)
+			return (table[index] & 0x3) - 2;
+		int moves = Board.getMoves(board);
+		int value;
+		int best = NONE;
+		if(moves == 0) {
+			Player winner = Board.getWinner(board);
+			value = winner == Player.X ? 1 : winner == Player.O ? -1 : 0;
+		}
+		else {
+			boolean max = Board.getCurrentPlayer(board) == Player.X;
+			value = max ? -2 : 2;
+			for(int cell = 0; cell < Board.CELLS; cell++) {
+				if((moves & (1 << cell)) == 0)
+					continue;
+				int child = solve(Board.make(board, cell), table);
+				if(max ? child > value : child < value) {
+					value = child;
+					best = cell;
+				}
+			}
+		}
+		table[index] = (byte) ((value + 2) | (best << 4));
+		return value;
+	}
+
+	/**
+	 * Generates a tablebase file.
+	 *
+	 * @param args the file to write (default: tictactoe.tb)
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		Path file = Paths.get(args.length > 0 ? args[0] : "tictactoe.tb");
+		generate(file);
+		System.out.println("Wrote " + Files.size(file) + " bytes to " + file + ".");
+	}
+}
@@ -0,0 +1,59 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.stephengware.java.games.mm_game.state.Board;
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Move;
+import com.stephengware.java.games.mm_game.state.Player;
+import com.stephengware.java.games.mm_game.state.State;
+
+/**
+ * This bot plays perfectly without searching at all by looking up every
+ * decision in a {@link Tablebase}.  It makes the same decisions as
+ * {@link MinMaxBot}, but each decision takes one lookup and allocates
+ * nothing.
+ *
+ * @author Stephen G. Ware
+ */
+public class TablebaseBot implements Bot {
+
+	/** The solved table */
+	private final Tablebase tablebase;
+
+	/** Every decision this bot can make, indexed by player and cell */
+	private final Decision[][] decisions = new Decision[Player.values().length][Board.CELLS];
+
+	/**
+	 * Constructs a bot which uses a tablebase that is already open.
+	 *
+	 * @param tablebase the tablebase
+	 */
+	public TablebaseBot(Tablebase tablebase) {
+		this.tablebase = tablebase;
+		for(Player player : Player.values())
+			for(int cell = 0; cell < Board.CELLS; cell++)
+				decisions[player.ordinal()][cell] = new Decision(Move.get(player, cell), 1);
+	}
+
+	/**
+	 * Constructs a bot which memory maps a tablebase file.
+	 *
+	 * @param file the file written by {@link Tablebase#generate(Path)}
+	 * @throws IOException if the file cannot be read or is not a tablebase
+	 */
+	public TablebaseBot(Path file) throws IOException {
+		this(Tablebase.open(file));
+	}
+
+	@Override
+	public Decision chooseMove(GameState state) {
+		if(!(state instanceof State))
+			throw new IllegalArgumentException("A tablebase can only play Tic Tac Toe.");
+		int move = tablebase.getMove(((State) state).getBoard());
+		if(move == Tablebase.NO_MOVE)
+			return null;
+		return decisions[state.getCurrentPlayer().ordinal()][move];
+	}
+}
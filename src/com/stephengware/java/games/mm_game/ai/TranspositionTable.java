@@ -0,0 +1,259 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import java.util.Arrays;
+
+/**
+ * A transposition table remembers the values of positions which have already
+ * been searched so that a position reached again by a different sequence of
+ * moves does not need to be searched again.
+ * <p>
+ * The table has a fixed number of slots, chosen from a memory budget when it
+ * is created, and never grows.  Each position is hashed to exactly one slot;
+ * when two positions want the same slot the table's
+ * {@link ReplacementPolicy} decides which one to keep.
+ * <p>
+ * For each position the table stores its value, whether that value is exact
+ * or only a {@link Bound bound} (as happens when alpha beta search prunes),
+ * how deep the search below it went, and the best move that was found.
+ * Moves are stored as cell numbers, <code>row * width + column</code>.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Stephen G. Ware
+ */
+public class TranspositionTable {
+
+	/**
+	 * Describes how a stored value relates to the true value of a position.
+	 */
+	public enum Bound {
+
+		/** The stored value is the true value */
+		EXACT,
+
+		/** The true value is greater than or equal to the stored value */
+		LOWER,
+
+		/** The true value is less than or equal to the stored value */
+		UPPER;
+	}
+
+	/**
+	 * Decides whether a new entry replaces the entry already occupying its
+	 * slot.
+	 */
+	public enum ReplacementPolicy {
+
+		/** The newest entry always replaces the old one */
+		ALWAYS,
+
+		/**
+		 * The new entry replaces the old one only if it describes the same
+		 * position or was searched at least as deeply, since deeper searches
+		 * are more expensive to repeat
+		 */
+		DEPTH_PREFERRED;
+	}
+
+	/** Every bound, indexed by ordinal */
+	private static final Bound[] BOUNDS = Bound.values();
+
+	/** The number of bytes each slot of the table uses */
+	public static final int ENTRY_BYTES = 8 + 8 + 4;
+
+	/** The memory budget used by {@link #TranspositionTable()} */
+	public static final int DEFAULT_BYTES = 256 * 1024;
+
+	/** The value returned by {@link #getMove(int)} when no best move is known */
+	public static final int NO_MOVE = -1;
+
+	/** Bits of {@link #meta} which hold the bound (0 means the slot is empty) */
+	private static final int BOUND_MASK = 0x3;
+
+	/** Position of the search depth in {@link #meta} */
+	private static final int DEPTH_SHIFT = 2;
+
+	/** Position of the best move (plus one) in {@link #meta} */
+	private static final int MOVE_SHIFT = 10;
+
+	/** The key of the position stored in each slot */
+	private final long[] keys;
+
+	/** The value of the position stored in each slot */
+	private final double[] values;
+
+	/** The bound, depth, and best move of the position stored in each slot */
+	private final int[] meta;
+
+	/** Used to find a key's slot */
+	private final int mask;
+
+	/** How collisions are resolved */
+	public final ReplacementPolicy policy;
+
+	/**
+	 * Constructs a table which uses about {@link #DEFAULT_BYTES} of memory
+	 * and the {@link ReplacementPolicy#DEPTH_PREFERRED depth preferred}
+	 * replacement policy.
+	 */
+	public TranspositionTable() {
+		this(DEFAULT_BYTES, ReplacementPolicy.DEPTH_PREFERRED);
+	}
+
+	/**
+	 * Constructs a table whose slots use no more than the given number of
+	 * bytes.  The number of slots is rounded down to a power of 2.
+	 *
+	 * @param bytes the memory budget
+	 * @param policy how collisions are resolved
+	 */
+	public TranspositionTable(int bytes, ReplacementPolicy policy) {
+		int capacity = Integer.highestOneBit(Math.max(1, bytes / ENTRY_BYTES));
+		this.keys = new long[capacity];
+		this.values = new double[capacity];
+		this.meta = new int[capacity];
+		this.mask = capacity - 1;
+		this.policy = policy;
+	}
+
+	/**
+	 * Returns the number of slots in this table.
+	 *
+	 * @return the number of slots
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Returns the number of slots which currently hold a position.
+	 *
+	 * @return the number of occupied slots
+	 */
+	public int size() {
+		int size = 0;
+		for(int m : meta)
+			if((m & BOUND_MASK) != 0)
+				size++;
+		return size;
+	}
+
+	/**
+	 * Removes every position from this table.
+	 */
+	public void clear() {
+		Arrays.fill(meta, 0);
+	}
+
+	/**
+	 * Looks up a position.
+	 *
+	 * @param key the key of the position
+	 * @return the slot where the position is stored, or -1 if it is not in
+	 * the table
+	 */
+	public int probe(long key) {
+		int slot = slot(key);
+		if((meta[slot] & BOUND_MASK) != 0 && keys[slot] == key)
+			return slot;
+		return -1;
+	}
+
+	/**
+	 * Records what is known about a position, subject to this table's
+	 * replacement policy.
+	 *
+	 * @param key the key of the position
+	 * @param value the value of the position
+	 * @param bound how the value relates to the true value of the position
+	 * @param depth how many moves deep the search below this position went (at most 255 is kept)
+	 * @param move the cell number of the best move, or {@link #NO_MOVE}
+	 */
+	public void store(long key, double value, Bound bound, int depth, int move) {
+		int slot = slot(key);
+		int old = meta[slot];
+		if(policy == ReplacementPolicy.DEPTH_PREFERRED && (old & BOUND_MASK) != 0 && keys[slot] != key && ((old >>> DEPTH_SHIFT) & 0xFF) > Math.min(depth, 0xFF))
+			return;
+		keys[slot] = key;
+		values[slot] = value;
+		meta[slot] = (bound.ordinal() + 1) | (Math.min(depth, 0xFF) << DEPTH_SHIFT) | ((move + 1) << MOVE_SHIFT);
+	}
+
+	/**
+	 * Returns the value stored in a slot.
+	 *
+	 * @param slot a slot returned by {@link #probe(long)}
+	 * @return the stored value
+	 */
+	public double getValue(int slot) {
+		return values[slot];
+	}
+
+	/**
+	 * Returns the kind of bound stored in a slot.
+	 *
+	 * @param slot a slot returned by {@link #probe(long)}
+	 * @return how the stored value relates to the true value
+	 */
+	public Bound getBound(int slot) {
+		return BOUNDS[(meta[slot] & BOUND_MASK) - 1];
+	}
+
+	/**
+	 * Returns the search depth stored in a slot.
+	 *
+	 * @param slot a slot returned by {@link #probe(long)}
+	 * @return how many moves deep the stored search went
+	 */
+	public int getDepth(int slot) {
+		return (meta[slot] >>> DEPTH_SHIFT) & 0xFF;
+	}
+
+	/**
+	 * Returns the best move stored in a slot.
+	 *
+	 * @param slot a slot returned by {@link #probe(long)}
+	 * @return the cell number of the best move, or {@link #NO_MOVE}
+	 */
+	public int getMove(int slot) {
+		return (meta[slot] >>> MOVE_SHIFT) - 1;
+	}
+
+	/**
+	 * Checks whether a stored entry settles the value of a position searched
+	 * with the given window, meaning the search can stop and return
+	 * {@link #getValue(int)}.
+	 *
+	 * @param slot a slot returned by {@link #probe(long)}
+	 * @param alpha the highest utility value discovered so far in this branch of the tree
+	 * @param beta the lowest utility value discovered so far in this branch of the tree
+	 * @return true if the stored value can be used in place of a search
+	 */
+	public boolean isCutoff(int slot, double alpha, double beta) {
+		double value = values[slot];
+		switch(getBound(slot)) {
+		case EXACT:
+			return true;
+		case LOWER:
+			return value >= beta;
+		default:
+			return value <= alpha;
+		}
+	}
+
+	/**
+	 * Returns the slot a key belongs in.
+	 *
+	 * @param key the key
+	 * @return the slot
+	 */
+	private int slot(long key) {
+		// Murmur3's 64-bit finalizer spreads nearby keys across the table.
+		key ^= key >>> 33;
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= key >>> 33;
+		key *= 0xC4CEB9FE1A85EC53L;
+		key ^= key >>> 33;
+		return (int) key & mask;
+	}
+}
@@ -1,7 +1,8 @@
 package com.stephengware.java.games.mm_game.ai;
 
+import com.stephengware.java.games.mm_game.state.GameState;
 import com.stephengware.java.games.mm_game.state.Player;
-import com.stephengware.java.games.mm_game.state.State;
+import com.stephengware.java.games.mm_game.state.SearchBoard;
 
 /**
  * A utility function measures how desirable a given state is for some agent.
@@ -18,7 +19,7 @@ public class Utility {
 	 * @param state the current state of the game
 	 * @return a positive or negative number or zero
 	 */
-	public static double evaluate(State state) {
+	public static double evaluate(GameState state) {
 		if(state.getWinner() == Player.X)
 			return 1;
 		else if(state.getWinner() == Player.O)
@@ -26,4 +27,31 @@ public class Utility {
 		else
 			return 0;
 	}
-}
+	
+	/**
+	 * Returns the desirability of a search board's position for player X.
+	 * 
+	 * @param board the board
+	 * @return a positive or negative number or zero
+	 */
+	public static double evaluate(SearchBoard board) {
+		return score(board);
+	}
+	
+	/**
+	 * Returns the desirability of a search board's position for player X as
+	 * an integer, for searches which keep their values in <code>int</code>s.
+	 * 
+	 * @param board the board
+	 * @return 1 if X has won, -1 if O has won, or 0
+	 */
+	public static int score(SearchBoard board) {
+		Player winner = board.getWinner();
+		if(winner == Player.X)
+			return 1;
+		else if(winner == Player.O)
+			return -1;
+		else
+			return 0;
+	}
+}
\ No newline at end of file
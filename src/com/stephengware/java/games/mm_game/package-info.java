@@ -16,7 +16,7 @@
  * possible for a game as small as Tic Tac Toe, but it would not be possible
  * for larger games.</p>
  * 
- * <p>When you are done, change {@link Main#getXBot()} to return an instance
+ * <p>When you are done, change {@link Main#getXBot(long)} to return an instance
  * of your new MinMax bot.  Now, player X should win or tie every game, but the
  * amount of work required to make decisions is incredibly high.</p>
  * 
@@ -26,7 +26,7 @@
  * portions of the game tree which are irrelevant to making the best decision.
  * </p>
  * 
- * <p>When you are done, change {@link Main#getXBot()} to return an instance
+ * <p>When you are done, change {@link Main#getXBot(long)} to return an instance
  * of your new AlphaBeta bot.  Player X should still win or tie every game, but
  * the amount of work required to make decisions will be much lower.  You
  * should now be able to change {@link Main#NUMBER_OF_GAMES} back to 100.</p>
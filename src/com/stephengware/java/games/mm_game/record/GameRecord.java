@@ -0,0 +1,145 @@
+package com.stephengware.java.games.mm_game.record;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.MNKState;
+import com.stephengware.java.games.mm_game.state.Move;
+import com.stephengware.java.games.mm_game.state.Player;
+import com.stephengware.java.games.mm_game.state.State;
+
+/**
+ * A record of one game: who played, the seed their random choices were
+ * drawn from, every move in order, and the result.  Games start from an
+ * empty grid of at most 4 by 4 squares, so each move fits in 4 bits as the
+ * cell number <code>row * width + column</code>.
+ * 
+ * @author Stephen G. Ware
+ */
+public class GameRecord {
+
+	/** The largest width, height, or win length which can be recorded */
+	public static final int MAX_SIZE = 4;
+	
+	/** The name of the X player */
+	public final String x;
+	
+	/** The name of the O player */
+	public final String o;
+	
+	/** The seed the players were made with */
+	public final long seed;
+	
+	/** The number of columns in the grid */
+	public final int width;
+	
+	/** The number of rows in the grid */
+	public final int height;
+	
+	/** The number of marks in a line needed to win */
+	public final int winLength;
+	
+	/** The winning player, or null if the game was tied */
+	public final Player winner;
+	
+	/** The cell number of each move in order */
+	private final byte[] cells;
+	
+	/** The number of moves */
+	private final int length;
+	
+	/**
+	 * Constructs a game record.
+	 * 
+	 * @param x the name of the X player
+	 * @param o the name of the O player
+	 * @param seed the seed the players were made with
+	 * @param width the number of columns in the grid
+	 * @param height the number of rows in the grid
+	 * @param winLength the number of marks in a line needed to win
+	 * @param winner the winning player, or null if the game was tied
+	 * @param cells the cell number of each move in order, which is not copied
+	 * @param length the number of moves
+	 * @throws IllegalArgumentException if the grid is too big to record
+	 */
+	public GameRecord(String x, String o, long seed, int width, int height, int winLength, Player winner, byte[] cells, int length) {
+		if(width < 1 || height < 1 || winLength < 1 || width > MAX_SIZE || height > MAX_SIZE || winLength > MAX_SIZE)
+			throw new IllegalArgumentException("Only games on grids of at most " + MAX_SIZE + "x" + MAX_SIZE + " can be recorded.");
+		this.x = x;
+		this.o = o;
+		this.seed = seed;
+		this.width = width;
+		this.height = height;
+		this.winLength = winLength;
+		this.winner = winner;
+		this.cells = cells;
+		this.length = length;
+	}
+	
+	/**
+	 * Returns the number of moves made during the game.
+	 * 
+	 * @return the number of moves
+	 */
+	public int getLength() {
+		return length;
+	}
+	
+	/**
+	 * Returns the cell number of one move.
+	 * 
+	 * @param index the move's number, starting from 0
+	 * @return the cell number, <code>row * width + column</code>
+	 */
+	public int getCell(int index) {
+		if(index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("Move " + index + " is not in a game of " + length + " moves.");
+		return cells[index];
+	}
+	
+	/**
+	 * Returns the empty grid the game started from.
+	 * 
+	 * @return the initial state
+	 */
+	public GameState getInitialState() {
+		if(width == 3 && height == 3 && winLength == 3)
+			return new State();
+		return new MNKState(width, height, winLength);
+	}
+	
+	/**
+	 * Returns every move of the game in order.
+	 * 
+	 * @return the moves
+	 */
+	public List<Move> getMoves() {
+		ArrayList<Move> moves = new ArrayList<>(length);
+		for(int i = 0; i < length; i++)
+			moves.add(Move.get(i % 2 == 0 ? Player.X : Player.O, cells[i] / width, cells[i] % width));
+		return moves;
+	}
+	
+	/**
+	 * Plays the game over again from the beginning.
+	 * 
+	 * @return the state at the end of the game
+	 */
+	public GameState replay() {
+		GameState state = getInitialState();
+		for(Move move : getMoves())
+			state = state.transition(move);
+		return state;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder str = new StringBuilder();
+		str.append(x).append(" vs ").append(o).append(" (seed ").append(seed).append("):");
+		for(int i = 0; i < length; i++)
+			str.append(' ').append(cells[i]);
+		str.append(winner == null ? ", tie" : ", " + winner + " won");
+		return str.toString();
+	}
+}
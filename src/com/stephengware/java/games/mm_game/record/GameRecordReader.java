@@ -0,0 +1,153 @@
+package com.stephengware.java.games.mm_game.record;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.stephengware.java.games.mm_game.state.Player;
+
+/**
+ * Reads the {@link GameRecord game records} in a file written by a
+ * {@link GameRecordWriter}, one at a time, through a small buffer, so that
+ * files of any size can be read without loading them into memory.
+ * <p>
+ * This class is not thread safe.
+ * 
+ * @author Stephen G. Ware
+ */
+public class GameRecordReader implements Closeable {
+
+	/** The size of the buffer in bytes */
+	private static final int BUFFER = 1 << 16;
+	
+	/** The file */
+	private final FileChannel channel;
+	
+	/** Bytes read from the file but not yet used */
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+	
+	/** The name with each id read so far */
+	private final String[] names = new String[GameRecordWriter.MAX_NAMES];
+	
+	/**
+	 * Opens a game record file.
+	 * 
+	 * @param file the file to read
+	 * @throws IOException if the file cannot be read or is not a game record file
+	 */
+	public GameRecordReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		buffer.flip();
+		try {
+			if(!fill(8) || buffer.getInt() != GameRecordWriter.MAGIC)
+				throw new IOException(file + " is not a game record file.");
+			int version = buffer.getInt();
+			if(version != GameRecordWriter.VERSION)
+				throw new IOException(file + " has version " + version + ", not " + GameRecordWriter.VERSION + ".");
+		}
+		catch(IOException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+	
+	/**
+	 * Reads the next record.
+	 * 
+	 * @return the record, or null if there are no more
+	 * @throws IOException if the file cannot be read or is damaged
+	 */
+	public GameRecord read() throws IOException {
+		while(fill(1)) {
+			byte tag = buffer.get();
+			if(tag == GameRecordWriter.NAME) {
+				require(2);
+				int id = buffer.get() & 0xFF;
+				int length = buffer.get() & 0xFF;
+				require(length);
+				byte[] bytes = new byte[length];
+				buffer.get(bytes);
+				names[id] = new String(bytes, StandardCharsets.UTF_8);
+			}
+			else if(tag == GameRecordWriter.GAME) {
+				require(12);
+				String x = name(buffer.get() & 0xFF);
+				String o = name(buffer.get() & 0xFF);
+				long seed = buffer.getLong();
+				int grid = buffer.get() & 0xFF;
+				int result = buffer.get() & 0xFF;
+				int length = result >>> 2;
+				require((length + 1) / 2);
+				byte[] cells = new byte[length];
+				for(int i = 0; i < length; i += 2) {
+					int pair = buffer.get() & 0xFF;
+					cells[i] = (byte) (pair & 0xF);
+					if(i + 1 < length)
+						cells[i + 1] = (byte) (pair >>> 4);
+				}
+				Player winner = (result & 0x3) == 1 ? Player.X : (result & 0x3) == 2 ? Player.O : null;
+				return new GameRecord(x, o, seed, ((grid >>> 4) & 0x3) + 1, ((grid >>> 2) & 0x3) + 1, (grid & 0x3) + 1, winner, cells, length);
+			}
+			else
+				throw new IOException("Unknown entry tag " + tag + ".");
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the name with a given id.
+	 * 
+	 * @param id the id
+	 * @return the name
+	 * @throws IOException if no name has that id
+	 */
+	private String name(int id) throws IOException {
+		if(names[id] == null)
+			throw new IOException("No player has id " + id + ".");
+		return names[id];
+	}
+	
+	/**
+	 * Makes sure some number of bytes are in the buffer.
+	 * 
+	 * @param bytes the number of bytes needed
+	 * @throws IOException if the file cannot be read or ends first
+	 */
+	private void require(int bytes) throws IOException {
+		if(!fill(bytes))
+			throw new EOFException("The last record is incomplete.");
+	}
+	
+	/**
+	 * Reads from the file until the buffer holds some number of bytes or the
+	 * file ends.
+	 * 
+	 * @param bytes the number of bytes needed
+	 * @return true if the buffer holds that many bytes
+	 * @throws IOException if the file cannot be read
+	 */
+	private boolean fill(int bytes) throws IOException {
+		if(buffer.remaining() >= bytes)
+			return true;
+		buffer.compact();
+		try {
+			while(buffer.position() < bytes)
+				if(channel.read(buffer) == -1)
+					break;
+		}
+		finally {
+			buffer.flip();
+		}
+		return buffer.remaining() >= bytes;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,243 @@
+package com.stephengware.java.games.mm_game.record;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+import com.stephengware.java.games.mm_game.Game;
+import com.stephengware.java.games.mm_game.GameListener;
+import com.stephengware.java.games.mm_game.ai.Decision;
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.Player;
+
+/**
+ * Appends {@link GameRecord game records} to a file as games end.
+ * <p>
+ * The file begins with the magic number {@link #MAGIC} and the format
+ * {@link #VERSION}, 4 bytes each.  After that comes a sequence of entries,
+ * each starting with a tag byte:
+ * <ul>
+ * <li>{@link #NAME}: the id byte of a new player name, a length byte, and
+ * that many bytes of UTF-8.  A name is written once, the first time a game
+ * with that player ends, and games refer to it by id after that.</li>
+ * <li>{@link #GAME}: the X and O players' name ids, the 8-byte seed, a byte
+ * holding the width, height and win length (each minus 1, in 2 bits each
+ * from bit 4 down), a byte holding the result (0 for a tie, 1 if X won, 2 if
+ * O won) in its low 2 bits and the number of moves above that, and then the
+ * moves packed 2 to a byte, low 4 bits first.</li>
+ * </ul>
+ * A game takes 13 bytes before its moves, so a game of Tic Tac Toe, with
+ * at most 9 moves, takes 18 bytes or less.  Numbers are big endian.
+ * <p>
+ * Records are collected in a buffer and written in large blocks.  This class
+ * is thread safe, so one writer can record every game of a
+ * {@link com.stephengware.java.games.mm_game.Tournament Tournament}; each
+ * record is written whole, but records from different threads may be in any
+ * order.
+ * 
+ * @author Stephen G. Ware
+ */
+public class GameRecordWriter implements Closeable {
+
+	/** Identifies a game record file ("TTTR") */
+	public static final int MAGIC = 0x54545452;
+	
+	/** The version of the file format */
+	public static final int VERSION = 1;
+	
+	/** The tag of an entry which names a player */
+	public static final byte NAME = 0;
+	
+	/** The tag of an entry which records a game */
+	public static final byte GAME = 1;
+	
+	/** The most names a file can hold */
+	public static final int MAX_NAMES = 256;
+	
+	/** The size of the buffer in bytes */
+	private static final int BUFFER = 1 << 16;
+	
+	/** The file */
+	private final FileChannel channel;
+	
+	/** Entries waiting to be written */
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+	
+	/** The id of each name written so far */
+	private final HashMap<String, Integer> names = new HashMap<>();
+	
+	/** The number of games written */
+	private long count = 0;
+	
+	/**
+	 * Creates a game record file, replacing it if it exists.
+	 * 
+	 * @param file the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public GameRecordWriter(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+	}
+	
+	/**
+	 * Returns a listener which records one game and writes it to this file
+	 * when it ends.  Each game needs its own listener.
+	 * 
+	 * @param seed the seed the game's players were made with
+	 * @return a listener for one game
+	 */
+	public GameListener listener(long seed) {
+		return new Recorder(seed);
+	}
+	
+	/**
+	 * Collects the moves of one game.
+	 */
+	private final class Recorder implements GameListener {
+		
+		/** The seed the game's players were made with */
+		private final long seed;
+		
+		/** The cell number of each move so far */
+		private final byte[] cells = new byte[GameRecord.MAX_SIZE * GameRecord.MAX_SIZE];
+		
+		/** The number of moves so far */
+		private int length = 0;
+		
+		Recorder(long seed) {
+			this.seed = seed;
+		}
+		
+		@Override
+		public void moveMade(GameState state, Decision decision) {
+			if(length == cells.length)
+				throw new IllegalStateException("Only games on grids of at most " + GameRecord.MAX_SIZE + "x" + GameRecord.MAX_SIZE + " can be recorded.");
+			cells[length++] = (byte) (decision.move.row * state.getWidth() + decision.move.column);
+		}
+		
+		@Override
+		public void gameEnded(Game game) {
+			GameState end = game.state;
+			if(end.getEmptySquares() + length != end.getWidth() * end.getHeight())
+				throw new IllegalStateException("Only games which start from an empty grid can be recorded.");
+			GameRecord record = new GameRecord(game.x.getClass().getSimpleName(), game.o.getClass().getSimpleName(), seed, end.getWidth(), end.getHeight(), end.getWinLength(), game.winner, cells, length);
+			try {
+				write(record);
+			}
+			catch(IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+	}
+	
+	/**
+	 * Appends a record to the file.
+	 * 
+	 * @param record the record
+	 * @throws IOException if the file cannot be written
+	 */
+	public synchronized void write(GameRecord record) throws IOException {
+		int x = name(record.x);
+		int o = name(record.o);
+		int length = record.getLength();
+		reserve(13 + (length + 1) / 2);
+		buffer.put(GAME);
+		buffer.put((byte) x);
+		buffer.put((byte) o);
+		buffer.putLong(record.seed);
+		buffer.put((byte) (((record.width - 1) << 4) | ((record.height - 1) << 2) | (record.winLength - 1)));
+		int result = record.winner == Player.X ? 1 : record.winner == Player.O ? 2 : 0;
+		buffer.put((byte) (result | (length << 2)));
+		for(int i = 0; i < length; i += 2) {
+			int low = record.getCell(i);
+			int high = i + 1 < length ? record.getCell(i + 1) : 0;
+			buffer.put((byte) (low | (high << 4)));
+		}
+		count++;
+	}
+	
+	/**
+	 * Returns the id of a name, writing a name entry if it is new.
+	 * 
+	 * @param name the name
+	 * @return its id
+	 * @throws IOException if the file cannot be written
+	 */
+	private int name(String name) throws IOException {
+		Integer id = names.get(name);
+		if(id != null)
+			return id;
+		if(names.size() == MAX_NAMES)
+			throw new IllegalStateException("A game record file can hold at most " + MAX_NAMES + " names.");
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		if(bytes.length > 0xFF)
+			throw new IllegalArgumentException("The name \"" + name + "\" is too long to record.");
+		id = names.size();
+		reserve(3 + bytes.length);
+		buffer.put(NAME);
+		buffer.put((byte) (int) id);
+		buffer.put((byte) bytes.length);
+		buffer.put(bytes);
+		names.put(name, id);
+		return id;
+	}
+	
+	/**
+	 * Makes room in the buffer, writing it out if needed.
+	 * 
+	 * @param bytes the number of bytes needed
+	 * @throws IOException if the file cannot be written
+	 */
+	private void reserve(int bytes) throws IOException {
+		if(buffer.remaining() < bytes)
+			drain();
+	}
+	
+	/**
+	 * Writes everything in the buffer to the file.
+	 * 
+	 * @throws IOException if the file cannot be written
+	 */
+	private void drain() throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+	
+	/**
+	 * Returns the number of games written.
+	 * 
+	 * @return the number of games
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+	
+	/**
+	 * Writes every record so far to the file.
+	 * 
+	 * @throws IOException if the file cannot be written
+	 */
+	public synchronized void flush() throws IOException {
+		drain();
+	}
+	
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			drain();
+		}
+		finally {
+			channel.close();
+		}
+	}
+}
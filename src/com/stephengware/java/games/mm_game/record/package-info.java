@@ -0,0 +1,6 @@
+/**
+ * This package contains a compact binary format for recording games as they
+ * are played, along with a writer which appends records to a file and a
+ * reader which streams them back.
+ */
+package com.stephengware.java.games.mm_game.record;
\ No newline at end of file
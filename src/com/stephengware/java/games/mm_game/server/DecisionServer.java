@@ -0,0 +1,533 @@
+package com.stephengware.java.games.mm_game.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.stephengware.java.games.mm_game.ai.AlphaBetaBot;
+import com.stephengware.java.games.mm_game.ai.Bot;
+import com.stephengware.java.games.mm_game.ai.BotFactory;
+import com.stephengware.java.games.mm_game.ai.Decision;
+import com.stephengware.java.games.mm_game.ai.HeuristicOrdering;
+import com.stephengware.java.games.mm_game.ai.TranspositionTable;
+import com.stephengware.java.games.mm_game.state.GameState;
+
+/**
+ * A TCP server which answers requests for a bot's decisions, using the
+ * messages described in {@link Protocol}.
+ * <p>
+ * One thread handles every connection with non-blocking I/O: it reads
+ * requests, hands them to a bounded queue, and writes back responses.  A
+ * fixed number of worker threads take requests from the queue.  Each worker
+ * has its own bot, made once by a {@link BotFactory} and kept for the life
+ * of the server, so anything the bot keeps between moves (such as its
+ * transposition table) stays warm from one request to the next.  Each
+ * worker's bot is told a game has started before its first request (see
+ * {@link Bot#newGame(GameState)}) and is never told about any moves.
+ * <p>
+ * Clients may pipeline requests.  The server stops reading from a connection
+ * while it has {@link #maxPipelined} requests whose responses have not been
+ * sent, and from every connection while the queue is full, so a client which
+ * sends faster than the workers can decide is slowed down by TCP flow
+ * control rather than using up the server's memory.
+ * <p>
+ * The server only decides on grids of at most {@link #maxCells} squares,
+ * since its bots search every line of play; a request for a larger grid is
+ * answered with {@link Protocol#BAD_REQUEST}.
+ *
+ * @author Stephen G. Ware
+ */
+public class DecisionServer implements Closeable {
+
+	/** The port used by {@link #main(String[])} if none is given */
+	public static final int DEFAULT_PORT = 7333;
+
+	/** The most squares a request's grid may have if no number is given */
+	public static final int DEFAULT_MAX_CELLS = 9;
+
+	/** The size of each connection's input buffer, which holds at least one request of any size */
+	private static final int INPUT_BUFFER = 1 << 16;
+
+	/**
+	 * A request waiting for a worker.
+	 */
+	private static final class Request {
+
+		/** The connection it came from */
+		final Connection connection;
+
+		/** The id chosen by the client */
+		final int id;
+
+		/** The state in which a move must be chosen */
+		final GameState state;
+
+		Request(Connection connection, int id, GameState state) {
+			this.connection = connection;
+			this.id = id;
+			this.state = state;
+		}
+	}
+
+	/**
+	 * One client's connection.  Only the selector thread reads from it or
+	 * changes its interest; workers append responses to its output under its
+	 * lock.
+	 */
+	private final class Connection {
+
+		/** The channel */
+		final SocketChannel channel;
+
+		/** The channel's key */
+		final SelectionKey key;
+
+		/** Bytes read but not yet handed to workers */
+		final ByteBuffer input = ByteBuffer.allocate(INPUT_BUFFER);
+
+		/** Responses not yet written, which always has room for every request in flight */
+		final ByteBuffer output = ByteBuffer.allocate(maxPipelined * Protocol.RESPONSE);
+
+		/** The number of requests read */
+		long read = 0;
+
+		/** The number of bytes of responses written */
+		long written = 0;
+
+		/** Whether this connection is waiting for room in the queue */
+		boolean paused = false;
+
+		Connection(SocketChannel channel, SelectionKey key) {
+			this.channel = channel;
+			this.key = key;
+		}
+
+		/**
+		 * Returns the number of requests whose responses have not been
+		 * written to the channel.
+		 *
+		 * @return the number of requests in flight
+		 */
+		long getInFlight() {
+			return read - written / Protocol.RESPONSE;
+		}
+	}
+
+	/** Makes each worker's bot */
+	public final BotFactory bots;
+
+	/** The number of worker threads */
+	public final int workers;
+
+	/** The most requests a connection may have in flight */
+	public final int maxPipelined;
+
+	/** The most squares a request's grid may have */
+	public final int maxCells;
+
+	/** The channel which accepts connections */
+	private final ServerSocketChannel server;
+
+	/** Watches every channel */
+	private final Selector selector;
+
+	/** Requests waiting for a worker */
+	private final BlockingQueue<Request> queue;
+
+	/** Connections with new responses to write, reported by workers */
+	private final ConcurrentLinkedQueue<Connection> ready = new ConcurrentLinkedQueue<>();
+
+	/** Connections waiting for room in the queue, in the order they started waiting */
+	private final ArrayDeque<Connection> paused = new ArrayDeque<>();
+
+	/** The selector thread and the worker threads */
+	private final ArrayList<Thread> threads = new ArrayList<>();
+
+	/** The selector thread */
+	private final Thread selectorThread;
+
+	/** The number of requests answered */
+	private final LongAdder answered = new LongAdder();
+
+	/** Whether the server is shutting down */
+	private volatile boolean closed = false;
+
+	/**
+	 * Starts a server which decides on grids of at most
+	 * {@link #DEFAULT_MAX_CELLS} squares.
+	 *
+	 * @param port the port to listen on, or 0 for any free port
+	 * @param bots makes each worker's bot
+	 * @param workers the number of worker threads
+	 * @param queueCapacity the most requests which may wait for a worker
+	 * @param maxPipelined the most requests a connection may have in flight
+	 * @param seed the seed from which each worker's bot's seed is derived
+	 * @throws IOException if the server cannot listen on the port
+	 */
+	public DecisionServer(int port, BotFactory bots, int workers, int queueCapacity, int maxPipelined, long seed) throws IOException {
+		this(port, bots, workers, queueCapacity, maxPipelined, DEFAULT_MAX_CELLS, seed);
+	}
+
+	/**
+	 * Starts a server.
+	 *
+	 * @param port the port to listen on, or 0 for any free port
+	 * @param bots makes each worker's bot
+	 * @param workers the number of worker threads
+	 * @param queueCapacity the most requests which may wait for a worker
+	 * @param maxPipelined the most requests a connection may have in flight
+	 * @param maxCells the most squares a request's grid may have, which the
+	 * bots must be able to decide on in reasonable time
+	 * @param seed the seed from which each worker's bot's seed is derived
+	 * @throws IOException if the server cannot listen on the port
+	 */
+	public DecisionServer(int port, BotFactory bots, int workers, int queueCapacity, int maxPipelined, int maxCells, long seed) throws IOException {
+		if(workers < 1 || queueCapacity < 1 || maxPipelined < 1)
+			throw new IllegalArgumentException("A server needs at least one worker, queue slot, and request in flight.");
+		if(maxCells < 1)
+			throw new IllegalArgumentException("A server must decide on grids of at least one square.");
+		this.bots = bots;
+		this.workers = workers;
+		this.maxPipelined = maxPipelined;
+		this.maxCells = maxCells;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.selector = Selector.open();
+		this.server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(port));
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+		for(int i = 0; i < workers; i++) {
+			Bot bot = bots.create(seed + i);
+			Thread thread = new Thread(() -> work(bot), "decision-worker-" + i);
+			thread.setDaemon(true);
+			threads.add(thread);
+		}
+		selectorThread = new Thread(this::select, "decision-selector");
+		selectorThread.setDaemon(true);
+		threads.add(selectorThread);
+		for(Thread t : threads)
+			t.start();
+	}
+
+	/**
+	 * Returns the port the server is listening on.
+	 *
+	 * @return the port
+	 */
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * Waits until the server is closed.
+	 *
+	 * @throws InterruptedException if the waiting thread is interrupted
+	 */
+	public void awaitClose() throws InterruptedException {
+		selectorThread.join();
+	}
+
+	/**
+	 * Returns the number of requests answered so far.
+	 *
+	 * @return the number of requests
+	 */
+	public long getAnswered() {
+		return answered.sum();
+	}
+
+	/**
+	 * Runs the selector thread until the server is closed.
+	 */
+	private void select() {
+		try {
+			while(!closed) {
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while(keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					try {
+						if(!key.isValid())
+							continue;
+						if(key.isAcceptable())
+							accept();
+						else {
+							Connection connection = (Connection) key.attachment();
+							if(key.isWritable())
+								write(connection);
+							if(key.isValid() && key.isReadable())
+								read(connection);
+						}
+					}
+					catch(IOException ex) {
+						disconnect(key);
+					}
+				}
+				for(Connection connection = ready.poll(); connection != null; connection = ready.poll()) {
+					try {
+						write(connection);
+					}
+					catch(IOException ex) {
+						disconnect(connection.key);
+					}
+				}
+				// Responses have made room in the queue, so try the
+				// connections which were waiting for it.
+				int waiting = paused.size();
+				for(int i = 0; i < waiting && queue.remainingCapacity() > 0; i++) {
+					Connection connection = paused.poll();
+					connection.paused = false;
+					if(connection.key.isValid())
+						dispatch(connection);
+				}
+			}
+		}
+		catch(IOException | ClosedSelectorException ex) {
+			if(!closed)
+				throw new IllegalStateException("The server stopped.", ex);
+		}
+	}
+
+	/**
+	 * Accepts a new connection.
+	 *
+	 * @throws IOException if the connection cannot be set up
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel = server.accept();
+		if(channel == null)
+			return;
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+		key.attach(new Connection(channel, key));
+	}
+
+	/**
+	 * Reads what a connection has sent and hands any whole requests to the
+	 * workers.
+	 *
+	 * @param connection the connection
+	 * @throws IOException if the connection fails
+	 */
+	private void read(Connection connection) throws IOException {
+		if(connection.channel.read(connection.input) == -1) {
+			disconnect(connection.key);
+			return;
+		}
+		dispatch(connection);
+	}
+
+	/**
+	 * Hands a connection's whole requests to the workers while it and the
+	 * queue have room, then decides whether to keep reading from it.
+	 *
+	 * @param connection the connection
+	 */
+	private void dispatch(Connection connection) {
+		ByteBuffer input = connection.input;
+		input.flip();
+		while(connection.getInFlight() < maxPipelined && !connection.paused) {
+			int length = Protocol.requestLength(input);
+			if(length == -1 || input.remaining() < length)
+				break;
+			if(queue.remainingCapacity() == 0) {
+				connection.paused = true;
+				paused.add(connection);
+				break;
+			}
+			int id = input.getInt();
+			GameState state = Protocol.readState(input);
+			connection.read++;
+			if(state == null || state.getWidth() * state.getHeight() > maxCells)
+				respond(connection, id, Protocol.BAD_REQUEST, null, 0, 0);
+			else
+				queue.add(new Request(connection, id, state));
+		}
+		input.compact();
+		updateInterest(connection);
+	}
+
+	/**
+	 * Reads from a connection only while it has room for more requests in
+	 * flight and is not waiting for the queue, and writes to it only while
+	 * it has responses to write.
+	 *
+	 * @param connection the connection
+	 */
+	private void updateInterest(Connection connection) {
+		if(!connection.key.isValid())
+			return;
+		int ops = 0;
+		if(!connection.paused && connection.getInFlight() < maxPipelined && connection.input.hasRemaining())
+			ops |= SelectionKey.OP_READ;
+		synchronized(connection) {
+			if(connection.output.position() > 0)
+				ops |= SelectionKey.OP_WRITE;
+		}
+		connection.key.interestOps(ops);
+	}
+
+	/**
+	 * Writes as many of a connection's responses as the channel will take.
+	 *
+	 * @param connection the connection
+	 * @throws IOException if the connection fails
+	 */
+	private void write(Connection connection) throws IOException {
+		if(!connection.key.isValid())
+			return;
+		synchronized(connection) {
+			ByteBuffer output = connection.output;
+			output.flip();
+			connection.written += connection.channel.write(output);
+			output.compact();
+		}
+		// Written responses may make room for requests already read.
+		dispatch(connection);
+	}
+
+	/**
+	 * Closes a connection.  Requests from it still in the queue are decided
+	 * and their responses dropped.
+	 *
+	 * @param key the connection's key
+	 */
+	private void disconnect(SelectionKey key) {
+		key.cancel();
+		try {
+			key.channel().close();
+		}
+		catch(IOException ex) {
+			// Already closed.
+		}
+	}
+
+	/**
+	 * Runs a worker thread until the server is closed.
+	 *
+	 * @param bot the worker's bot
+	 */
+	private void work(Bot bot) {
+		boolean started = false;
+		while(!closed) {
+			Request request;
+			try {
+				request = queue.take();
+			}
+			catch(InterruptedException ex) {
+				return;
+			}
+			if(!started) {
+				bot.newGame(request.state);
+				started = true;
+			}
+			long start = System.nanoTime();
+			Decision decision;
+			byte status;
+			try {
+				decision = bot.chooseMove(request.state);
+				status = decision == null ? Protocol.GAME_OVER : Protocol.OK;
+			}
+			catch(Throwable ex) {
+				// Even an error such as running out of memory only fails
+				// this request, so the worker and the connection's count
+				// of requests in flight carry on.
+				decision = null;
+				status = Protocol.ERROR;
+			}
+			respond(request.connection, request.id, status, decision, request.state.getWidth(), System.nanoTime() - start);
+			ready.add(request.connection);
+			selector.wakeup();
+		}
+	}
+
+	/**
+	 * Adds a response to a connection's output.
+	 *
+	 * @param connection the connection
+	 * @param id the id of the request
+	 * @param status the status
+	 * @param decision the decision, or null
+	 * @param width the width of the request's grid
+	 * @param time how long the bot took to decide in nanoseconds
+	 */
+	private void respond(Connection connection, int id, byte status, Decision decision, int width, long time) {
+		synchronized(connection) {
+			if(decision == null)
+				Protocol.writeResponse(connection.output, id, status, 0, 0, 0, time);
+			else
+				Protocol.writeResponse(connection.output, id, status, decision.move.row * width + decision.move.column, decision.work, decision.hits, time);
+		}
+		answered.increment();
+	}
+
+	/**
+	 * Stops the server and closes every client's connection, so clients
+	 * waiting for responses see the connection end rather than waiting
+	 * forever.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		for(Thread thread : threads)
+			thread.interrupt();
+		// The selector's keys are not thread safe, so let the selector thread
+		// stop before closing their channels.
+		try {
+			selectorThread.join();
+		}
+		catch(InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		for(SelectionKey key : selector.keys())
+			disconnect(key);
+		selector.close();
+		server.close();
+	}
+
+	/**
+	 * Serves {@link AlphaBetaBot}s with transposition tables and move
+	 * ordering until the process is killed.
+	 *
+	 * @param args the port (default {@value #DEFAULT_PORT}), the number of
+	 * workers (default one for each processor), and the most squares a grid
+	 * may have (default {@value #DEFAULT_MAX_CELLS})
+	 * @throws IOException if the server cannot listen on the port
+	 * @throws InterruptedException if the main thread is interrupted
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int maxCells = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_CELLS;
+		DecisionServer server = new DecisionServer(port, DecisionServer::createBot, workers, 1024 * workers, 256, maxCells, 0);
+		System.out.println("Serving decisions on port " + server.getPort() + " with " + workers + " workers on grids of up to " + maxCells + " squares.");
+		server.awaitClose();
+	}
+
+	/**
+	 * Makes the bot used by {@link #main(String[])}.
+	 *
+	 * @param seed ignored
+	 * @return the bot
+	 */
+	static Bot createBot(long seed) {
+		TranspositionTable table = new TranspositionTable();
+		return new AlphaBetaBot(table, false, new HeuristicOrdering(table, true, true, true));
+	}
+}
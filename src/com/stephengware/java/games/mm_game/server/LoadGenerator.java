@@ -0,0 +1,273 @@
+package com.stephengware.java.games.mm_game.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.stephengware.java.games.mm_game.ai.LatencyHistogram;
+import com.stephengware.java.games.mm_game.state.Board;
+import com.stephengware.java.games.mm_game.state.State;
+
+/**
+ * Sends many pipelined requests to a {@link DecisionServer} and measures how
+ * many are answered each second and how long each one takes, from just before
+ * it is sent to just after its response arrives.
+ * <p>
+ * Each connection has a thread which writes requests, as many at a time as
+ * the pipeline has room for, and a thread which reads responses.  The
+ * requests are random Tic Tac Toe states in which the game is not over.
+ *
+ * @author Stephen G. Ware
+ */
+public class LoadGenerator {
+
+	/** The number of distinct states requested */
+	private static final int STATES = 1 << 12;
+
+	/** The address of the server */
+	public final InetSocketAddress address;
+
+	/** The number of connections */
+	public final int connections;
+
+	/** The most requests each connection sends before waiting for a response */
+	public final int pipeline;
+
+	/** The number of requests to send across all connections */
+	public final int requests;
+
+	/** The requests, in the order they are sent */
+	private final State[] states;
+
+	/** How long each response took to arrive in nanoseconds */
+	public final LatencyHistogram latency = new LatencyHistogram();
+
+	/** The number of responses which did not have status {@link Protocol#OK} */
+	private final AtomicInteger failures = new AtomicInteger();
+
+	/**
+	 * Constructs a load generator.
+	 *
+	 * @param address the address of the server
+	 * @param connections the number of connections
+	 * @param pipeline the most requests each connection has in flight
+	 * @param requests the number of requests to send
+	 * @param seed the seed used to choose the states requested
+	 */
+	public LoadGenerator(InetSocketAddress address, int connections, int pipeline, int requests, long seed) {
+		if(connections < 1 || pipeline < 1)
+			throw new IllegalArgumentException("A load generator needs at least one connection and request in flight.");
+		this.address = address;
+		this.connections = connections;
+		this.pipeline = pipeline;
+		this.requests = requests;
+		this.states = new State[STATES];
+		SplittableRandom random = new SplittableRandom(seed);
+		for(int i = 0; i < states.length; i++) {
+			int board;
+			do {
+				board = Board.EMPTY;
+				int plies = random.nextInt(Board.CELLS);
+				for(int ply = 0; ply < plies && Board.getMoves(board) != 0; ply++)
+					board = Board.make(board, pick(Board.getMoves(board), random));
+			}
+			while(Board.getMoves(board) == 0);
+			states[i] = new State(board);
+		}
+	}
+
+	/**
+	 * Chooses one of a set of cells at random.
+	 *
+	 * @param moves a bit set of cells
+	 * @param random the source of randomness
+	 * @return one of the cells
+	 */
+	private static int pick(int moves, SplittableRandom random) {
+		for(int skip = random.nextInt(Integer.bitCount(moves)); skip > 0; skip--)
+			moves &= moves - 1;
+		return Integer.numberOfTrailingZeros(moves);
+	}
+
+	/**
+	 * Sends every request and waits for every response.
+	 *
+	 * @return how long it took in nanoseconds
+	 * @throws IOException if a connection fails
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public long run() throws IOException, InterruptedException {
+		ArrayList<SocketChannel> channels = new ArrayList<>();
+		ArrayList<Thread> threads = new ArrayList<>();
+		AtomicLong error = new AtomicLong();
+		long start = System.nanoTime();
+		for(int c = 0; c < connections; c++) {
+			SocketChannel channel = SocketChannel.open(address);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			channels.add(channel);
+			int first = (int) ((long) requests * c / connections);
+			int last = (int) ((long) requests * (c + 1) / connections);
+			long[] sent = new long[last - first];
+			Semaphore room = new Semaphore(pipeline);
+			threads.add(new Thread(() -> {
+				try {
+					send(channel, first, last, sent, room);
+				}
+				catch(Exception ex) {
+					error.incrementAndGet();
+					abort(channel, room);
+				}
+			}, "load-writer-" + c));
+			threads.add(new Thread(() -> {
+				try {
+					receive(channel, first, last, sent, room);
+				}
+				catch(Exception ex) {
+					error.incrementAndGet();
+					abort(channel, room);
+				}
+			}, "load-reader-" + c));
+		}
+		for(Thread thread : threads)
+			thread.start();
+		for(Thread thread : threads)
+			thread.join();
+		long time = System.nanoTime() - start;
+		for(SocketChannel channel : channels)
+			channel.close();
+		if(error.get() != 0)
+			throw new IOException(error.get() + " connection threads failed.");
+		return time;
+	}
+
+	/**
+	 * Writes one connection's requests, waiting whenever the pipeline is full.
+	 *
+	 * @param channel the connection
+	 * @param first the id of the first request
+	 * @param last one past the id of the last request
+	 * @param sent the time each request was sent, by id minus first
+	 * @param room permits for the requests which may still be sent before a response arrives
+	 * @throws IOException if the connection fails
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private void send(SocketChannel channel, int first, int last, long[] sent, Semaphore room) throws IOException, InterruptedException {
+		ByteBuffer buffer = ByteBuffer.allocate(pipeline * (Protocol.REQUEST_HEADER + Protocol.squareBytes(3, 3)));
+		int id = first;
+		while(id < last) {
+			room.acquire();
+			int drained = room.drainPermits();
+			int batch = 1 + Math.min(drained, last - id - 1);
+			// Give back any permits drawn past the last request.
+			if(batch - 1 < drained)
+				room.release(drained - batch + 1);
+			buffer.clear();
+			long now = System.nanoTime();
+			for(int i = 0; i < batch; i++, id++) {
+				sent[id - first] = now;
+				Protocol.writeRequest(buffer, id, states[id % states.length]);
+			}
+			buffer.flip();
+			while(buffer.hasRemaining())
+				channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Reads one connection's responses and records their latency.
+	 *
+	 * @param channel the connection
+	 * @param first the id of the first request
+	 * @param last one past the id of the last request
+	 * @param sent the time each request was sent, by id minus first
+	 * @param room permits for the requests which may still be sent before a response arrives
+	 * @throws IOException if the connection fails
+	 */
+	private void receive(SocketChannel channel, int first, int last, long[] sent, Semaphore room) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(pipeline * Protocol.RESPONSE);
+		int remaining = last - first;
+		while(remaining > 0) {
+			if(channel.read(buffer) == -1)
+				throw new IOException("The server closed the connection.");
+			buffer.flip();
+			long now = System.nanoTime();
+			while(buffer.remaining() >= Protocol.RESPONSE) {
+				int id = buffer.getInt();
+				if(buffer.get() != Protocol.OK)
+					failures.incrementAndGet();
+				buffer.position(buffer.position() + Protocol.RESPONSE - 5);
+				latency.record(now - sent[id - first]);
+				remaining--;
+				room.release();
+			}
+			buffer.compact();
+		}
+	}
+
+	/**
+	 * Closes a connection after one of its threads fails, so the other
+	 * thread stops too: the reader's next read fails, and the writer, given
+	 * enough permits to stop waiting for responses, fails its next write.
+	 *
+	 * @param channel the connection
+	 * @param room permits for the requests which may still be sent before a response arrives
+	 */
+	private void abort(SocketChannel channel, Semaphore room) {
+		try {
+			channel.close();
+		}
+		catch(IOException ex) {
+			// Already closed.
+		}
+		room.release(pipeline);
+	}
+
+	/**
+	 * Returns the number of responses which did not have a move.
+	 *
+	 * @return the number of failed requests
+	 */
+	public int getFailures() {
+		return failures.get();
+	}
+
+	/**
+	 * Measures a server's throughput and latency.  With no host given, starts
+	 * a server on the loopback interface first, with the same bots as
+	 * {@link DecisionServer#main(String[])}.
+	 *
+	 * @param args the number of connections (default 4), requests in flight
+	 * per connection (default 64), and requests (default 1,000,000),
+	 * optionally followed by the server's host and port
+	 * @throws IOException if a connection fails
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int connections = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int pipeline = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+		int requests = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+		DecisionServer server = null;
+		InetSocketAddress address;
+		if(args.length > 3)
+			address = new InetSocketAddress(args[3], args.length > 4 ? Integer.parseInt(args[4]) : DecisionServer.DEFAULT_PORT);
+		else {
+			int workers = Runtime.getRuntime().availableProcessors();
+			server = new DecisionServer(0, DecisionServer::createBot, workers, 1024 * workers, pipeline, 0);
+			address = new InetSocketAddress("127.0.0.1", server.getPort());
+		}
+		LoadGenerator generator = new LoadGenerator(address, connections, pipeline, requests, 0);
+		long time = generator.run();
+		System.out.println(requests + " requests over " + connections + " connections, " + pipeline + " in flight each");
+		System.out.println(String.format("%.0f requests/s, %d failed", requests * 1e9 / time, generator.getFailures()));
+		System.out.println("Latency (ns): " + generator.latency);
+		if(server != null)
+			server.close();
+	}
+}
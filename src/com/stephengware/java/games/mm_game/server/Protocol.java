@@ -0,0 +1,201 @@
+package com.stephengware.java.games.mm_game.server;
+
+import java.nio.ByteBuffer;
+
+import com.stephengware.java.games.mm_game.state.Board;
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.MNKState;
+import com.stephengware.java.games.mm_game.state.Player;
+import com.stephengware.java.games.mm_game.state.State;
+
+/**
+ * The messages sent to and from a {@link DecisionServer}.  Numbers are big
+ * endian.
+ * <p>
+ * A request is a 4-byte id chosen by the client, then the width, height and
+ * win length of the grid in one unsigned byte each, then the squares in row
+ * major order, 2 bits each (0 for empty, 1 for X, 2 for O), packed 4 to a
+ * byte starting from the low bits.  Whose turn it is follows from the number
+ * of marks, since X always moves first.  A Tic Tac Toe request is 10 bytes.
+ * <p>
+ * A response is always {@link #RESPONSE} bytes: the request's id, a status
+ * byte, the cell number (<code>row * width + column</code>) of the move as
+ * an unsigned 2-byte number, the decision's work and transposition table
+ * hits in 4 bytes each, and the time the bot took to decide in nanoseconds
+ * in 8 bytes.  Only a response with status {@link #OK} has a move.
+ * <p>
+ * A client may send many requests without waiting for their responses.
+ * Responses may come back in a different order than their requests.
+ *
+ * @author Stephen G. Ware
+ */
+public final class Protocol {
+
+	/** The size of a request before its squares */
+	public static final int REQUEST_HEADER = 7;
+
+	/** The size of a response */
+	public static final int RESPONSE = 23;
+
+	/** The status of a response with a move */
+	public static final byte OK = 0;
+
+	/** The status of a response to a state in which the game is over */
+	public static final byte GAME_OVER = 1;
+
+	/** The status of a response to a state which could not arise in a game, or whose grid is too large for the server */
+	public static final byte BAD_REQUEST = 2;
+
+	/** The status of a response to a state which the bot failed to decide in */
+	public static final byte ERROR = 3;
+
+	/** The player each value of a square's 2 bits stands for */
+	private static final Player[] SQUARES = { null, Player.X, Player.O };
+
+	private Protocol() {
+		// Only static methods.
+	}
+
+	/**
+	 * Returns the number of bytes needed for the squares of a grid.
+	 *
+	 * @param width the number of columns
+	 * @param height the number of rows
+	 * @return the number of bytes
+	 */
+	public static int squareBytes(int width, int height) {
+		return (width * height + 3) / 4;
+	}
+
+	/**
+	 * Appends a request to a buffer.
+	 *
+	 * @param buffer the buffer
+	 * @param id the request's id
+	 * @param state the state in which a move must be chosen
+	 * @throws IllegalArgumentException if the grid is more than 255 squares wide or high
+	 */
+	public static void writeRequest(ByteBuffer buffer, int id, GameState state) {
+		int width = state.getWidth();
+		int height = state.getHeight();
+		if(width > 0xFF || height > 0xFF || state.getWinLength() > 0xFF)
+			throw new IllegalArgumentException("Grids larger than 255x255 cannot be sent.");
+		buffer.putInt(id);
+		buffer.put((byte) width);
+		buffer.put((byte) height);
+		buffer.put((byte) state.getWinLength());
+		int packed = 0;
+		for(int cell = 0; cell < width * height; cell++) {
+			Player player = state.getSquare(cell / width, cell % width);
+			if(player != null)
+				packed |= (player.ordinal() + 1) << ((cell % 4) * 2);
+			if(cell % 4 == 3 || cell == width * height - 1) {
+				buffer.put((byte) packed);
+				packed = 0;
+			}
+		}
+	}
+
+	/**
+	 * Returns the length of the request at the start of a buffer's remaining
+	 * bytes, without consuming it.
+	 *
+	 * @param buffer the buffer
+	 * @return the length of the request, or -1 if not enough of it has
+	 * arrived to tell
+	 */
+	public static int requestLength(ByteBuffer buffer) {
+		if(buffer.remaining() < REQUEST_HEADER)
+			return -1;
+		int start = buffer.position();
+		int width = buffer.get(start + 4) & 0xFF;
+		int height = buffer.get(start + 5) & 0xFF;
+		return REQUEST_HEADER + squareBytes(width, height);
+	}
+
+	/**
+	 * Reads the state from a request whose id has already been read.  The
+	 * whole request must be in the buffer.
+	 *
+	 * @param buffer the buffer
+	 * @return the state, which is a {@link State} for Tic Tac Toe, or null if
+	 * the state could not arise in a game (the request is consumed anyway)
+	 */
+	public static GameState readState(ByteBuffer buffer) {
+		int width = buffer.get() & 0xFF;
+		int height = buffer.get() & 0xFF;
+		int winLength = buffer.get() & 0xFF;
+		Player[] squares = new Player[width * height];
+		boolean valid = true;
+		int packed = 0;
+		for(int cell = 0; cell < squares.length; cell++) {
+			if(cell % 4 == 0)
+				packed = buffer.get() & 0xFF;
+			int square = (packed >>> ((cell % 4) * 2)) & 0x3;
+			if(square == 3)
+				valid = false;
+			else
+				squares[cell] = SQUARES[square];
+		}
+		if(!valid)
+			return null;
+		try {
+			if(width == 3 && height == 3 && winLength == 3)
+				return toState(squares);
+			return new MNKState(width, height, winLength, squares);
+		}
+		catch(IllegalArgumentException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Makes a Tic Tac Toe state with the given marks, by placing X's and O's
+	 * marks in turn on a packed {@link Board}.
+	 *
+	 * @param squares the mark in each of the 9 squares, or null
+	 * @return the state
+	 * @throws IllegalArgumentException if the marks could not arise in a game
+	 */
+	private static State toState(Player[] squares) {
+		int[] xs = new int[squares.length];
+		int[] os = new int[squares.length];
+		int xCount = 0;
+		int oCount = 0;
+		for(int cell = 0; cell < squares.length; cell++) {
+			if(squares[cell] == Player.X)
+				xs[xCount++] = cell;
+			else if(squares[cell] == Player.O)
+				os[oCount++] = cell;
+		}
+		if(xCount != oCount && xCount != oCount + 1)
+			throw new IllegalArgumentException("X cannot have " + xCount + " marks when O has " + oCount + ".");
+		int board = Board.EMPTY;
+		for(int i = 0; i < xCount; i++) {
+			board = Board.make(board, xs[i]);
+			if(i < oCount)
+				board = Board.make(board, os[i]);
+		}
+		return new State(board);
+	}
+
+	/**
+	 * Appends a response to a buffer.
+	 *
+	 * @param buffer the buffer
+	 * @param id the id of the request
+	 * @param status the status
+	 * @param cell the cell number of the move, or 0 if there is none
+	 * @param work the decision's work
+	 * @param hits the decision's transposition table hits
+	 * @param time how long the bot took to decide in nanoseconds
+	 */
+	public static void writeResponse(ByteBuffer buffer, int id, byte status, int cell, int work, int hits, long time) {
+		buffer.putInt(id);
+		buffer.put(status);
+		buffer.putShort((short) cell);
+		buffer.putInt(work);
+		buffer.putInt(hits);
+		buffer.putLong(time);
+	}
+}
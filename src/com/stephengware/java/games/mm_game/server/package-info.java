@@ -0,0 +1,6 @@
+/**
+ * This package contains a TCP server which lets other programs ask a bot for
+ * its decisions over a small binary protocol, along with a load generator
+ * which measures the server's throughput and latency.
+ */
+package com.stephengware.java.games.mm_game.server;
\ No newline at end of file
@@ -0,0 +1,207 @@
+package com.stephengware.java.games.mm_game.state;
+
+/**
+ * A packed representation of a Tic Tac Toe board which fits entirely in one
+ * primitive <code>int</code>.  Bits 0 to 8 hold the marks placed by X, bits 9
+ * to 17 hold the marks placed by O, and bit 18 is set when it is O's turn to
+ * move.  Square (row, column) is cell number <code>row * 3 + column</code>.
+ * <p>
+ * All of the methods in this class work on these packed values, so making
+ * moves, generating moves, and checking for a win never allocate objects.
+ * {@link State} is a thin wrapper around one of these values.
+ *
+ * @author Stephen G. Ware
+ */
+public final class Board {
+
+	/** The empty board, with X to move */
+	public static final int EMPTY = 0;
+
+	/** The number of cells on the board */
+	public static final int CELLS = 9;
+
+	/** A 9-bit mask with every cell set */
+	public static final int FULL = 0x1FF;
+
+	/** How far O's marks are shifted left of X's marks */
+	private static final int O_SHIFT = 9;
+
+	/** The bit which is set when it is O's turn to move */
+	private static final int O_TO_MOVE = 1 << 18;
+
+	/** The 9-bit masks of the 8 rows, columns, and diagonals */
+	private static final int[] LINES = {
+		0x007, 0x038, 0x1C0, // rows
+		0x049, 0x092, 0x124, // columns
+		0x111, 0x054         // diagonals
+	};
+
+	/** For every possible 9-bit mask, whether it contains a complete line */
+	private static final boolean[] WINS = new boolean[FULL + 1];
+
+	static {
+		for(int marks = 0; marks <= FULL; marks++)
+			for(int line : LINES)
+				if((marks & line) == line)
+					WINS[marks] = true;
+	}
+
+	private Board() {
+		// Only static methods.
+	}
+
+	/**
+	 * Returns the cell number of a given square.
+	 *
+	 * @param row the row number (0 to 2)
+	 * @param column the column number (0 to 2)
+	 * @return the cell number (0 to 8)
+	 */
+	public static int cell(int row, int column) {
+		return row * 3 + column;
+	}
+
+	/**
+	 * Returns the 9-bit mask of cells where a given player has placed a mark.
+	 *
+	 * @param board the packed board
+	 * @param player the player
+	 * @return the player's marks
+	 */
+	public static int getMarks(int board, Player player) {
+		if(player == Player.X)
+			return board & FULL;
+		else
+			return (board >>> O_SHIFT) & FULL;
+	}
+
+	/**
+	 * Returns the 9-bit mask of cells where no player has placed a mark.
+	 *
+	 * @param board the packed board
+	 * @return the empty cells
+	 */
+	public static int getEmpty(int board) {
+		return ~(board | (board >>> O_SHIFT)) & FULL;
+	}
+
+	/**
+	 * Returns the player whose turn it is to move next.
+	 *
+	 * @param board the packed board
+	 * @return the current player
+	 */
+	public static Player getCurrentPlayer(int board) {
+		if((board & O_TO_MOVE) == 0)
+			return Player.X;
+		else
+			return Player.O;
+	}
+
+	/**
+	 * Returns the mark in a given cell.
+	 *
+	 * @param board the packed board
+	 * @param cell the cell number (0 to 8)
+	 * @return the player who has placed a mark in that cell, or null if no
+	 * player has placed a mark there
+	 */
+	public static Player getSquare(int board, int cell) {
+		if((board & (1 << cell)) != 0)
+			return Player.X;
+		else if((board & (1 << (cell + O_SHIFT))) != 0)
+			return Player.O;
+		else
+			return null;
+	}
+
+	/**
+	 * Checks if a 9-bit mask of marks contains a complete row, column, or
+	 * diagonal.
+	 *
+	 * @param marks the marks placed by one player
+	 * @return true if those marks win the game
+	 */
+	public static boolean hasLine(int marks) {
+		return WINS[marks];
+	}
+
+	/**
+	 * Returns the winner, if one has been determined.
+	 *
+	 * @param board the packed board
+	 * @return the winning player, or null if no player has won
+	 */
+	public static Player getWinner(int board) {
+		if(WINS[board & FULL])
+			return Player.X;
+		else if(WINS[(board >>> O_SHIFT) & FULL])
+			return Player.O;
+		else
+			return null;
+	}
+
+	/**
+	 * Returns true if a winner has been decided or if the game is a tie.
+	 *
+	 * @param board the packed board
+	 * @return true if the game is over, false otherwise
+	 */
+	public static boolean isTerminal(int board) {
+		return getMoves(board) == 0;
+	}
+
+	/**
+	 * Returns the 9-bit mask of cells in which the current player may place a
+	 * mark.  This is empty once the game is over.
+	 *
+	 * @param board the packed board
+	 * @return the available moves
+	 */
+	public static int getMoves(int board) {
+		if(WINS[board & FULL] || WINS[(board >>> O_SHIFT) & FULL])
+			return 0;
+		return getEmpty(board);
+	}
+
+	/**
+	 * Returns the board that results from the current player placing a mark
+	 * in the given cell.  The cell is assumed to be empty.
+	 *
+	 * @param board the packed board
+	 * @param cell the cell number (0 to 8)
+	 * @return the resulting packed board
+	 */
+	public static int make(int board, int cell) {
+		if((board & O_TO_MOVE) == 0)
+			return (board | (1 << cell)) | O_TO_MOVE;
+		else
+			return (board | (1 << (cell + O_SHIFT))) & ~O_TO_MOVE;
+	}
+
+	/**
+	 * Reverses {@link #make(int, int)}, removing the mark placed in the given
+	 * cell by the player who moved last.
+	 *
+	 * @param board the packed board
+	 * @param cell the cell number (0 to 8)
+	 * @return the packed board before that move was made
+	 */
+	public static int unmake(int board, int cell) {
+		if((board & O_TO_MOVE) == 0)
+			return (board & ~(1 << (cell + O_SHIFT))) | O_TO_MOVE;
+		else
+			return (board & ~(1 << cell)) & ~O_TO_MOVE;
+	}
+
+	/**
+	 * Checks that a packed value describes a board that could be stored in a
+	 * {@link State}: no cell is marked twice and no unused bits are set.
+	 *
+	 * @param board the packed board
+	 * @return true if the value is well formed
+	 */
+	public static boolean isValid(int board) {
+		return (board & ~(O_TO_MOVE | (FULL << O_SHIFT) | FULL)) == 0 && (board & (board >>> O_SHIFT) & FULL) == 0;
+	}
+}
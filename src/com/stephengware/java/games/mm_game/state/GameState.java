@@ -0,0 +1,130 @@
+package com.stephengware.java.games.mm_game.state;
+
+/**
+ * The state of an m,n,k game: two players take turns placing marks on a grid
+ * that is m squares wide and n squares high, and the first player to place k
+ * marks in a row, column, or diagonal wins.  Tic Tac Toe is the 3,3,3 game.
+ * <p>
+ * States are immutable; {@link #transition(Move)} returns a new state.
+ *
+ * @author Stephen G. Ware
+ */
+public interface GameState {
+
+	/**
+	 * Returns the number of columns in the grid.
+	 *
+	 * @return the width of the grid
+	 */
+	public int getWidth();
+
+	/**
+	 * Returns the number of rows in the grid.
+	 *
+	 * @return the height of the grid
+	 */
+	public int getHeight();
+
+	/**
+	 * Returns the number of marks a player must place in a line to win.
+	 *
+	 * @return the length of a winning line
+	 */
+	public int getWinLength();
+
+	/**
+	 * Returns the player whose turn it is to move next.
+	 *
+	 * @return the current player
+	 */
+	public Player getCurrentPlayer();
+
+	/**
+	 * Returns the mark at the given row and column of the grid.
+	 *
+	 * @param row the row number
+	 * @param column the column number
+	 * @return the player who has placed a mark at that location, or null if no
+	 * player has placed a mark in that location
+	 */
+	public Player getSquare(int row, int column);
+
+	/**
+	 * Returns the number of squares in which no player has placed a mark.
+	 *
+	 * @return the number of empty squares
+	 */
+	public int getEmptySquares();
+
+	/**
+	 * Returns a set of all the next moves that can be made in the game.
+	 *
+	 * @return all possible next moves
+	 */
+	public Iterable<Move> getAvailableMoves();
+
+	/**
+	 * Lists the cell numbers (<code>row * width + column</code>) of the
+	 * squares in which the current player may place a mark, in row major
+	 * order, without allocating anything.  There are none once the game is
+	 * over.
+	 *
+	 * @param cells an array with room for every square on the grid, which the cell numbers are written to
+	 * @return the number of cells written
+	 */
+	public default int getAvailableMoves(int[] cells) {
+		if(isTerminal())
+			return 0;
+		int width = getWidth();
+		int count = 0;
+		for(int cell = 0; cell < width * getHeight(); cell++)
+			if(getSquare(cell / width, cell % width) == null)
+				cells[count++] = cell;
+		return count;
+	}
+
+	/**
+	 * Returns the state that would result from taking the given move.
+	 * Note that this object remains unchanged.
+	 *
+	 * @param move the move to take
+	 * @return the resulting state
+	 */
+	public GameState transition(Move move);
+
+	/**
+	 * Returns the state that would result from the current player placing a
+	 * mark in the square with the given cell number
+	 * (<code>row * width + column</code>).  Note that this object remains
+	 * unchanged.
+	 *
+	 * @param cell the cell number of the square
+	 * @return the resulting state
+	 */
+	public default GameState transition(int cell) {
+		return transition(Move.get(getCurrentPlayer(), cell / getWidth(), cell % getWidth()));
+	}
+
+	/**
+	 * Returns true if a winner has been decided or if the game is a tie.
+	 *
+	 * @return true if the game is over, false otherwise
+	 */
+	public boolean isTerminal();
+
+	/**
+	 * Returns the winner, if one has been determined.
+	 *
+	 * @return the winning player, or null if no player has won or the game ended in a tie
+	 */
+	public Player getWinner();
+
+	/**
+	 * Returns a 64-bit key identifying this state, suitable for a
+	 * transposition table.  Equal states have equal keys, and different
+	 * states of the same game almost always have different keys.
+	 *
+	 * @return the key
+	 */
+	public long getKey();
+}
@@ -0,0 +1,314 @@
+package com.stephengware.java.games.mm_game.state;
+
+import java.util.ArrayList;
+
+/**
+ * Represents the current state of an m,n,k game of any size, such as 4,4,3
+ * or 15,15,5 (Gomoku).
+ * <p>
+ * Only a line through the square that was just marked can be new, so a win
+ * is detected by counting the player's marks outward from that square in
+ * each of the 4 directions rather than by scanning the whole grid.  The
+ * state's {@link #getKey() key} is a Zobrist hash which is also updated
+ * one move at a time.
+ *
+ * @author Stephen G. Ware
+ */
+public class MNKState implements GameState {
+
+	/** The 4 directions a line can run in: across, down, and both diagonals */
+	private static final int[][] DIRECTIONS = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+
+	/** Added to the key when it is O's turn to move */
+	static final long O_TO_MOVE = zobrist(Long.MAX_VALUE);
+
+	/** The number of columns */
+	private final int width;
+
+	/** The number of rows */
+	private final int height;
+
+	/** The number of marks in a line needed to win */
+	private final int winLength;
+
+	/** The grid in row major order */
+	private final Player[] grid;
+
+	/** The player who will move next */
+	private final Player current;
+
+	/** The player who has won (if any) */
+	private final Player winner;
+
+	/** The number of empty squares */
+	private final int empty;
+
+	/** The Zobrist hash of this state */
+	private final long key;
+
+	/**
+	 * Constructs the initial state of an m,n,k game, in which the grid is
+	 * empty and it is X's turn to move.
+	 *
+	 * @param width the number of columns (m)
+	 * @param height the number of rows (n)
+	 * @param winLength the number of marks in a line needed to win (k)
+	 */
+	public MNKState(int width, int height, int winLength) {
+		checkSize(width, height, winLength);
+		this.width = width;
+		this.height = height;
+		this.winLength = winLength;
+		this.grid = new Player[width * height];
+		this.current = Player.X;
+		this.winner = null;
+		this.empty = grid.length;
+		this.key = 0;
+	}
+
+	/**
+	 * Constructs the state of an m,n,k game with the given marks on the grid.
+	 * X moves first, so it is X's turn if both players have made the same
+	 * number of marks and O's turn if X has made one more.
+	 * 
+	 * @param width the number of columns (m)
+	 * @param height the number of rows (n)
+	 * @param winLength the number of marks in a line needed to win (k)
+	 * @param squares the mark in each square in row major order, or null for an empty square
+	 * @throws IllegalArgumentException if the marks could not arise in a game
+	 */
+	public MNKState(int width, int height, int winLength, Player[] squares) {
+		checkSize(width, height, winLength);
+		if(squares.length != width * height)
+			throw new IllegalArgumentException("A " + width + "x" + height + " grid has " + (width * height) + " squares, not " + squares.length + ".");
+		this.width = width;
+		this.height = height;
+		this.winLength = winLength;
+		this.grid = squares.clone();
+		int xs = 0;
+		int os = 0;
+		long key = 0;
+		for(int cell = 0; cell < grid.length; cell++) {
+			if(grid[cell] == null)
+				continue;
+			if(grid[cell] == Player.X)
+				xs++;
+			else
+				os++;
+			key ^= zobrist(cell * 2 + grid[cell].ordinal());
+		}
+		if(xs != os && xs != os + 1)
+			throw new IllegalArgumentException("X cannot have " + xs + " marks when O has " + os + ".");
+		this.current = xs == os ? Player.X : Player.O;
+		Player winner = null;
+		for(int cell = 0; cell < grid.length; cell++) {
+			if(grid[cell] != null && grid[cell] != winner && checkWin(cell / width, cell % width, grid[cell])) {
+				if(winner != null)
+					throw new IllegalArgumentException("Both players cannot have won.");
+				winner = grid[cell];
+			}
+		}
+		this.winner = winner;
+		this.empty = grid.length - xs - os;
+		this.key = current == Player.O ? key ^ O_TO_MOVE : key;
+	}
+	
+	/**
+	 * Checks that an m,n,k game can be played on a grid.
+	 * 
+	 * @param width the number of columns (m)
+	 * @param height the number of rows (n)
+	 * @param winLength the number of marks in a line needed to win (k)
+	 * @throws IllegalArgumentException if the grid is empty or the line does not fit
+	 */
+	private static void checkSize(int width, int height, int winLength) {
+		if(width < 1 || height < 1)
+			throw new IllegalArgumentException("The grid must have at least one square.");
+		if(winLength < 1 || (winLength > width && winLength > height))
+			throw new IllegalArgumentException("A line of " + winLength + " does not fit on a " + width + "x" + height + " grid.");
+	}
+	
+	/**
+	 * Constructs the new state that would result from taking a given
+	 * {@link Move} in some given previous state.
+	 *
+	 * @param previous the state of the game before the given move is taken
+	 * @param move the move to be taken
+	 */
+	private MNKState(MNKState previous, Move move) {
+		if(previous.winner != null)
+			throw new IllegalStateException("The game has ended; no more moves can be taken.");
+		if(move.row < 0 || move.row >= previous.height || move.column < 0 || move.column >= previous.width)
+			throw new IllegalArgumentException("Position (" + move.row + "," + move.column + ") is not on the grid.");
+		int cell = move.row * previous.width + move.column;
+		if(previous.grid[cell] != null)
+			throw new IllegalStateException("Position (" + move.row + "," + move.column + ") is already occupied.");
+		if(move.player != previous.current)
+			throw new IllegalStateException("It is not player " + move.player + "'s turn.");
+		this.width = previous.width;
+		this.height = previous.height;
+		this.winLength = previous.winLength;
+		this.grid = previous.grid.clone();
+		grid[cell] = move.player;
+		if(move.player == Player.X)
+			current = Player.O;
+		else
+			current = Player.X;
+		if(checkWin(move.row, move.column, move.player))
+			winner = move.player;
+		else
+			winner = null;
+		this.empty = previous.empty - 1;
+		this.key = previous.key ^ zobrist(cell * 2 + move.player.ordinal()) ^ O_TO_MOVE;
+	}
+
+	/**
+	 * Checks if the mark a player just placed completes a line.
+	 *
+	 * @param row the row of the new mark
+	 * @param column the column of the new mark
+	 * @param player the player
+	 * @return true if the player has won, false otherwise
+	 */
+	private final boolean checkWin(int row, int column, Player player) {
+		for(int[] direction : DIRECTIONS) {
+			int count = 1 + count(row, column, direction[0], direction[1], player) + count(row, column, -direction[0], -direction[1], player);
+			if(count >= winLength)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Counts a player's consecutive marks starting next to a square and
+	 * moving in one direction.
+	 *
+	 * @param row the row of the starting square
+	 * @param column the column of the starting square
+	 * @param dr the change in row at each step
+	 * @param dc the change in column at each step
+	 * @param player the player
+	 * @return the number of consecutive marks (at most the win length)
+	 */
+	private final int count(int row, int column, int dr, int dc, Player player) {
+		int count = 0;
+		for(row += dr, column += dc; count < winLength && row >= 0 && row < height && column >= 0 && column < width; row += dr, column += dc) {
+			if(grid[row * width + column] != player)
+				break;
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns a well mixed 64-bit number for a given index, used as the
+	 * Zobrist key of a player's mark on a square.
+	 *
+	 * @param index the square number times 2 plus the player's ordinal, or
+	 * {@link Long#MAX_VALUE} for the player to move
+	 * @return the key
+	 */
+	static long zobrist(long index) {
+		// The SplitMix64 finalizer.
+		long z = (index + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public int getWinLength() {
+		return winLength;
+	}
+
+	@Override
+	public Player getCurrentPlayer() {
+		return current;
+	}
+
+	@Override
+	public Player getSquare(int row, int column) {
+		return grid[row * width + column];
+	}
+
+	@Override
+	public int getEmptySquares() {
+		return empty;
+	}
+
+	@Override
+	public Iterable<Move> getAvailableMoves() {
+		ArrayList<Move> moves = new ArrayList<>();
+		if(winner != null)
+			return moves;
+		for(int cell = 0; cell < grid.length; cell++)
+			if(grid[cell] == null)
+				moves.add(Move.get(current, cell / width, cell % width));
+		return moves;
+	}
+
+	@Override
+	public int getAvailableMoves(int[] cells) {
+		if(winner != null)
+			return 0;
+		int count = 0;
+		for(int cell = 0; cell < grid.length; cell++)
+			if(grid[cell] == null)
+				cells[count++] = cell;
+		return count;
+	}
+
+	@Override
+	public MNKState transition(Move move) {
+		return new MNKState(this, move);
+	}
+
+	@Override
+	public boolean isTerminal() {
+		return winner != null || empty == 0;
+	}
+
+	@Override
+	public Player getWinner() {
+		return winner;
+	}
+
+	@Override
+	public long getKey() {
+		return key;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder str = new StringBuilder();
+		for(int r = 0; r < 2 * height - 1; r++) {
+			for(int c = 0; c < 2 * width - 1; c++) {
+				if(r % 2 == 1 && c % 2 == 1)
+					str.append('+');
+				else if(r % 2 == 1)
+					str.append('-');
+				else if(c % 2 == 1)
+					str.append('|');
+				else {
+					Player p = getSquare(r / 2, c / 2);
+					if(p == null)
+						str.append(' ');
+					else
+						str.append(p);
+				}
+			}
+			str.append('\n');
+		}
+		return str.toString();
+	}
+}
@@ -2,11 +2,24 @@ package com.stephengware.java.games.mm_game.state;
 
 /**
  * Represents an individual move in a game of Tic Tac Toe.
+ * <p>
+ * Moves are immutable, so the 18 moves on a 3 by 3 grid (2 players times 9
+ * squares) are made once and shared; {@link #get(Player, int, int)} returns
+ * them rather than allocating a new move at every node of a search.
  * 
  * @author Stephen G. Ware
  */
 public class Move {
 
+	/** The shared moves for the squares of a 3 by 3 grid, at player ordinal * 9 + cell number */
+	private static final Move[] INTERNED = new Move[2 * Board.CELLS];
+	
+	static {
+		for(Player player : Player.values())
+			for(int cell = 0; cell < Board.CELLS; cell++)
+				INTERNED[player.ordinal() * Board.CELLS + cell] = new Move(player, cell / 3, cell % 3);
+	}
+
 	/** The player making the move */
 	public final Player player;
 	
@@ -33,4 +46,30 @@ public class Move {
 	public String toString() {
 		return player + " @ " + row + " " + column;
 	}
+	
+	/**
+	 * Returns a move, which is a shared instance if the square is on a 3 by 3
+	 * grid.
+	 * 
+	 * @param player the player making the move
+	 * @param row the row on the grid in which the player places his mark
+	 * @param column the column on the grid in which the player places his mark
+	 * @return the move
+	 */
+	public static Move get(Player player, int row, int column) {
+		if(row >= 0 && row < 3 && column >= 0 && column < 3)
+			return INTERNED[player.ordinal() * Board.CELLS + row * 3 + column];
+		return new Move(player, row, column);
+	}
+	
+	/**
+	 * Returns the shared move in a square of a Tic Tac Toe grid.
+	 * 
+	 * @param player the player making the move
+	 * @param cell the cell number of the square (0 to 8, see {@link Board#cell(int, int)})
+	 * @return the move
+	 */
+	public static Move get(Player player, int cell) {
+		return INTERNED[player.ordinal() * Board.CELLS + cell];
+	}
 }
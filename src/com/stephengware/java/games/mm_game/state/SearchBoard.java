@@ -0,0 +1,310 @@
+package com.stephengware.java.games.mm_game.state;
+
+/**
+ * A mutable m,n,k grid for search engines, which make a move, search below
+ * it, and then take it back with {@link #make(int)} and {@link #unmake(int)}
+ * rather than building a new {@link GameState} for every node.
+ * <p>
+ * Every run of k squares in a row, column, or diagonal is a line, and the
+ * board keeps a count of each player's marks in each line.  Placing or
+ * removing a mark only changes the counts of the few lines through its
+ * square, so checking for a win takes the same time no matter how big the
+ * grid is.  Moves are listed into an array the caller provides, so nothing
+ * is allocated after the board is constructed.
+ * <p>
+ * Squares are numbered <code>row * width + column</code>.  The board's
+ * {@link #getKey() key} always matches the key of the equivalent immutable
+ * state, so a {@link com.stephengware.java.games.mm_game.ai.TranspositionTable
+ * TranspositionTable} can be shared between engines that use boards and
+ * engines that use states.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Stephen G. Ware
+ */
+public final class SearchBoard {
+
+	/** The 4 directions a line can run in: across, down, and both diagonals */
+	private static final int[][] DIRECTIONS = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+
+	/** Marks an empty square in {@link #grid} */
+	private static final byte EMPTY = -1;
+
+	/** The number of columns */
+	public final int width;
+
+	/** The number of rows */
+	public final int height;
+
+	/** The number of marks in a line needed to win */
+	public final int winLength;
+
+	/**
+	 * Whether the key is a packed Tic Tac Toe board (see {@link Board}), as
+	 * for a {@link State}, rather than a Zobrist hash, as for an
+	 * {@link MNKState}
+	 */
+	private final boolean packed;
+
+	/** The ordinal of the player in each square, or {@link #EMPTY} */
+	private final byte[] grid;
+
+	/** The lines through each square */
+	private final int[][] linesThrough;
+
+	/** The number of marks each player (by ordinal) has in each line */
+	private final int[][] counts;
+
+	/** The number of complete lines each player (by ordinal) has */
+	private final int[] wins = new int[2];
+
+	/** The Zobrist key of each player's mark on each square, at square * 2 + ordinal */
+	private final long[] zobrist;
+
+	/** The ordinal of the player who will move next */
+	private int current;
+
+	/** The number of empty squares */
+	private int empty;
+
+	/** The key of the current position */
+	private long key;
+
+	/**
+	 * Constructs a board in the same position as a state.
+	 *
+	 * @param state the state
+	 */
+	public SearchBoard(GameState state) {
+		this.width = state.getWidth();
+		this.height = state.getHeight();
+		this.winLength = state.getWinLength();
+		this.packed = state instanceof State;
+		this.grid = new byte[width * height];
+		int[][] through = new int[grid.length][];
+		int lines = 0;
+		for(int pass = 0; pass < 2; pass++) {
+			int[] sizes = new int[grid.length];
+			lines = 0;
+			for(int[] direction : DIRECTIONS) {
+				for(int row = 0; row < height; row++) {
+					for(int column = 0; column < width; column++) {
+						int endRow = row + direction[0] * (winLength - 1);
+						int endColumn = column + direction[1] * (winLength - 1);
+						if(endRow >= height || endColumn < 0 || endColumn >= width)
+							continue;
+						for(int i = 0; i < winLength; i++) {
+							int cell = (row + direction[0] * i) * width + column + direction[1] * i;
+							if(pass == 1)
+								through[cell][sizes[cell]] = lines;
+							sizes[cell]++;
+						}
+						lines++;
+					}
+				}
+			}
+			// The first pass only counts the lines through each square.
+			if(pass == 0)
+				for(int cell = 0; cell < grid.length; cell++)
+					through[cell] = new int[sizes[cell]];
+		}
+		this.linesThrough = through;
+		this.counts = new int[2][lines];
+		this.zobrist = new long[grid.length * 2];
+		for(int i = 0; i < zobrist.length; i++)
+			zobrist[i] = MNKState.zobrist(i);
+		this.current = Player.X.ordinal();
+		this.empty = grid.length;
+		for(int cell = 0; cell < grid.length; cell++)
+			grid[cell] = EMPTY;
+		// Replay the state's marks in any order; only the counts matter.
+		for(int cell = 0; cell < grid.length; cell++) {
+			Player player = state.getSquare(cell / width, cell % width);
+			if(player != null)
+				place(cell, player.ordinal());
+		}
+		this.current = state.getCurrentPlayer().ordinal();
+		this.key = packed ? ((State) state).getBoard() : state.getKey();
+	}
+
+	/**
+	 * Puts a player's mark in an empty square and updates the counts.
+	 *
+	 * @param cell the square
+	 * @param player the player's ordinal
+	 */
+	private void place(int cell, int player) {
+		grid[cell] = (byte) player;
+		int[] playerCounts = counts[player];
+		for(int line : linesThrough[cell])
+			if(++playerCounts[line] == winLength)
+				wins[player]++;
+		empty--;
+	}
+
+	/**
+	 * Removes a player's mark from a square and updates the counts.
+	 *
+	 * @param cell the square
+	 * @param player the player's ordinal
+	 */
+	private void remove(int cell, int player) {
+		grid[cell] = EMPTY;
+		int[] playerCounts = counts[player];
+		for(int line : linesThrough[cell])
+			if(playerCounts[line]-- == winLength)
+				wins[player]--;
+		empty++;
+	}
+
+	/**
+	 * Places the current player's mark in a square and passes the turn to the
+	 * other player.
+	 *
+	 * @param cell the square number
+	 * @throws IllegalStateException if the game is over or the square is occupied
+	 */
+	public void make(int cell) {
+		if(wins[0] != 0 || wins[1] != 0)
+			throw new IllegalStateException("The game has ended; no more moves can be taken.");
+		if(grid[cell] != EMPTY)
+			throw new IllegalStateException("Square " + cell + " is already occupied.");
+		place(cell, current);
+		if(packed)
+			key = Board.make((int) key, cell);
+		else
+			key ^= zobrist[cell * 2 + current] ^ MNKState.O_TO_MOVE;
+		current ^= 1;
+	}
+
+	/**
+	 * Takes back the last move, which placed a mark in the given square, and
+	 * gives the turn back to the player who made it.
+	 *
+	 * @param cell the square number of the last move
+	 * @throws IllegalStateException if the last move was not in that square
+	 */
+	public void unmake(int cell) {
+		int player = current ^ 1;
+		if(grid[cell] != player)
+			throw new IllegalStateException("The last move was not in square " + cell + ".");
+		remove(cell, player);
+		if(packed)
+			key = Board.unmake((int) key, cell);
+		else
+			key ^= zobrist[cell * 2 + player] ^ MNKState.O_TO_MOVE;
+		current = player;
+	}
+
+	/**
+	 * Lists the squares in which the current player may place a mark, in
+	 * row major order.  There are none once the game is over.
+	 *
+	 * @param moves an array with room for every square on the grid, which the squares are written to
+	 * @return the number of squares written
+	 */
+	public int getMoves(int[] moves) {
+		if(wins[0] != 0 || wins[1] != 0)
+			return 0;
+		int count = 0;
+		for(int cell = 0; cell < grid.length; cell++)
+			if(grid[cell] == EMPTY)
+				moves[count++] = cell;
+		return count;
+	}
+
+	/**
+	 * Returns the {@link Move} the current player would make by placing a
+	 * mark in a square.
+	 *
+	 * @param cell the square number
+	 * @return the move
+	 */
+	public Move getMove(int cell) {
+		return Move.get(getCurrentPlayer(), cell / width, cell % width);
+	}
+
+	/**
+	 * Returns the player whose turn it is to move next.
+	 *
+	 * @return the current player
+	 */
+	public Player getCurrentPlayer() {
+		return current == 0 ? Player.X : Player.O;
+	}
+
+	/**
+	 * Returns the mark in a square.
+	 *
+	 * @param cell the square number
+	 * @return the player who has placed a mark there, or null if it is empty
+	 */
+	public Player getSquare(int cell) {
+		byte player = grid[cell];
+		return player == EMPTY ? null : player == 0 ? Player.X : Player.O;
+	}
+
+	/**
+	 * Returns the number of squares in which no player has placed a mark.
+	 *
+	 * @return the number of empty squares
+	 */
+	public int getEmptySquares() {
+		return empty;
+	}
+
+	/**
+	 * Returns true if a winner has been decided or if the game is a tie.
+	 *
+	 * @return true if the game is over, false otherwise
+	 */
+	public boolean isTerminal() {
+		return wins[0] != 0 || wins[1] != 0 || empty == 0;
+	}
+
+	/**
+	 * Returns the winner, if one has been determined.
+	 *
+	 * @return the winning player, or null if no player has won
+	 */
+	public Player getWinner() {
+		if(wins[0] != 0)
+			return Player.X;
+		else if(wins[1] != 0)
+			return Player.O;
+		else
+			return null;
+	}
+
+	/**
+	 * Returns the key of the current position, which is the same as the key
+	 * of the equivalent {@link State} or {@link MNKState}.
+	 *
+	 * @return the key
+	 */
+	public long getKey() {
+		return key;
+	}
+
+	/**
+	 * Checks whether this board was made from a {@link State}, so that its
+	 * position can be packed (see {@link #getBoard()}).
+	 *
+	 * @return true if this is a Tic Tac Toe board, false otherwise
+	 */
+	public boolean isPacked() {
+		return packed;
+	}
+
+	/**
+	 * Returns the current position as a packed Tic Tac Toe board.
+	 *
+	 * @return the grid and the player to move, packed as described in {@link Board}
+	 * @throws IllegalStateException if this board was not made from a {@link State}
+	 */
+	public int getBoard() {
+		if(!packed)
+			throw new IllegalStateException("Only a Tic Tac Toe board can be packed.");
+		return (int) key;
+	}
+}
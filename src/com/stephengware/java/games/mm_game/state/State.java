@@ -3,20 +3,15 @@ package com.stephengware.java.games.mm_game.state;
 import java.util.ArrayList;
 
 /**
- * Represents the current state of a Tic Tac Toe game.
+ * Represents the current state of a Tic Tac Toe game, the 3,3,3 case of
+ * {@link GameState}.
  * 
  * @author Stephen G. Ware
  */
-public class State {
+public class State implements GameState {
 	
-	/** The 9 square grid */
-	private final Player[][] grid;
-	
-	/** The player who will move next */
-	private final Player current;
-	
-	/** The player who has won (if any) */
-	private final Player winner;
+	/** The 9 square grid and the player to move, packed as described in {@link Board} */
+	private final int board;
 
 	/**
 	 * Constructs the new state that would result from taking a given
@@ -26,81 +21,92 @@ public class State {
 	 * @param move the move to be taken
 	 */
 	private State(State previous, Move move) {
-		grid = previous.grid.clone();
-		for(int i=0; i<grid.length; i++)
-			grid[i] = grid[i].clone();
-		if(previous.winner != null)
+		if(previous.getWinner() != null)
 			throw new IllegalStateException("The game has ended; no more moves can be taken.");
-		if(grid[move.row][move.column] != null)
+		if(move.row < 0 || move.row > 2 || move.column < 0 || move.column > 2)
+			throw new IllegalArgumentException("Position (" + move.row + "," + move.column + ") is not on the grid.");
+		int cell = Board.cell(move.row, move.column);
+		if((Board.getEmpty(previous.board) & (1 << cell)) == 0)
 			throw new IllegalStateException("Position (" + move.row + "," + move.column + ") is already occupied.");
-		if(move.player != previous.current)
+		if(move.player != previous.getCurrentPlayer())
 			throw new IllegalStateException("It is not player " + move.player + "'s turn.");
-		grid[move.row][move.column] = move.player;
-		if(move.player == Player.X)
-			current = Player.O;
-		else
-			current = Player.X;
-		if(checkWin(move.player))
-			winner = move.player;
-		else
-			winner = null;
+		board = Board.make(previous.board, cell);
 	}
 	
 	/**
-	 * Checks if a given player has won.
+	 * Constructs the new state that would result from the current player
+	 * placing a mark in a given cell in some given previous state.
 	 * 
-	 * @param player the candidate player
-	 * @return true if the player has won, false otherwise
+	 * @param previous the state of the game before the move is taken
+	 * @param cell the cell number of the square (0 to 8)
 	 */
-	private final boolean checkWin(Player player) {
-		for(int i = 0; i < 3; i++)
-			if(checkRow(i, player) || checkColumn(i, player))
-				return true;
-		if(getSquare(1, 1) == player) {
-			if(getSquare(0, 0) == player && getSquare(2, 2) == player)
-				return true;
-			else if(getSquare(0, 2) == player && getSquare(2, 0) == player)
-				return true;
-		}
-		return false;
+	private State(State previous, int cell) {
+		if(previous.getWinner() != null)
+			throw new IllegalStateException("The game has ended; no more moves can be taken.");
+		if(cell < 0 || cell >= Board.CELLS)
+			throw new IllegalArgumentException("Cell " + cell + " is not on the grid.");
+		if((Board.getEmpty(previous.board) & (1 << cell)) == 0)
+			throw new IllegalStateException("Cell " + cell + " is already occupied.");
+		board = Board.make(previous.board, cell);
 	}
 	
 	/**
-	 * Checks if a given player has placed 3 marks on the given row.
+	 * Constructs the initial state of all Tic Tac Toe games, in which the grid
+	 * is empty and it is X's turn to move.
+	 */
+	public State() {
+		this.board = Board.EMPTY;
+	}
+	
+	/**
+	 * Constructs a state from a packed board.
 	 * 
-	 * @param row the row of the grid to check
-	 * @param player the player
-	 * @return true if the player has placed 3 marks on that row
+	 * @param board the grid and the player to move, packed as described in {@link Board}
+	 * @throws IllegalArgumentException if the value is not a well formed board
 	 */
-	private final boolean checkRow(int row, Player player) {
-		for(int column = 0; column < 3; column++)
-			if(getSquare(row, column) != player)
-				return false;
-		return true;
+	public State(int board) {
+		if(!Board.isValid(board))
+			throw new IllegalArgumentException("Not a valid board: " + Integer.toHexString(board));
+		this.board = board;
 	}
 	
 	/**
-	 * Checks if a given player has placed 3 marks on the given column.
+	 * Returns the packed representation of this state.
 	 * 
-	 * @param column the column of the grid to check
-	 * @param player the player
-	 * @return true if the player has placed 3 marks on that column
+	 * @return the grid and the player to move, packed as described in {@link Board}
 	 */
-	private final boolean checkColumn(int column, Player player) {
-		for(int row = 0; row < 3; row++)
-			if(getSquare(row, column) != player)
-				return false;
-		return true;
+	public int getBoard() {
+		return board;
 	}
 	
 	/**
-	 * Constructs the initial state of all Tic Tac Toe games, in which the grid
-	 * is empty and it is X's turn to move.
+	 * Returns the packed representation of this state as its key.
+	 * 
+	 * @return the same value as {@link #getBoard()}
 	 */
-	public State() {
-		this.grid = new Player[3][3];
-		this.current = Player.X;
-		this.winner = null;
+	@Override
+	public long getKey() {
+		return board;
+	}
+	
+	@Override
+	public int getWidth() {
+		return 3;
+	}
+	
+	@Override
+	public int getHeight() {
+		return 3;
+	}
+	
+	@Override
+	public int getWinLength() {
+		return 3;
+	}
+	
+	@Override
+	public int getEmptySquares() {
+		return Integer.bitCount(Board.getEmpty(board));
 	}
 	
 	/**
@@ -109,7 +115,7 @@ public class State {
 	 * @return the current player
 	 */
 	public Player getCurrentPlayer() {
-		return current;
+		return Board.getCurrentPlayer(board);
 	}
 	
 	/**
@@ -125,7 +131,7 @@ public class State {
 			row = 2;
 		if(column == -1)
 			column = 2;
-		return grid[row % 3][column % 3];
+		return Board.getSquare(board, Board.cell(row % 3, column % 3));
 	}
 	
 	/**
@@ -134,13 +140,51 @@ public class State {
 	 * @return all possible next moves
 	 */
 	public Iterable<Move> getAvailableMoves() {
+		return getMoves(Board.getMoves(board));
+	}
+	
+	@Override
+	public int getAvailableMoves(int[] cells) {
+		int count = 0;
+		for(int moves = Board.getMoves(board); moves != 0; moves &= moves - 1)
+			cells[count++] = Integer.numberOfTrailingZeros(moves);
+		return count;
+	}
+	
+	/**
+	 * Returns the cells in which the current player may place a mark as a
+	 * 9-bit mask, with bit <code>i</code> set if cell <code>i</code> is
+	 * empty.  This is empty once the game is over.
+	 * 
+	 * @return the available moves
+	 */
+	public int getMoveMask() {
+		return Board.getMoves(board);
+	}
+	
+	/**
+	 * Returns the next moves that can be made in the game, leaving out any
+	 * move which is equivalent to another by a rotation or reflection of the
+	 * grid that leaves this state unchanged (see {@link Symmetry}).
+	 * 
+	 * @return one move from each group of equivalent next moves
+	 */
+	public Iterable<Move> getDistinctMoves() {
+		return getMoves(Symmetry.getDistinctMoves(board));
+	}
+	
+	/**
+	 * Returns the current player's moves in the given cells.
+	 * 
+	 * @param cells a 9-bit mask of cells
+	 * @return one move for each cell, in row major order
+	 */
+	private Iterable<Move> getMoves(int cells) {
 		ArrayList<Move> moves = new ArrayList<>();
-		if(winner != null)
-			return moves;
-		for(int r = 0; r < 3; r++)
-			for(int c = 0; c < 3; c++)
-				if(grid[r][c] == null)
-					moves.add(new Move(current, r, c));
+		Player current = getCurrentPlayer();
+		for(int cell = 0; cell < Board.CELLS; cell++)
+			if((cells & (1 << cell)) != 0)
+				moves.add(Move.get(current, cell));
 		return moves;
 	}
 
@@ -155,19 +199,18 @@ public class State {
 		return new State(this, move);
 	}
 	
+	@Override
+	public State transition(int cell) {
+		return new State(this, cell);
+	}
+	
 	/**
 	 * Returns true if a winner has been decided or if the game is a tie.
 	 * 
 	 * @return true if the game is over, false otherwise
 	 */
 	public boolean isTerminal() {
-		if(winner != null)
-			return true;
-		for(int r = 0; r < 3; r ++)
-			for(int c = 0; c < 3; c++)
-				if(grid[r][c] == null)
-					return false;
-		return true;
+		return Board.isTerminal(board);
 	}
 	
 	/**
@@ -176,7 +219,7 @@ public class State {
 	 * @return the winning player, or null if no player has won or the game ended in a tie
 	 */
 	public Player getWinner() {
-		return winner;
+		return Board.getWinner(board);
 	}
 	
 	@Override
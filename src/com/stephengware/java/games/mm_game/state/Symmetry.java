@@ -0,0 +1,170 @@
+package com.stephengware.java.games.mm_game.state;
+
+/**
+ * The 8 symmetries of the Tic Tac Toe grid: the 4 rotations, each with or
+ * without a reflection.  Two boards which are rotations or reflections of
+ * each other have the same value, and a move on one corresponds to the
+ * transformed move on the other, so a search only needs to consider one
+ * board from each group.  That board, the one whose packed value (see
+ * {@link Board}) is smallest, is called the canonical board.
+ * <p>
+ * Transforms are numbered 0 to 7.  Transform 0 is the identity, transforms 1
+ * to 3 rotate the grid clockwise by 90, 180, and 270 degrees, and transforms
+ * 4 to 7 mirror the grid left to right and then apply the same rotations.
+ * All of the methods in this class work on packed boards and cell numbers
+ * by table lookup, so they do not allocate objects.
+ *
+ * @author Stephen G. Ware
+ */
+public final class Symmetry {
+
+	/** The number of symmetries */
+	public static final int COUNT = 8;
+
+	/** The transform which leaves the grid unchanged */
+	public static final int IDENTITY = 0;
+
+	/** Where each transform sends each cell */
+	private static final int[][] CELLS = new int[COUNT][Board.CELLS];
+
+	/** Where each transform sends each 9-bit mask of cells */
+	private static final int[][] MASKS = new int[COUNT][Board.FULL + 1];
+
+	/** The transform which undoes each transform */
+	private static final int[] INVERSES = new int[COUNT];
+
+	static {
+		for(int t = 0; t < COUNT; t++) {
+			for(int cell = 0; cell < Board.CELLS; cell++) {
+				int row = cell / 3;
+				int column = cell % 3;
+				if(t >= 4)
+					column = 2 - column;
+				for(int i = 0; i < (t & 3); i++) {
+					int r = column;
+					column = 2 - row;
+					row = r;
+				}
+				CELLS[t][cell] = Board.cell(row, column);
+			}
+			for(int mask = 0; mask <= Board.FULL; mask++)
+				for(int cell = 0; cell < Board.CELLS; cell++)
+					if((mask & (1 << cell)) != 0)
+						MASKS[t][mask] |= 1 << CELLS[t][cell];
+		}
+		for(int t = 0; t < COUNT; t++)
+			for(int u = 0; u < COUNT; u++)
+				if(CELLS[u][CELLS[t][1]] == 1 && CELLS[u][CELLS[t][2]] == 2)
+					INVERSES[t] = u;
+	}
+
+	private Symmetry() {
+		// Only static methods.
+	}
+
+	/**
+	 * Returns the cell a given cell is sent to by a transform.
+	 *
+	 * @param transform the transform (0 to 7)
+	 * @param cell the cell number (0 to 8)
+	 * @return the transformed cell number
+	 */
+	public static int transformCell(int transform, int cell) {
+		return CELLS[transform][cell];
+	}
+
+	/**
+	 * Returns the board that results from rotating or reflecting a board.
+	 * The player to move is unchanged.
+	 *
+	 * @param transform the transform (0 to 7)
+	 * @param board the packed board
+	 * @return the transformed packed board
+	 */
+	public static int transform(int transform, int board) {
+		int[] masks = MASKS[transform];
+		int x = masks[Board.getMarks(board, Player.X)];
+		int o = masks[Board.getMarks(board, Player.O)];
+		return (board & ~((Board.FULL << 9) | Board.FULL)) | (o << 9) | x;
+	}
+
+	/**
+	 * Returns the move that corresponds to a given move after the grid is
+	 * rotated or reflected.
+	 *
+	 * @param transform the transform (0 to 7)
+	 * @param move the move
+	 * @return the transformed move
+	 */
+	public static Move transform(int transform, Move move) {
+		int cell = CELLS[transform][Board.cell(move.row, move.column)];
+		return Move.get(move.player, cell);
+	}
+
+	/**
+	 * Returns the transform which undoes a given transform.
+	 *
+	 * @param transform the transform (0 to 7)
+	 * @return its inverse
+	 */
+	public static int inverse(int transform) {
+		return INVERSES[transform];
+	}
+
+	/**
+	 * Returns the transform which sends a board to its canonical board.  If
+	 * several transforms do, the lowest numbered one is returned.
+	 *
+	 * @param board the packed board
+	 * @return the transform (0 to 7)
+	 */
+	public static int getCanonicalTransform(int board) {
+		int best = IDENTITY;
+		int min = board;
+		for(int t = 1; t < COUNT; t++) {
+			int transformed = transform(t, board);
+			if(transformed < min) {
+				min = transformed;
+				best = t;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the canonical board of the group of boards which are rotations
+	 * or reflections of a given board.
+	 *
+	 * @param board the packed board
+	 * @return the canonical packed board
+	 */
+	public static int getCanonical(int board) {
+		int min = board;
+		for(int t = 1; t < COUNT; t++)
+			min = Math.min(min, transform(t, board));
+		return min;
+	}
+
+	/**
+	 * Returns the moves available in a board with the moves that are
+	 * equivalent to a lower numbered move removed.  Two moves are equivalent
+	 * when some rotation or reflection leaves the board unchanged but sends
+	 * one move to the other; for example, all four corners are equivalent on
+	 * the empty board.
+	 *
+	 * @param board the packed board
+	 * @return a 9-bit mask of the distinct moves
+	 */
+	public static int getDistinctMoves(int board) {
+		int moves = Board.getMoves(board);
+		int distinct = moves;
+		for(int t = 1; t < COUNT; t++) {
+			if(transform(t, board) != board)
+				continue;
+			for(int cell = 0; cell < Board.CELLS; cell++)
+				if((distinct & (1 << cell)) != 0 && CELLS[t][cell] < cell)
+					distinct &= ~(1 << cell);
+		}
+		return distinct;
+	}
+}
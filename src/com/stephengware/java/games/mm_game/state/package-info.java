@@ -1,6 +1,9 @@
 /**
  * This package contains the model of the state of a game of Tic Tac Toe along
  * with a representation of all the next available moves and how they change
- * the game's state.
+ * the game's state.  {@link com.stephengware.java.games.mm_game.state.GameState
+ * GameState} generalizes the model to m,n,k games played on larger grids,
+ * and {@link com.stephengware.java.games.mm_game.state.SearchBoard
+ * SearchBoard} is a mutable version of it for search engines.
  */
 package com.stephengware.java.games.mm_game.state;
\ No newline at end of file
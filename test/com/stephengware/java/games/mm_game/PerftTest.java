@@ -0,0 +1,68 @@
+package com.stephengware.java.games.mm_game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import com.stephengware.java.games.mm_game.Perft.Backend;
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.MNKState;
+import com.stephengware.java.games.mm_game.state.State;
+
+/**
+ * Checks that every {@link Perft} backend counts the well known totals of
+ * Tic Tac Toe, with and without memoization.
+ *
+ * @author Stephen G. Ware
+ */
+public class PerftTest {
+
+	@Test
+	public void countsTicTacToeWithStates() {
+		check(new State(), Backend.STATE);
+		check(new MNKState(3, 3, 3), Backend.STATE);
+	}
+
+	@Test
+	public void countsTicTacToeWithSearchBoards() {
+		check(new State(), Backend.SEARCH_BOARD);
+		check(new MNKState(3, 3, 3), Backend.SEARCH_BOARD);
+	}
+
+	@Test
+	public void countsTicTacToeWithPackedBoards() {
+		check(new State(), Backend.PACKED);
+	}
+
+	@Test
+	public void rejectsPackingOtherStates() {
+		assertThrows(IllegalArgumentException.class, () -> new Perft(false).count(new MNKState(3, 3, 3), 9, Backend.PACKED));
+	}
+
+	/**
+	 * Counts every game from a state with and without memoization and
+	 * compares the totals to the known ones.
+	 *
+	 * @param state the empty Tic Tac Toe board
+	 * @param backend how positions are represented while counting
+	 */
+	private static void check(GameState state, Backend backend) {
+		for(boolean memoize : new boolean[] { false, true }) {
+			Perft.Results results = new Perft(memoize).count(state, 9, backend);
+			String name = backend + (memoize ? ", memoized" : "");
+			assertEquals(Perft.TIC_TAC_TOE_GAMES, results.getGames(), name);
+			assertEquals(Perft.TIC_TAC_TOE_X_WINS, sum(results.xWins), name);
+			assertEquals(Perft.TIC_TAC_TOE_O_WINS, sum(results.oWins), name);
+			assertEquals(Perft.TIC_TAC_TOE_TIES, sum(results.ties), name);
+			assertEquals(Perft.TIC_TAC_TOE_NODES, results.getNodes(), name);
+		}
+	}
+
+	private static long sum(long[] values) {
+		long total = 0;
+		for(long value : values)
+			total += value;
+		return total;
+	}
+}
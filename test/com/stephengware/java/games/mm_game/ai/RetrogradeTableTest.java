@@ -0,0 +1,101 @@
+package com.stephengware.java.games.mm_game.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.MNKState;
+import com.stephengware.java.games.mm_game.state.Move;
+import com.stephengware.java.games.mm_game.state.Player;
+import com.stephengware.java.games.mm_game.state.State;
+
+/**
+ * Checks {@link RetrogradeTable} against the known size of Tic Tac Toe and
+ * against a plain minimax search of every position.
+ *
+ * @author Stephen G. Ware
+ */
+public class RetrogradeTableTest {
+
+	/** The number of positions which can arise in a game of Tic Tac Toe */
+	private static final long TIC_TAC_TOE_POSITIONS = 5478;
+
+	@Test
+	public void countsTicTacToePositions() {
+		RetrogradeTable table = new RetrogradeTable(3, 3, 3);
+		assertEquals(TIC_TAC_TOE_POSITIONS, table.getPositions());
+		assertEquals(1, table.getPositions(0));
+		assertEquals(9, table.getPositions(1));
+	}
+
+	@Test
+	public void solvesEveryTicTacToePosition() {
+		RetrogradeTable table = new RetrogradeTable(3, 3, 3);
+		HashMap<Long, Integer> values = new HashMap<>();
+		assertEquals(0, solve(new State(), table, values));
+		assertEquals(TIC_TAC_TOE_POSITIONS, values.size());
+	}
+
+	@Test
+	public void solvesEveryPositionOfOtherGrids() {
+		HashMap<Long, Integer> values = new HashMap<>();
+		RetrogradeTable table = new RetrogradeTable(3, 4, 3);
+		assertEquals(1, solve(new MNKState(3, 4, 3), table, values));
+		assertEquals(table.getPositions(), values.size());
+		values.clear();
+		table = new RetrogradeTable(4, 3, 4);
+		assertEquals(0, solve(new MNKState(4, 3, 4), table, values));
+		assertEquals(table.getPositions(), values.size());
+	}
+
+	@Test
+	public void rejectsUnreachablePositions() {
+		RetrogradeTable table = new RetrogradeTable(3, 3, 3);
+		// Two O marks and no X mark
+		assertFalse(table.isLegal(table.index(0, 0b11)));
+		assertThrows(IllegalArgumentException.class, () -> table.getValue(table.index(0, 0b11)));
+	}
+
+	@Test
+	public void rejectsOtherGrids() {
+		RetrogradeTable table = new RetrogradeTable(3, 3, 3);
+		assertThrows(IllegalArgumentException.class, () -> table.getValue(new MNKState(4, 4, 3)));
+	}
+
+	/**
+	 * Finds the value of a state by minimax search, checking that the table
+	 * agrees about it and every position below it, and that the table's move
+	 * achieves the value.
+	 *
+	 * @param state the state
+	 * @param table the table being checked
+	 * @param values the value of every state already searched, by key
+	 * @return the value of the state for X
+	 */
+	private static int solve(GameState state, RetrogradeTable table, HashMap<Long, Integer> values) {
+		Integer known = values.get(state.getKey());
+		if(known != null)
+			return known;
+		int value;
+		if(state.isTerminal())
+			value = state.getWinner() == Player.X ? 1 : state.getWinner() == Player.O ? -1 : 0;
+		else {
+			boolean max = state.getCurrentPlayer() == Player.X;
+			value = max ? -1 : 1;
+			for(Move move : state.getAvailableMoves()) {
+				int child = solve(state.transition(move), table, values);
+				value = max ? Math.max(value, child) : Math.min(value, child);
+			}
+			int best = table.getMove(state);
+			assertEquals(value, solve(state.transition(best), table, values), state.toString());
+		}
+		assertEquals(value, table.getValue(state), state.toString());
+		values.put(state.getKey(), value);
+		return value;
+	}
+}
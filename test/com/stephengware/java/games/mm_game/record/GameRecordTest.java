@@ -0,0 +1,114 @@
+package com.stephengware.java.games.mm_game.record;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.stephengware.java.games.mm_game.Tournament;
+import com.stephengware.java.games.mm_game.ai.RandomBot;
+import com.stephengware.java.games.mm_game.state.GameState;
+import com.stephengware.java.games.mm_game.state.MNKState;
+import com.stephengware.java.games.mm_game.state.Player;
+import com.stephengware.java.games.mm_game.state.State;
+
+/**
+ * Checks that games written by a {@link GameRecordWriter} are read back by a
+ * {@link GameRecordReader} exactly as they were played.
+ *
+ * @author Stephen G. Ware
+ */
+public class GameRecordTest {
+
+	@TempDir
+	public Path directory;
+
+	@Test
+	public void readsWhatWasWritten() throws IOException {
+		ArrayList<GameRecord> written = new ArrayList<>();
+		written.add(new GameRecord("X", "O", 1, 3, 3, 3, Player.X, new byte[] { 4, 0, 3, 8, 5 }, 5));
+		written.add(new GameRecord("X", "O", -2, 3, 3, 3, null, new byte[] { 4, 0, 2, 6, 3, 5, 1, 7, 8 }, 9));
+		written.add(new GameRecord("O", "Someone else", Long.MAX_VALUE, 4, 4, 3, Player.O, new byte[] { 15, 0, 14, 1, 12, 2 }, 6));
+		written.add(new GameRecord("X", "O", 0, 1, 1, 1, null, new byte[0], 0));
+		Path file = directory.resolve("games.ttt");
+		try(GameRecordWriter writer = new GameRecordWriter(file)) {
+			for(GameRecord record : written)
+				writer.write(record);
+			assertEquals(written.size(), writer.getCount());
+		}
+		try(GameRecordReader reader = new GameRecordReader(file)) {
+			for(GameRecord expected : written)
+				assertRecordsEqual(expected, reader.read());
+			assertNull(reader.read());
+		}
+	}
+
+	@Test
+	public void recordsEveryGameOfATournament() throws IOException {
+		for(GameState initial : new GameState[] { new State(), new MNKState(4, 4, 3) }) {
+			Path file = directory.resolve(initial.getWidth() + "x" + initial.getHeight() + ".ttt");
+			Tournament.Results results;
+			try(GameRecordWriter writer = new GameRecordWriter(file)) {
+				results = new Tournament(RandomBot::new, RandomBot::new, initial, 4, writer).play(1000, 9);
+			}
+			long xWins = 0, oWins = 0, ties = 0;
+			try(GameRecordReader reader = new GameRecordReader(file)) {
+				for(GameRecord record = reader.read(); record != null; record = reader.read()) {
+					GameState end = record.replay();
+					assertTrue(end.isTerminal());
+					assertEquals(record.winner, end.getWinner());
+					if(record.winner == Player.X)
+						xWins++;
+					else if(record.winner == Player.O)
+						oWins++;
+					else
+						ties++;
+				}
+			}
+			assertEquals(results.xWins.sum(), xWins);
+			assertEquals(results.oWins.sum(), oWins);
+			assertEquals(results.ties.sum(), ties);
+			assertEquals(1000, xWins + oWins + ties);
+		}
+	}
+
+	@Test
+	public void takesEighteenBytesForAGameOfNineMoves() throws IOException {
+		Path file = directory.resolve("game.ttt");
+		try(GameRecordWriter writer = new GameRecordWriter(file)) {
+			writer.write(new GameRecord("X", "O", 1, 3, 3, 3, null, new byte[] { 4, 0, 2, 6, 3, 5, 1, 7, 8 }, 9));
+			writer.write(new GameRecord("X", "O", 2, 3, 3, 3, null, new byte[] { 4, 0, 2, 6, 3, 5, 1, 7, 8 }, 9));
+		}
+		// The magic number and version, one entry for each name, then the games
+		assertEquals(4 + 4 + 2 * (3 + 1) + 2 * (13 + 5), Files.size(file));
+	}
+
+	@Test
+	public void rejectsGridsTooBigToRecord() throws IOException {
+		assertThrows(IllegalArgumentException.class, () -> new GameRecord("X", "O", 0, 5, 5, 4, null, new byte[0], 0));
+		try(GameRecordWriter writer = new GameRecordWriter(directory.resolve("big.ttt"))) {
+			assertThrows(IllegalArgumentException.class, () -> new Tournament(RandomBot::new, RandomBot::new, new MNKState(5, 5, 4), 1, writer));
+		}
+	}
+
+	private static void assertRecordsEqual(GameRecord expected, GameRecord actual) {
+		assertEquals(expected.x, actual.x);
+		assertEquals(expected.o, actual.o);
+		assertEquals(expected.seed, actual.seed);
+		assertEquals(expected.width, actual.width);
+		assertEquals(expected.height, actual.height);
+		assertEquals(expected.winLength, actual.winLength);
+		assertEquals(expected.winner, actual.winner);
+		assertEquals(expected.getLength(), actual.getLength());
+		for(int i = 0; i < expected.getLength(); i++)
+			assertEquals(expected.getCell(i), actual.getCell(i));
+	}
+}